@@ -1,5 +1,4 @@
 import db.relational.Relation;
-import db.table.Table;
 
 public class Main {
     public static void main(String[] args) {
@@ -1,60 +1,41 @@
 package db.relational;
 
-import java.util.HashMap;
-import java.util.List;
 import java.util.Objects;
 
+/**
+ * named attribute of a dictionary, see AttributeDictionary. its id is
+ * fixed when it is interned
+ */
 public class Attribute<T> {
-    public static HashMap<String, Attribute> attributes = new HashMap<>();
-
     private String name;
     private String type;
+    private final AttributeDictionary dictionary;
+    private final int id;
 
     // region Constructor
 
     /**
-     * attribute from a name, with type initialized
-     * as a string
-     * @param name
-     */
-    private Attribute(String name) {
-        this.name = name;
-        this.type = "String";
-    }
-
-    /**
-     * attribute from a name and a type
+     * attribute interned by dictionary under id, see AttributeDictionary.intern
      * @param name
      * @param type
+     * @param dictionary
+     * @param id
      */
-    private Attribute(String name, String type) {
+    Attribute(String name, String type, AttributeDictionary dictionary, int id) {
         this.name = name;
         this.type = type;
+        this.dictionary = dictionary;
+        this.id = id;
     }
 
     /**
-     * attribute from a string like "name type" or "name"
+     * attribute of the global dictionary from a string like "name type"
+     * or "name", the type of an attribute that already exists is kept
      * @param str
      * @return
      */
     public static Attribute fromString(String str) {
-        String[] strSplit = str.split(" ");
-        Attribute attr = addAttribute(strSplit[0]);
-        if (strSplit.length == 2)
-            attr.setType(strSplit[1]);
-        return attr;
-    }
-
-    /**
-     * IMPORTANT: create attribute with this function
-     * @param name
-     * @return
-     */
-    private static Attribute addAttribute(String name) {
-        if (!attributes.containsKey(name)) {
-            attributes.put(name, new Attribute(name));
-        }
-        return attributes.get(name);
+        return AttributeDictionary.global().fromString(str);
     }
     // endregion
 
@@ -69,42 +50,69 @@ public class Attribute<T> {
     }
 
     public static AttributeSet closureUnder(AttributeSet attrs, FunctionalDependencySet f) {
-        AttributeSet result = new AttributeSet(attrs);
-        List<FunctionalDependency> fds = f.toList();
-        int change = 0;
-        do {
-            change = 0;
-            for (FunctionalDependency fd : fds) {
-                if (fd.lhs.subsetOf(result)) {
-                    change += result.union(fd.rhs);
-                }
-            }
-        } while (change != 0);
-        return result;
+        return attrs.closureUnder(f);
     }
 
     public boolean elementOf(AttributeSet set) {
-        for (Attribute attr : set.toList()) {
-            if (attr.equals(this)) {
-                return true;
-            }
-        }
-        return false;
+        return set.contains(this);
     }
 
+    /**
+     * attribute of the global dictionary with a given name
+     * @param name
+     * @return
+     */
     public static Attribute get(String name) {
-        return attributes.get(name);
+        return AttributeDictionary.global().get(name);
+    }
+
+    /**
+     * attribute of the global dictionary with a given id, null if no
+     * such attribute
+     * @param id
+     * @return
+     */
+    public static Attribute get(int id) {
+        return AttributeDictionary.global().get(id);
+    }
+
+    /**
+     * number of ids handed out by the global dictionary so far
+     * @return
+     */
+    public static int count() {
+        return AttributeDictionary.global().size();
     }
 
     public AttributeSet toSet() {
         return new AttributeSet(this);
     }
 
+    public AttributeDictionary getDictionary() {
+        return dictionary;
+    }
+
+    public int getId() {
+        return id;
+    }
+
     public String getName() {
         return name;
     }
 
+    /**
+     * rename the attribute through its dictionary, see
+     * AttributeDictionary.rename
+     * @param name
+     */
     public void setName(String name) {
+        dictionary.rename(this, name);
+    }
+
+    /**
+     * only the dictionary renames, so its name map stays in step
+     */
+    void rename(String name) {
         this.name = name;
     }
 
@@ -126,7 +134,7 @@ public class Attribute<T> {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         Attribute attribute = (Attribute) o;
-        return Objects.equals(name, attribute.name);
+        return dictionary == attribute.dictionary && Objects.equals(name, attribute.name);
     }
 
     @Override
@@ -0,0 +1,191 @@
+package db.relational;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * namespace of attributes: interns names to attributes and hands out
+ * dense ids, which are the bit positions of the attributes in an
+ * AttributeSet. every schema can own a dictionary, ids of different
+ * dictionaries overlap, so sets and dependencies of one dictionary are
+ * only ever combined with those of the same dictionary. nothing but the
+ * attributes and their sets refer to a dictionary, so it is collected
+ * with the schema that uses it.
+ *
+ * interning is safe from any number of threads: a name that is already
+ * known is a lock-free lookup, a new name only locks its bin of the
+ * name map while it takes the next id. attributes by id are kept in
+ * chunks that are never moved, so a lookup by id takes no lock either.
+ *
+ * the global dictionary is used by everything that does not name one,
+ * like the string constructors of AttributeSet and FunctionalDependency.
+ */
+public class AttributeDictionary {
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final AttributeDictionary GLOBAL = new AttributeDictionary();
+
+    private final ConcurrentHashMap<String, Attribute<?>> byName = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private volatile AtomicReferenceArray<AtomicReferenceArray<Attribute<?>>> chunks =
+            new AtomicReferenceArray<>(16);
+
+    /**
+     * the dictionary shared by everything that does not name its own
+     * @return
+     */
+    public static AttributeDictionary global() {
+        return GLOBAL;
+    }
+
+    /**
+     * attribute for a name, created with type String and the next id
+     * if the name is new
+     * @param name
+     * @return
+     */
+    public Attribute<?> intern(String name) {
+        return intern(name, "String");
+    }
+
+    /**
+     * attribute for a name, created with the given type and the next id
+     * if the name is new. the type of a known attribute is not changed
+     * @param name
+     * @param type
+     * @return
+     */
+    public Attribute<?> intern(String name, String type) {
+        Attribute<?> attr = byName.get(name);
+        if (attr != null) {
+            return attr;
+        }
+        return byName.computeIfAbsent(name, n -> {
+            Attribute<?> created = new Attribute<>(n, type, this, nextId.getAndIncrement());
+            publish(created);
+            return created;
+        });
+    }
+
+    /**
+     * give an attribute of this dictionary a new name that no other
+     * attribute of it has. its id and the sets holding it are unchanged,
+     * its hash follows the name, so hash based collections of attributes
+     * have to be filled again
+     * @param attr
+     * @param name
+     */
+    public synchronized void rename(Attribute<?> attr, String name) {
+        if (attr.getDictionary() != this) {
+            throw new IllegalArgumentException(attr + " belongs to another dictionary");
+        }
+        String old = attr.getName();
+        if (old.equals(name)) {
+            return;
+        }
+        Attribute<?> taken = byName.putIfAbsent(name, attr);
+        if (taken != null) {
+            throw new IllegalArgumentException("an attribute named " + name + " already exists");
+        }
+        attr.rename(name);
+        byName.remove(old, attr);
+    }
+
+    /**
+     * attribute from a string like "name type" or "name"
+     * @param str
+     * @return
+     */
+    public Attribute<?> fromString(String str) {
+        String[] strSplit = str.split(" ");
+        return strSplit.length == 2 ? intern(strSplit[0], strSplit[1]) : intern(strSplit[0]);
+    }
+
+    /**
+     * attribute set from names, see fromString
+     * @param names
+     * @return
+     */
+    public AttributeSet set(String... names) {
+        AttributeSet attrs = new AttributeSet(this);
+        for (String name : names) {
+            attrs.add(fromString(name));
+        }
+        return attrs;
+    }
+
+    /**
+     * attribute with a given name, null if it was never interned
+     * @param name
+     * @return
+     */
+    public Attribute<?> get(String name) {
+        return byName.get(name);
+    }
+
+    /**
+     * attribute with a given id, null if no such attribute
+     * @param id
+     * @return
+     */
+    public Attribute<?> get(int id) {
+        AtomicReferenceArray<AtomicReferenceArray<Attribute<?>>> chunks = this.chunks;
+        int c = id >>> CHUNK_BITS;
+        if (id < 0 || c >= chunks.length()) {
+            return null;
+        }
+        AtomicReferenceArray<Attribute<?>> chunk = chunks.get(c);
+        return chunk == null ? null : chunk.get(id & (CHUNK_SIZE - 1));
+    }
+
+    /**
+     * number of ids handed out so far, every id is below it
+     * @return
+     */
+    public int size() {
+        return nextId.get();
+    }
+
+    /**
+     * store attr under its id, growing the chunk directory if needed
+     */
+    private void publish(Attribute<?> attr) {
+        int c = attr.getId() >>> CHUNK_BITS;
+        AtomicReferenceArray<AtomicReferenceArray<Attribute<?>>> chunks = this.chunks;
+        if (c >= chunks.length()) {
+            chunks = grow(c);
+        }
+        AtomicReferenceArray<Attribute<?>> chunk = chunks.get(c);
+        if (chunk == null) {
+            chunks.compareAndSet(c, null, new AtomicReferenceArray<>(CHUNK_SIZE));
+            chunk = chunks.get(c);
+        }
+        chunk.set(attr.getId() & (CHUNK_SIZE - 1), attr);
+    }
+
+    /**
+     * a chunk directory with room for chunk c, the chunks themselves are
+     * shared with the old directory
+     */
+    private synchronized AtomicReferenceArray<AtomicReferenceArray<Attribute<?>>> grow(int c) {
+        AtomicReferenceArray<AtomicReferenceArray<Attribute<?>>> chunks = this.chunks;
+        if (c < chunks.length()) {
+            return chunks;
+        }
+        AtomicReferenceArray<AtomicReferenceArray<Attribute<?>>> bigger =
+                new AtomicReferenceArray<>(Math.max(c + 1, chunks.length() * 2));
+        for (int i = 0; i < chunks.length(); i++) {
+            AtomicReferenceArray<Attribute<?>> chunk = chunks.get(i);
+            if (chunk == null) {
+                chunk = new AtomicReferenceArray<>(CHUNK_SIZE);
+                if (!chunks.compareAndSet(i, null, chunk)) {
+                    chunk = chunks.get(i);
+                }
+            }
+            bigger.set(i, chunk);
+        }
+        this.chunks = bigger;
+        return bigger;
+    }
+}
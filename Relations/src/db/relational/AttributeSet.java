@@ -1,20 +1,62 @@
 package db.relational;
 
 import db.util.Set;
-import org.w3c.dom.Attr;
 
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * set of attributes stored as a bitset over attribute ids,
+ * the first 64 ids live in a single inline word and a word
+ * array is only allocated once a larger id is added.
+ * ids are resolved to attributes by the set's dictionary, an
+ * empty set of the global dictionary takes over the dictionary
+ * of the first set or attribute added to it. ids of different
+ * dictionaries are never mixed: combining two non-empty sets of
+ * different dictionaries throws an IllegalArgumentException, and
+ * an attribute of another dictionary is in no set of this one.
+ *
+ * the size and a Zobrist hash, the xor of a random key per
+ * attribute id, are kept up to date on every change, so hashCode
+ * and size are constant time and equals rejects most unequal sets
+ * before it looks at the words
+ */
 public class AttributeSet extends Set<Attribute> {
+    private long bits;
+    private long[] words;
+    private AttributeDictionary dictionary;
+    private long hash;
+    private int size;
+
     // region Constructors
-    public AttributeSet(){}
+    public AttributeSet() {
+        super(false);
+        this.dictionary = AttributeDictionary.global();
+    }
+
+    /**
+     * empty attribute set of a dictionary
+     * @param dictionary
+     */
+    public AttributeSet(AttributeDictionary dictionary) {
+        super(false);
+        this.dictionary = dictionary;
+    }
 
     /**
      * attribute set with one element
      * @param attribute
      */
     public AttributeSet(Attribute attribute) {
+        this();
         this.add(attribute);
     }
 
@@ -23,7 +65,12 @@ public class AttributeSet extends Set<Attribute> {
      * @param attrs
      */
     public AttributeSet(Set<Attribute> attrs) {
-        for (Attribute attr : attrs.toList()) {
+        this();
+        if (attrs instanceof AttributeSet) {
+            this.copyFrom((AttributeSet) attrs);
+            return;
+        }
+        for (Attribute<?> attr : attrs) {
             this.add(attr);
         }
     }
@@ -33,9 +80,8 @@ public class AttributeSet extends Set<Attribute> {
      * @param attrs
      */
     public AttributeSet(AttributeSet attrs) {
-        for (Attribute attr : attrs.toList()) {
-            this.add(attr);
-        }
+        this();
+        this.copyFrom(attrs);
     }
 
     /**
@@ -43,10 +89,9 @@ public class AttributeSet extends Set<Attribute> {
      * @param fd
      */
     public AttributeSet(FunctionalDependency fd) {
-        AttributeSet attrs = fd.attributes();
-        for (Attribute attr : attrs.toList()) {
-            this.add(attr);
-        }
+        this();
+        this.copyFrom(fd.lhs);
+        this.union(fd.rhs);
     }
 
     /**
@@ -54,6 +99,7 @@ public class AttributeSet extends Set<Attribute> {
      * @param attr
      */
     public AttributeSet(String attr) {
+        this();
         this.add(Attribute.fromString(attr));
     }
 
@@ -62,6 +108,7 @@ public class AttributeSet extends Set<Attribute> {
      * @param attribute
      */
     public AttributeSet(String... attribute) {
+        this();
         for (String attr : attribute) {
             this.add(Attribute.fromString(attr));
         }
@@ -74,69 +121,520 @@ public class AttributeSet extends Set<Attribute> {
      * @return
      */
     public static AttributeSet fromString(String attrsString, String delimiter) {
-        AttributeSet attrset = new AttributeSet();
+        return fromString(attrsString, delimiter, AttributeDictionary.global());
+    }
+
+    /**
+     * attribute set from string separated by delimeter with the
+     * attributes interned by dictionary
+     * @param attrsString
+     * @param delimiter
+     * @param dictionary
+     * @return
+     */
+    public static AttributeSet fromString(String attrsString, String delimiter, AttributeDictionary dictionary) {
+        AttributeSet attrset = new AttributeSet(dictionary);
         String[] attrs = attrsString.split(delimiter);
         for (String attr : attrs) {
             attr = attr.trim();
-            attrset.union(new AttributeSet(attr.replace(" ", "_")));
+            attrset.add(dictionary.fromString(attr.replace(" ", "_")));
         }
         return attrset;
     }
     // endregion
 
-    public AttributeSet closureUnder(FunctionalDependencySet f) {
-        AttributeSet result = new AttributeSet(this);
-        List<FunctionalDependency> fds = f.toList();
-        int change;
-        do {
-            change = 0;
-            for (FunctionalDependency fd : fds) {
-                if (fd.lhs.subsetOf(result)) {
-                    change += result.union(fd.rhs);
-                }
+    // region Bitset
+    private void copyFrom(AttributeSet attrs) {
+        this.dictionary = attrs.dictionary;
+        this.hash = attrs.hash;
+        this.size = attrs.size;
+        this.bits = attrs.bits;
+        this.words = attrs.words == null ? null : attrs.words.clone();
+    }
+
+    /**
+     * take over the dictionary of what is added to this set while this
+     * set is empty and on the global one
+     * @param dictionary
+     * @param none whether nothing is added, so no ids can be mixed
+     */
+    private void adopt(AttributeDictionary dictionary, boolean none) {
+        if (this.dictionary == dictionary) {
+            return;
+        }
+        if (size == 0 && this.dictionary == AttributeDictionary.global()) {
+            this.dictionary = dictionary;
+        } else if (!none) {
+            throw mixed();
+        }
+    }
+
+    /**
+     * the ids of attrs are compared to the ids of this set, which only
+     * means something when both are of the same dictionary or one of
+     * them is empty
+     */
+    private void check(AttributeSet attrs) {
+        if (dictionary != attrs.dictionary && size != 0 && attrs.size != 0) {
+            throw mixed();
+        }
+    }
+
+    private IllegalArgumentException mixed() {
+        return new IllegalArgumentException(this + " is combined with attributes of another dictionary");
+    }
+
+    /**
+     * the dictionary that resolves the ids of this set
+     * @return
+     */
+    public AttributeDictionary dictionary() {
+        return dictionary;
+    }
+
+    /**
+     * one past the highest id in the set, 0 if it is empty
+     * @return
+     */
+    public int length() {
+        for (int i = wordCount() - 1; i >= 0; i--) {
+            long w = word(i);
+            if (w != 0) {
+                return i * 64 + 64 - Long.numberOfLeadingZeros(w);
             }
-        } while (change != 0);
-        return result;
+        }
+        return 0;
+    }
+
+    private int wordCount() {
+        return words == null ? 1 : words.length;
+    }
+
+    long word(int i) {
+        if (words == null) {
+            return i == 0 ? bits : 0L;
+        }
+        return i < words.length ? words[i] : 0L;
+    }
+
+    /**
+     * make room for word index i, moving the inline word
+     * into the array on the first overflow
+     * @param i
+     */
+    private void ensureWord(int i) {
+        if (words == null) {
+            if (i == 0) {
+                return;
+            }
+            words = new long[Math.max(i + 1, 2)];
+            words[0] = bits;
+            bits = 0L;
+        } else if (i >= words.length) {
+            words = Arrays.copyOf(words, Math.max(i + 1, words.length * 2));
+        }
+    }
+
+    void setWord(int i, long value) {
+        if (words == null && i == 0) {
+            changed(0, bits, value);
+            bits = value;
+        } else {
+            changed(i, word(i), value);
+            ensureWord(i);
+            words[i] = value;
+        }
     }
 
-    public List<AttributeSet> generateCombinations() {
-        List<AttributeSet> allCombinations = new ArrayList<>();
-        for (int i = 1; i <= this.size(); i++) {
-            List<AttributeSet> combinations = generateCombinations(this.size() - 1);
-            for (AttributeSet attrs : combinations) {
-                allCombinations.add(attrs);
+    /**
+     * Zobrist key of an attribute id, a fixed pseudo-random word
+     * (the splitmix64 finalizer of the id)
+     * @param id
+     * @return
+     */
+    static long key(int id) {
+        long z = (id + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * update the size and hash for word i going from before to after
+     */
+    private void changed(int i, long before, long after) {
+        long flipped = before ^ after;
+        if (flipped == 0) {
+            return;
+        }
+        size += Long.bitCount(after) - Long.bitCount(before);
+        for (; flipped != 0; flipped &= flipped - 1) {
+            hash ^= key((i << 6) + Long.numberOfTrailingZeros(flipped));
+        }
+    }
+
+    /**
+     * whether the attribute with the given id is in the set
+     * @param id
+     * @return
+     */
+    public boolean containsId(int id) {
+        return id >= 0 && (word(id >>> 6) & (1L << id)) != 0;
+    }
+
+    /**
+     * add the attribute with the given id
+     * @param id
+     * @return 1 if added, 0 if already present
+     */
+    public int addId(int id) {
+        int i = id >>> 6;
+        long w = word(i);
+        long bit = 1L << id;
+        if ((w & bit) != 0) {
+            return 0;
+        }
+        setWord(i, w | bit);
+        return 1;
+    }
+
+    /**
+     * remove the attribute with the given id
+     * @param id
+     * @return 1 if removed, 0 if not present
+     */
+    public int removeId(int id) {
+        int i = id >>> 6;
+        long w = word(i);
+        long bit = 1L << id;
+        if ((w & bit) == 0) {
+            return 0;
+        }
+        setWord(i, w & ~bit);
+        return 1;
+    }
+
+    /**
+     * next id in the set at or after from, -1 if none
+     * @param from
+     * @return
+     */
+    public int nextId(int from) {
+        if (from < 0) {
+            from = 0;
+        }
+        int i = from >>> 6;
+        int n = wordCount();
+        if (i >= n) {
+            return -1;
+        }
+        long w = word(i) & (-1L << from);
+        while (true) {
+            if (w != 0) {
+                return (i << 6) + Long.numberOfTrailingZeros(w);
             }
+            if (++i >= n) {
+                return -1;
+            }
+            w = word(i);
         }
-        return allCombinations;
     }
 
-    public List<AttributeSet> generateCombinations(int n) {
-        List<Attribute> attributes = this.toList();
-        List<AttributeSet> combinations = new ArrayList<>();
-        generateCombinations(combinations, attributes, new int[n], 0, attributes.size() - 1, 0);
-        return combinations;
+    /**
+     * whether the two sets share no attribute
+     * @param attrs
+     * @return
+     */
+    public boolean disjoint(AttributeSet attrs) {
+        check(attrs);
+        if (words == null && attrs.words == null) {
+            return (bits & attrs.bits) == 0;
+        }
+        int n = Math.min(wordCount(), attrs.wordCount());
+        for (int i = 0; i < n; i++) {
+            if ((word(i) & attrs.word(i)) != 0) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    private void generateCombinations(List<AttributeSet> lists, List<Attribute> attributes, int[] data, int start, int end, int index) {
-        if (index == data.length) {
-            AttributeSet attrs = new AttributeSet();
-            for (int i : data) {
-                attrs.add(attributes.get(i));
+    /**
+     * remove every attribute not in attrs
+     * @param attrs
+     * @return number of attributes removed
+     */
+    public int retain(AttributeSet attrs) {
+        check(attrs);
+        if (words == null && attrs.words == null) {
+            long before = bits;
+            bits &= attrs.bits;
+            changed(0, before, bits);
+            return Long.bitCount(before) - Long.bitCount(bits);
+        }
+        int removed = 0;
+        for (int i = 0; i < wordCount(); i++) {
+            long w = word(i);
+            long r = w & attrs.word(i);
+            if (w != r) {
+                removed += Long.bitCount(w) - Long.bitCount(r);
+                setWord(i, r);
             }
-            lists.add(attrs);
-        } else if (start <= end) {
-            data[index] = start;
-            generateCombinations(lists, attributes, data, start + 1, end, index + 1);
-            generateCombinations(lists, attributes, data, start + 1, end, index);
         }
+        return removed;
+    }
+    // endregion
+
+    /**
+     * closure of this set under f, using the compiled closure
+     * index and closure cache of f
+     * @param f
+     * @return
+     */
+    public AttributeSet closureUnder(FunctionalDependencySet f) {
+        return f.closureOf(this);
+    }
+
+    /**
+     * the subsets of this set with k attributes, produced lazily in colex
+     * order, see Combinations. the stream splits evenly for parallel use
+     * when the set has at most 64 attributes
+     * @param k
+     * @return
+     */
+    public Stream<AttributeSet> combinations(int k) {
+        return StreamSupport.stream(Combinations.of(this, k), false);
+    }
+
+    /**
+     * every non-empty subset of this set, produced lazily by size,
+     * smallest first
+     * @return
+     */
+    public Stream<AttributeSet> combinations() {
+        return StreamSupport.stream(Combinations.of(this, 1, size()), false);
+    }
+
+    /**
+     * ids of the set in ascending order
+     * @return
+     */
+    int[] ids() {
+        int[] ids = new int[size()];
+        int i = 0;
+        for (int id = nextId(0); id >= 0; id = nextId(id + 1)) {
+            ids[i++] = id;
+        }
+        return ids;
     }
 
     public int union(AttributeSet attrs) {
-        int change = 0;
-        for (Attribute attr : attrs.toList()) {
-            change += this.add(attr);
+        adopt(attrs.dictionary, attrs.size == 0);
+        if (words == null && attrs.words == null) {
+            long before = bits;
+            bits |= attrs.bits;
+            changed(0, before, bits);
+            return Long.bitCount(bits) - Long.bitCount(before);
+        }
+        int added = 0;
+        for (int i = attrs.wordCount() - 1; i >= 0; i--) {
+            long w = word(i);
+            long u = w | attrs.word(i);
+            if (w != u) {
+                added += Long.bitCount(u) - Long.bitCount(w);
+                setWord(i, u);
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public int union(Set set) {
+        if (set instanceof AttributeSet) {
+            return this.union((AttributeSet) set);
+        }
+        return super.union(set);
+    }
+
+    @Override
+    public int add(Attribute attr) {
+        if (attr == null) {
+            return 0;
+        }
+        adopt(attr.getDictionary(), false);
+        return this.addId(attr.getId());
+    }
+
+    @Override
+    public int subtract(Attribute attr) {
+        if (attr == null || attr.getDictionary() != dictionary) {
+            return 0;
+        }
+        return this.removeId(attr.getId());
+    }
+
+    @Override
+    public int subtract(Set<Attribute> s) {
+        if (!(s instanceof AttributeSet)) {
+            return super.subtract(s);
+        }
+        AttributeSet attrs = (AttributeSet) s;
+        check(attrs);
+        if (words == null && attrs.words == null) {
+            long before = bits;
+            bits &= ~attrs.bits;
+            changed(0, before, bits);
+            return Long.bitCount(before) - Long.bitCount(bits);
+        }
+        int removed = 0;
+        int n = Math.min(wordCount(), attrs.wordCount());
+        for (int i = 0; i < n; i++) {
+            long w = word(i);
+            long r = w & ~attrs.word(i);
+            if (w != r) {
+                removed += Long.bitCount(w) - Long.bitCount(r);
+                setWord(i, r);
+            }
         }
-        return change;
+        return removed;
+    }
+
+    @Override
+    public boolean contains(Object item) {
+        if (!(item instanceof Attribute)) {
+            return false;
+        }
+        Attribute<?> attr = (Attribute<?>) item;
+        return attr.getDictionary() == dictionary && this.containsId(attr.getId());
+    }
+
+    @Override
+    public boolean subsetOf(Set<Attribute> set) {
+        if (!(set instanceof AttributeSet)) {
+            return super.subsetOf(set);
+        }
+        AttributeSet attrs = (AttributeSet) set;
+        check(attrs);
+        if (words == null && attrs.words == null) {
+            return (bits & ~attrs.bits) == 0;
+        }
+        for (int i = 0; i < wordCount(); i++) {
+            if ((word(i) & ~attrs.word(i)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean strictSubsetOf(Set set) {
+        if (!(set instanceof AttributeSet)) {
+            return super.strictSubsetOf(set);
+        }
+        return this.subsetOf((AttributeSet) set) && !this.equals(set);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * attributes in ascending id order
+     * @return
+     */
+    @Override
+    public List<Attribute> toList() {
+        List<Attribute> list = new ArrayList<>(this.size());
+        for (int id = nextId(0); id >= 0; id = nextId(id + 1)) {
+            list.add(dictionary.get(id));
+        }
+        return list;
+    }
+
+    /**
+     * attributes in ascending id order, read straight off the bits
+     * @return
+     */
+    @Override
+    public Iterator<Attribute> iterator() {
+        return new Iterator<Attribute>() {
+            private int next = nextId(0);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public Attribute next() {
+                if (next < 0) {
+                    throw new NoSuchElementException();
+                }
+                Attribute<?> attr = dictionary.get(next);
+                next = nextId(next + 1);
+                return attr;
+            }
+        };
+    }
+
+    @Override
+    public void forEach(Consumer<? super Attribute> action) {
+        for (int id = nextId(0); id >= 0; id = nextId(id + 1)) {
+            action.accept(dictionary.get(id));
+        }
+    }
+
+    /**
+     * every id in the set in ascending order, nothing is allocated
+     * @param action
+     */
+    public void forEachId(IntConsumer action) {
+        for (int i = 0; i < wordCount(); i++) {
+            for (long w = word(i); w != 0; w &= w - 1) {
+                action.accept((i << 6) + Long.numberOfTrailingZeros(w));
+            }
+        }
+    }
+
+    /**
+     * read-only view of the set, changes to the set show through
+     * @return
+     */
+    @Override
+    public java.util.Set<Attribute> view() {
+        return new AbstractSet<Attribute>() {
+            @Override
+            public boolean contains(Object o) {
+                return AttributeSet.this.contains(o);
+            }
+
+            @Override
+            public Iterator<Attribute> iterator() {
+                return AttributeSet.this.iterator();
+            }
+
+            @Override
+            public int size() {
+                return AttributeSet.this.size();
+            }
+        };
+    }
+
+    @Override
+    public AttributeSet clone() {
+        return new AttributeSet(this);
+    }
+
+    @Override
+    public Attribute get() {
+        int id = nextId(0);
+        return id < 0 ? null : dictionary.get(id);
     }
 
     public static AttributeSet union(AttributeSet...sets) {
@@ -149,20 +647,54 @@ public class AttributeSet extends Set<Attribute> {
 
     public static AttributeSet intersect(AttributeSet s1, AttributeSet s2) {
         AttributeSet s = new AttributeSet(s1);
-        for (Attribute a : s1.toList()) {
-            if (!a.elementOf(s2)) {
-                s.subtract(a);
-            }
-        }
+        s.retain(s2);
         return s;
     }
 
     public static AttributeSet subtract(AttributeSet s1, AttributeSet s2) {
-        return new AttributeSet(Set.subtract(s1, s2));
+        AttributeSet s = new AttributeSet(s1);
+        s.subtract(s2);
+        return s;
+    }
+
+    @Override
+    public String toString() {
+        return this.toList().toString();
     }
 
     @Override
     public boolean equals(Object o) {
-        return super.equals(o);
+        if (this == o) return true;
+        if (!(o instanceof AttributeSet)) return false;
+        AttributeSet attrs = (AttributeSet) o;
+        if (hash != attrs.hash || size != attrs.size) {
+            return false;
+        }
+        if (dictionary != attrs.dictionary) {
+            return size == 0;
+        }
+        if (words == null && attrs.words == null) {
+            return bits == attrs.bits;
+        }
+        int n = Math.max(wordCount(), attrs.wordCount());
+        for (int i = 0; i < n; i++) {
+            if (word(i) != attrs.word(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * the Zobrist hash of the set, see key
+     * @return
+     */
+    long zobrist() {
+        return hash;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (hash ^ (hash >>> 32));
     }
 }
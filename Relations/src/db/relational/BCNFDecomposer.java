@@ -0,0 +1,96 @@
+package db.relational;
+
+import db.util.Set;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * BCNF decomposition driven by a worklist of fragments that have not been
+ * checked yet. a fragment is checked once: either it is in BCNF and becomes
+ * a final leaf, or it is split on its first violation and only the two new
+ * fragments go back on the worklist. each fragment carries the projection of
+ * its parent's dependencies onto its own attributes, computed once when the
+ * fragment is created, so implied dependencies are not missed and checking a
+ * fragment only needs the (small) cover of its own dependencies.
+ */
+public class BCNFDecomposer {
+    private final FunctionalDependencySet fds;
+    private final DecompositionNode root;
+    private int fragments;
+
+    // region Constructors
+
+    /**
+     * decomposer for a relation, the relation is not modified
+     * @param r
+     */
+    public BCNFDecomposer(Relation r) {
+        this.fds = r.functionalDependencies;
+        this.root = new DecompositionNode(r);
+    }
+    // endregion
+
+    /**
+     * run the decomposition
+     * @return the decomposition tree, its leaves are in BCNF
+     */
+    public DecompositionNode decompose() {
+        Deque<DecompositionNode> worklist = new ArrayDeque<>();
+        Relation r = root.relation;
+        if (!fds.attributes().subsetOf(r.attributes)) {
+            root.relation = new Relation(r.attributes, fds.project(r.attributes)).name(r.name);
+        }
+        worklist.push(root);
+        while (!worklist.isEmpty()) {
+            DecompositionNode node = worklist.pop();
+            FunctionalDependencySet local = node.relation.functionalDependencies;
+            FunctionalDependency violation = firstViolation(node.relation.attributes, local);
+            if (violation == null) {
+                continue;
+            }
+            AttributeSet removed = AttributeSet.subtract(violation.rhs, violation.lhs);
+            AttributeSet a1 = AttributeSet.subtract(node.relation.attributes, removed);
+            AttributeSet a2 = new AttributeSet(violation);
+            Relation r1 = new Relation(a1, local.project(a1)).name("R" + (++fragments));
+            Relation r2 = new Relation(a2, local.project(a2)).name("R" + (++fragments));
+            node.split(violation, r1, r2);
+            worklist.push(node.right);
+            worklist.push(node.left);
+        }
+        return root;
+    }
+
+    /**
+     * the final relations of the decomposition
+     * @return
+     */
+    public Set<Relation> result() {
+        return new Set<>(decompose().leaves());
+    }
+
+    /**
+     * first dependency that violates BCNF in the fragment, the same test
+     * as Relation.BCNFViolations. checking a cover of the fragment's
+     * dependencies is enough and all left hand sides are closed in one batch
+     */
+    private static FunctionalDependency firstViolation(AttributeSet attributes, FunctionalDependencySet fds) {
+        List<FunctionalDependency> nontrivial = new ArrayList<>();
+        List<AttributeSet> lhs = new ArrayList<>();
+        for (FunctionalDependency fd : fds) {
+            if (Relation.mayViolateBCNF(fd, attributes)) {
+                nontrivial.add(fd);
+                lhs.add(fd.lhs);
+            }
+        }
+        List<AttributeSet> closures = fds.closureAll(lhs);
+        for (int i = 0; i < nontrivial.size(); i++) {
+            if (!attributes.subsetOf(closures.get(i))) {
+                return nontrivial.get(i);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,242 @@
+package db.relational;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * enumerates the candidate keys of a relation with the Lucchesi-Osborn
+ * algorithm. keys are produced one at a time as they are found, each one
+ * costs a polynomial number of closures, so a caller that only needs a
+ * few keys never pays for the rest.
+ *
+ * the attributes are partitioned by where they appear in the functional
+ * dependencies: attributes that no dependency derives (left-only and
+ * neither) form the core that is part of every key, and attributes that
+ * are derived but never used on a left hand side (right-only) are in no
+ * key, so they are the first to go when a superkey is minimized.
+ */
+public class CandidateKeyFinder implements Iterator<AttributeSet> {
+    private final AttributeSet attributes;
+    private final FunctionalDependencySet fds;
+    private final List<FunctionalDependency> generators;
+    private final AttributeSet core;
+    private final AttributeSet rightOnly;
+    private final AttributeSet both;
+
+    private final List<AttributeSet> keys = new ArrayList<>();
+    private final SetTrie<AttributeSet> keyTrie = new SetTrie<>();
+    private int returned;
+    private int keyIndex;
+    private int generatorIndex;
+
+    // region Constructors
+
+    /**
+     * candidate keys of a relation
+     * @param r
+     */
+    public CandidateKeyFinder(Relation r) {
+        this(r.attributes, r.functionalDependencies);
+    }
+
+    /**
+     * candidate keys of the attributes under fds, fds may mention
+     * attributes outside of attributes
+     * @param attributes
+     * @param fds
+     */
+    public CandidateKeyFinder(AttributeSet attributes, FunctionalDependencySet fds) {
+        this(attributes, fds, generators(attributes, fds), Collections.<AttributeSet>emptyList(),
+                Collections.<AttributeSet>emptyList());
+    }
+
+    /**
+     * candidate keys seeded with keys and superkeys that are known in
+     * advance, used to update a key set after the dependencies changed.
+     * the keys are taken as they are, each seed is minimized first. the
+     * generation step only minimizes the sets that contain none of them,
+     * so good seeds leave little to search
+     * @param attributes
+     * @param fds
+     * @param generators a cover of the dependencies over attributes
+     * @param keys candidate keys under fds
+     * @param seeds superkeys under fds
+     */
+    CandidateKeyFinder(AttributeSet attributes, FunctionalDependencySet fds, List<FunctionalDependency> generators,
+                       List<AttributeSet> keys, List<AttributeSet> seeds) {
+        this.attributes = new AttributeSet(attributes);
+        this.fds = fds;
+        this.generators = generators;
+
+        AttributeSet derivable = new AttributeSet();
+        AttributeSet inLHS = new AttributeSet();
+        for (FunctionalDependency fd : generators) {
+            derivable.union(AttributeSet.subtract(fd.rhs, fd.lhs));
+            inLHS.union(fd.lhs);
+        }
+        derivable.retain(attributes);
+        this.core = AttributeSet.subtract(attributes, derivable);
+        this.rightOnly = AttributeSet.subtract(derivable, inLHS);
+        this.both = AttributeSet.intersect(derivable, inLHS);
+
+        for (AttributeSet key : keys) {
+            addKey(new AttributeSet(key));
+        }
+        // a seed that contains a known key is left to the generation step
+        for (AttributeSet seed : seeds) {
+            if (!containsKey(seed)) {
+                addKey(minimize(seed));
+            }
+        }
+    }
+
+    /**
+     * the dependencies the key generation step works with, it needs a
+     * cover of the dependencies over the relation's own attributes, so
+     * dependencies that leave the relation are projected onto it
+     * @param attributes
+     * @param fds
+     * @return
+     */
+    static List<FunctionalDependency> generators(AttributeSet attributes, FunctionalDependencySet fds) {
+        FunctionalDependencySet functional = fds.functional();
+        for (FunctionalDependency fd : functional) {
+            if (!fd.within(attributes)) {
+                return functional.project(attributes).toList();
+            }
+        }
+        return functional.toList();
+    }
+    // endregion
+
+    /**
+     * attributes that are in every candidate key
+     * @return
+     */
+    public AttributeSet getCore() {
+        return new AttributeSet(core);
+    }
+
+    /**
+     * attributes that are derived but never on a left hand side,
+     * they are in no candidate key
+     * @return
+     */
+    public AttributeSet getRightOnly() {
+        return new AttributeSet(rightOnly);
+    }
+
+    /**
+     * attributes that are derived and on some left hand side, the
+     * only ones a search for keys has to choose between
+     * @return
+     */
+    public AttributeSet getBoth() {
+        return new AttributeSet(both);
+    }
+
+    /**
+     * one candidate key, found without enumerating the others
+     * @return
+     */
+    public AttributeSet findOne() {
+        if (keys.isEmpty()) {
+            addKey(minimize(attributes));
+        }
+        return new AttributeSet(keys.get(0));
+    }
+
+    /**
+     * every candidate key, including the ones already returned
+     * by next()
+     * @return
+     */
+    public List<AttributeSet> findAll() {
+        while (hasNext()) {
+            next();
+        }
+        List<AttributeSet> all = new ArrayList<>();
+        for (AttributeSet key : keys) {
+            all.add(new AttributeSet(key));
+        }
+        return all;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return returned < keys.size() || advance();
+    }
+
+    @Override
+    public AttributeSet next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return new AttributeSet(keys.get(returned++));
+    }
+
+    /**
+     * run the Lucchesi-Osborn step until a new key is found: for a known
+     * key K and a dependency X -> Y, X u (K - Y) is a superkey, if it does
+     * not contain a known key its minimization is a new key
+     * @return whether a new key was found
+     */
+    private boolean advance() {
+        if (keys.isEmpty()) {
+            addKey(minimize(attributes));
+            return true;
+        }
+        while (keyIndex < keys.size()) {
+            AttributeSet key = keys.get(keyIndex);
+            while (generatorIndex < generators.size()) {
+                FunctionalDependency fd = generators.get(generatorIndex++);
+                if (fd.rhs.disjoint(key)) {
+                    continue;
+                }
+                AttributeSet s = AttributeSet.subtract(key, fd.rhs);
+                s.union(fd.lhs);
+                if (!containsKey(s)) {
+                    addKey(minimize(s));
+                    return true;
+                }
+            }
+            keyIndex++;
+            generatorIndex = 0;
+        }
+        return false;
+    }
+
+    private void addKey(AttributeSet key) {
+        if (keyTrie.put(key, key) == null) {
+            keys.add(key);
+        }
+    }
+
+    private boolean containsKey(AttributeSet attrs) {
+        return keyTrie.containsSubsetOf(attrs);
+    }
+
+    /**
+     * drop attributes from a superkey while it stays a superkey,
+     * right-only attributes first, core attributes are never dropped
+     * @param superkey
+     * @return a candidate key contained in superkey
+     */
+    private AttributeSet minimize(AttributeSet superkey) {
+        AttributeSet key = new AttributeSet(superkey);
+        AttributeSet first = AttributeSet.intersect(key, rightOnly);
+        AttributeSet then = AttributeSet.subtract(AttributeSet.subtract(key, core), rightOnly);
+        for (AttributeSet order : new AttributeSet[]{first, then}) {
+            for (int id = order.nextId(0); id >= 0; id = order.nextId(id + 1)) {
+                key.removeId(id);
+                if (!attributes.subsetOf(key.closureUnder(fds))) {
+                    key.addId(id);
+                }
+            }
+        }
+        return key;
+    }
+}
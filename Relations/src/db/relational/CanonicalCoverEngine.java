@@ -0,0 +1,263 @@
+package db.relational;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * computes a canonical cover on an indexed, mutable copy of a functional
+ * dependency set. left and right hand sides are shrunk in place and the
+ * per-attribute left hand side index is patched as they shrink, so no
+ * dependency set is ever rebuilt. an extraneous attribute is found with one
+ * closure that leaves the dependency under test out and stops as soon as
+ * the attribute in question is derived.
+ *
+ * every pass merges equal left hand sides, removes extraneous left hand
+ * side attributes and then extraneous right hand side attributes. a pass
+ * that changes nothing ends the loop, and every pass that does change
+ * something removes at least one attribute occurrence, so the number of
+ * passes is bounded by the size of the set (in practice two or three).
+ */
+public class CanonicalCoverEngine {
+    private AttributeSet[] lhs;
+    private AttributeSet[] rhs;
+    private int[] lhsSize;
+    private int n;
+
+    private int[][] index;
+    private int[] indexSize;
+
+    // closure scratch space, reused by every closure
+    private int[] remaining;
+    private int[] stamp;
+    private int epoch;
+    private int[] queue;
+
+    // region Constructors
+
+    /**
+     * copy of fds to reduce, the fds themselves are never modified and
+     * multivalued dependencies are left out
+     * @param fds
+     */
+    public CanonicalCoverEngine(List<FunctionalDependency> fds) {
+        int count = 1;
+        for (FunctionalDependency fd : fds) {
+            count = Math.max(count, Math.max(fd.lhs.length(), fd.rhs.length()));
+        }
+        this.lhs = new AttributeSet[fds.size()];
+        this.rhs = new AttributeSet[fds.size()];
+        this.lhsSize = new int[fds.size()];
+        this.index = new int[count][];
+        this.indexSize = new int[count];
+        this.queue = new int[count];
+
+        HashMap<AttributeSet, Integer> byLHS = new HashMap<>();
+        for (FunctionalDependency fd : fds) {
+            AttributeSet r = AttributeSet.subtract(fd.rhs, fd.lhs);
+            if (r.isEmpty() || fd.multivalued) {
+                continue;
+            }
+            Integer i = byLHS.get(fd.lhs);
+            if (i != null) {
+                rhs[i].union(r);
+                continue;
+            }
+            lhs[n] = new AttributeSet(fd.lhs);
+            rhs[n] = r;
+            lhsSize[n] = lhs[n].size();
+            byLHS.put(lhs[n], n);
+            for (int id = lhs[n].nextId(0); id >= 0; id = lhs[n].nextId(id + 1)) {
+                link(id, n);
+            }
+            n++;
+        }
+        this.remaining = new int[n];
+        this.stamp = new int[n];
+    }
+    // endregion
+
+    private void link(int id, int i) {
+        if (index[id] == null) {
+            index[id] = new int[2];
+        } else if (indexSize[id] == index[id].length) {
+            index[id] = Arrays.copyOf(index[id], indexSize[id] * 2);
+        }
+        index[id][indexSize[id]++] = i;
+    }
+
+    private void unlink(int id, int i) {
+        int[] list = index[id];
+        for (int j = 0; j < indexSize[id]; j++) {
+            if (list[j] == i) {
+                list[j] = list[--indexSize[id]];
+                return;
+            }
+        }
+    }
+
+    private void kill(int i) {
+        for (int id = lhs[i].nextId(0); id >= 0; id = lhs[i].nextId(id + 1)) {
+            unlink(id, i);
+        }
+        rhs[i] = null;
+    }
+
+    private boolean alive(int i) {
+        return rhs[i] != null;
+    }
+
+    /**
+     * reduce the set to a canonical cover
+     * @return the cover as new functional dependencies
+     */
+    public FunctionalDependencySet cover() {
+        boolean changed = true;
+        while (changed) {
+            changed = reduceLHS();
+            changed |= reduceRHS();
+            changed |= mergeLHS();
+        }
+        FunctionalDependencySet fc = new FunctionalDependencySet();
+        for (int i = 0; i < n; i++) {
+            if (alive(i)) {
+                fc.add(new FunctionalDependency(lhs[i], rhs[i]));
+            }
+        }
+        return fc;
+    }
+
+    /**
+     * A in a is extraneous in a -> b when b is in (a - A)+ under the
+     * current set, the attribute is dropped right away so later checks
+     * see the reduced dependency
+     */
+    private boolean reduceLHS() {
+        boolean changed = false;
+        for (int i = 0; i < n; i++) {
+            if (!alive(i) || lhsSize[i] == 0) {
+                continue;
+            }
+            AttributeSet l = lhs[i];
+            for (int id = l.nextId(0); id >= 0; id = l.nextId(id + 1)) {
+                l.removeId(id);
+                if (implies(l, rhs[i], -1)) {
+                    unlink(id, i);
+                    lhsSize[i]--;
+                    changed = true;
+                } else {
+                    l.addId(id);
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * A in b is extraneous in a -> b when A is in (a u (b - A))+ under
+     * the set without a -> b
+     */
+    private boolean reduceRHS() {
+        boolean changed = false;
+        for (int i = 0; i < n; i++) {
+            if (!alive(i)) {
+                continue;
+            }
+            AttributeSet r = rhs[i];
+            AttributeSet target = new AttributeSet(r.dictionary());
+            for (int id = r.nextId(0); id >= 0; id = r.nextId(id + 1)) {
+                r.removeId(id);
+                target.addId(id);
+                AttributeSet start = AttributeSet.union(lhs[i], r);
+                if (implies(start, target, i)) {
+                    changed = true;
+                } else {
+                    r.addId(id);
+                }
+                target.removeId(id);
+            }
+            if (r.isEmpty()) {
+                kill(i);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * merge dependencies whose left hand sides became equal
+     */
+    private boolean mergeLHS() {
+        boolean changed = false;
+        HashMap<AttributeSet, Integer> byLHS = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            if (!alive(i)) {
+                continue;
+            }
+            Integer first = byLHS.putIfAbsent(lhs[i], i);
+            if (first != null) {
+                rhs[first].union(rhs[i]);
+                kill(i);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * whether target is in the closure of start, skipping dependency
+     * masked, the closure stops as soon as target is reached
+     */
+    private boolean implies(AttributeSet start, AttributeSet target, int masked) {
+        AttributeSet closure = new AttributeSet(start);
+        AttributeSet missing = AttributeSet.subtract(target, closure);
+        if (missing.isEmpty()) {
+            return true;
+        }
+        if (++epoch == 0) {
+            Arrays.fill(stamp, 0);
+            epoch = 1;
+        }
+        int head = 0;
+        int tail = 0;
+        for (int id = closure.nextId(0); id >= 0; id = closure.nextId(id + 1)) {
+            queue[tail++] = id;
+        }
+        for (int i = 0; i < n; i++) {
+            if (lhsSize[i] == 0 && i != masked && alive(i)) {
+                tail = fire(i, closure, missing, tail);
+                if (missing.isEmpty()) {
+                    return true;
+                }
+            }
+        }
+        while (head < tail) {
+            int id = queue[head++];
+            int[] dependents = index[id];
+            for (int d = indexSize[id] - 1; d >= 0; d--) {
+                int i = dependents[d];
+                if (stamp[i] != epoch) {
+                    stamp[i] = epoch;
+                    remaining[i] = lhsSize[i];
+                }
+                if (--remaining[i] == 0 && i != masked) {
+                    tail = fire(i, closure, missing, tail);
+                    if (missing.isEmpty()) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private int fire(int i, AttributeSet closure, AttributeSet missing, int tail) {
+        AttributeSet r = rhs[i];
+        for (int id = r.nextId(0); id >= 0; id = r.nextId(id + 1)) {
+            if (closure.addId(id) == 1) {
+                queue[tail++] = id;
+                missing.removeId(id);
+            }
+        }
+        return tail;
+    }
+}
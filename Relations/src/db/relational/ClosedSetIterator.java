@@ -0,0 +1,92 @@
+package db.relational;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * lazily walks the closed sets of a set of functional dependencies over
+ * a set of attributes, the sets X with X+ = X inside the attributes, with
+ * Ganter's NextClosure algorithm. every closed set is visited exactly once
+ * in lectic order, where of two sets the one holding the smallest id they
+ * differ in comes later, so the cost grows with the number of closed sets
+ * instead of with the 2^n subsets whose closures they are. each step takes
+ * at most one closure per attribute and only the current closed set is
+ * held.
+ */
+public class ClosedSetIterator implements Iterator<AttributeSet> {
+    private final ClosureEngine engine;
+    private final AttributeSet attributes;
+    private final int[] ids;
+
+    private AttributeSet next;
+    private AttributeSet last;
+
+    // region Constructors
+
+    /**
+     * closed sets of fds inside attributes, starting from the closure
+     * of the empty set
+     * @param fds
+     * @param attributes
+     */
+    public ClosedSetIterator(FunctionalDependencySet fds, AttributeSet attributes) {
+        this.engine = fds.closureEngine();
+        this.attributes = new AttributeSet(attributes);
+        this.ids = attributes.ids();
+        this.next = close(new AttributeSet(attributes.dictionary()));
+    }
+    // endregion
+
+    /**
+     * closure of attrs cut down to the attributes
+     */
+    private AttributeSet close(AttributeSet attrs) {
+        AttributeSet closure = engine.closure(attrs);
+        closure.retain(attributes);
+        return closure;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && last != null) {
+            next = successor(last);
+            last = null;
+        }
+        return next != null;
+    }
+
+    @Override
+    public AttributeSet next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        AttributeSet closed = next;
+        next = null;
+        last = closed;
+        return new AttributeSet(closed);
+    }
+
+    /**
+     * the closed set after a in lectic order: for the largest attribute
+     * i not in a, close (a restricted to the attributes below i) u {i},
+     * and take it when the closure adds nothing below i
+     * @param a
+     * @return null when a holds every attribute
+     */
+    private AttributeSet successor(AttributeSet a) {
+        AttributeSet prefix = new AttributeSet(a);
+        for (int i = ids.length - 1; i >= 0; i--) {
+            int id = ids[i];
+            if (prefix.removeId(id) > 0) {
+                continue;
+            }
+            AttributeSet start = new AttributeSet(prefix);
+            start.addId(id);
+            AttributeSet closed = close(start);
+            if (AttributeSet.subtract(closed, prefix).nextId(0) == id) {
+                return closed;
+            }
+        }
+        return null;
+    }
+}
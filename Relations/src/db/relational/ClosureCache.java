@@ -0,0 +1,105 @@
+package db.relational;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * bounded least recently used cache of attribute closures for one
+ * functional dependency set. entries are tagged with the version of
+ * the set they were computed against, a lookup with a newer version
+ * empties the cache first.
+ */
+public class ClosureCache {
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final int capacity;
+    private final LinkedHashMap<AttributeSet, AttributeSet> closures;
+    private int version;
+    private long hits;
+    private long misses;
+
+    // region Constructors
+    public ClosureCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * cache holding at most capacity closures
+     * @param capacity
+     */
+    public ClosureCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.closures = new LinkedHashMap<AttributeSet, AttributeSet>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<AttributeSet, AttributeSet> eldest) {
+                return size() > ClosureCache.this.capacity;
+            }
+        };
+    }
+    // endregion
+
+    /**
+     * cached closure of attrs computed against the given version,
+     * null on a miss
+     * @param attrs
+     * @param version
+     * @return
+     */
+    public synchronized AttributeSet get(AttributeSet attrs, int version) {
+        if (version != this.version) {
+            closures.clear();
+            this.version = version;
+        }
+        AttributeSet closure = closures.get(attrs);
+        if (closure == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return closure;
+    }
+
+    /**
+     * remember the closure of attrs, both sets are stored as given
+     * so the caller must not modify them afterwards
+     * @param attrs
+     * @param closure
+     * @param version
+     */
+    public synchronized void put(AttributeSet attrs, AttributeSet closure, int version) {
+        if (version != this.version) {
+            closures.clear();
+            this.version = version;
+        }
+        closures.put(attrs, closure);
+    }
+
+    public synchronized void clear() {
+        closures.clear();
+    }
+
+    public synchronized int size() {
+        return closures.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("ClosureCache(size=%d, capacity=%d, hits=%d, misses=%d)",
+                closures.size(), capacity, hits, misses);
+    }
+}
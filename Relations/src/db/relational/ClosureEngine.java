@@ -0,0 +1,356 @@
+package db.relational;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * compiled form of a functional dependency set for attribute closures
+ * in time linear in the size of the set (LINCLOSURE): every attribute
+ * indexes the dependencies whose left hand side contains it, and every
+ * dependency counts the left hand side attributes that are not yet in
+ * the closure. a dependency fires when its counter reaches zero.
+ * dependencies can be added and removed one at a time without
+ * recompiling the rest.
+ */
+public class ClosureEngine {
+    private AttributeSet[] lhs;
+    private AttributeSet[] rhs;
+    private int[] lhsSize;
+    private int slots;
+    private int live;
+    private int[] emptyLhs = new int[4];
+    private int emptyCount;
+    private int[][] index = new int[0][];
+    private int[] indexSize = new int[0];
+    // one past the highest id of any compiled dependency
+    private int bound;
+    private final HashMap<FunctionalDependency, Integer> slotOf = new HashMap<>();
+
+    // region Constructors
+
+    /**
+     * compile a list of functional dependencies, the left and right
+     * hand sides are copied so later changes to the fds are not seen
+     * @param fds
+     */
+    public ClosureEngine(List<FunctionalDependency> fds) {
+        int n = Math.max(fds.size(), 4);
+        this.lhs = new AttributeSet[n];
+        this.rhs = new AttributeSet[n];
+        this.lhsSize = new int[n];
+        for (FunctionalDependency fd : fds) {
+            this.add(fd);
+        }
+    }
+
+    /**
+     * compiled functional dependencies with a prebuilt index, as read
+     * from a snapshot: dependents[id] holds the positions in fds of the
+     * dependencies whose left hand side contains id. the left and right
+     * hand sides are copied like in the other constructor, only the
+     * index is taken as it is
+     * @param fds functional dependencies without duplicates
+     * @param dependents
+     */
+    ClosureEngine(List<FunctionalDependency> fds, int[][] dependents) {
+        int n = Math.max(fds.size(), 4);
+        this.lhs = new AttributeSet[n];
+        this.rhs = new AttributeSet[n];
+        this.lhsSize = new int[n];
+        for (FunctionalDependency fd : fds) {
+            FunctionalDependency copy = new FunctionalDependency(fd);
+            int i = slots++;
+            lhs[i] = copy.lhs;
+            rhs[i] = copy.rhs;
+            lhsSize[i] = copy.lhs.size();
+            bound = Math.max(bound, Math.max(copy.lhs.length(), copy.rhs.length()));
+            slotOf.put(copy, i);
+            if (lhsSize[i] == 0) {
+                if (emptyCount == emptyLhs.length) {
+                    emptyLhs = Arrays.copyOf(emptyLhs, emptyCount * 2);
+                }
+                emptyLhs[emptyCount++] = i;
+            }
+        }
+        this.live = slots;
+        this.index = dependents;
+        this.indexSize = new int[dependents.length];
+        for (int id = 0; id < dependents.length; id++) {
+            indexSize[id] = dependents[id] == null ? 0 : dependents[id].length;
+        }
+    }
+    // endregion
+
+    /**
+     * number of compiled functional dependencies
+     * @return
+     */
+    public int size() {
+        return live;
+    }
+
+    /**
+     * slot of a compiled dependency, -1 if it is not compiled
+     * @param fd
+     * @return
+     */
+    public int slotOf(FunctionalDependency fd) {
+        Integer slot = slotOf.get(fd);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * compile one more functional dependency, the index is extended
+     * in place so earlier dependencies are not touched. multivalued
+     * dependencies are not compiled, see DependencyBasis
+     * @param fd
+     * @return false if the dependency was already compiled or is multivalued
+     */
+    public boolean add(FunctionalDependency fd) {
+        if (fd.multivalued) {
+            return false;
+        }
+        FunctionalDependency copy = new FunctionalDependency(fd);
+        if (slotOf.containsKey(copy)) {
+            return false;
+        }
+        if (slots == lhs.length) {
+            int n = slots * 2;
+            lhs = Arrays.copyOf(lhs, n);
+            rhs = Arrays.copyOf(rhs, n);
+            lhsSize = Arrays.copyOf(lhsSize, n);
+        }
+        int i = slots++;
+        lhs[i] = copy.lhs;
+        rhs[i] = copy.rhs;
+        lhsSize[i] = copy.lhs.size();
+        bound = Math.max(bound, Math.max(copy.lhs.length(), copy.rhs.length()));
+        slotOf.put(copy, i);
+        live++;
+        if (lhsSize[i] == 0) {
+            if (emptyCount == emptyLhs.length) {
+                emptyLhs = Arrays.copyOf(emptyLhs, emptyCount * 2);
+            }
+            emptyLhs[emptyCount++] = i;
+        }
+        for (int id = lhs[i].nextId(0); id >= 0; id = lhs[i].nextId(id + 1)) {
+            if (id >= index.length) {
+                int n = Math.max(id + 1, index.length * 2);
+                index = Arrays.copyOf(index, n);
+                indexSize = Arrays.copyOf(indexSize, n);
+            }
+            if (index[id] == null) {
+                index[id] = new int[2];
+            } else if (indexSize[id] == index[id].length) {
+                index[id] = Arrays.copyOf(index[id], indexSize[id] * 2);
+            }
+            index[id][indexSize[id]++] = i;
+        }
+        return true;
+    }
+
+    /**
+     * drop a compiled functional dependency, it is unlinked from the
+     * index of each of its left hand side attributes
+     * @param fd
+     * @return false if the dependency was not compiled
+     */
+    public boolean remove(FunctionalDependency fd) {
+        Integer slot = slotOf.remove(fd);
+        if (slot == null) {
+            return false;
+        }
+        int i = slot;
+        if (lhsSize[i] == 0) {
+            emptyCount = unlink(emptyLhs, emptyCount, i);
+        }
+        for (int id = lhs[i].nextId(0); id >= 0; id = lhs[i].nextId(id + 1)) {
+            indexSize[id] = unlink(index[id], indexSize[id], i);
+        }
+        lhs[i] = null;
+        rhs[i] = null;
+        live--;
+        if (slots > 16 && live < slots / 2) {
+            compact();
+        }
+        return true;
+    }
+
+    private static int unlink(int[] list, int size, int value) {
+        for (int j = 0; j < size; j++) {
+            if (list[j] == value) {
+                list[j] = list[--size];
+                return size;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * renumber the live dependencies once too many slots are dead
+     */
+    private void compact() {
+        List<FunctionalDependency> fds = new ArrayList<>(live);
+        for (int i = 0; i < slots; i++) {
+            if (lhs[i] != null) {
+                fds.add(new FunctionalDependency(lhs[i], rhs[i]));
+            }
+        }
+        slots = 0;
+        live = 0;
+        emptyCount = 0;
+        Arrays.fill(lhs, null);
+        Arrays.fill(rhs, null);
+        Arrays.fill(indexSize, 0);
+        slotOf.clear();
+        for (FunctionalDependency fd : fds) {
+            this.add(fd);
+        }
+    }
+
+    /**
+     * closure of attrs under the compiled functional dependencies
+     * @param attrs
+     * @return a new attribute set, attrs is not modified
+     */
+    public AttributeSet closure(AttributeSet attrs) {
+        return closure(attrs, -1);
+    }
+
+    /**
+     * closure of attrs with one compiled dependency left out, nothing
+     * is copied or recompiled
+     * @param attrs
+     * @param masked slot of the dependency to leave out, see slotOf
+     * @return a new attribute set, attrs is not modified
+     */
+    public AttributeSet closure(AttributeSet attrs, int masked) {
+        AttributeSet result = new AttributeSet(attrs);
+        int[] remaining = Arrays.copyOf(lhsSize, slots);
+        // every id enters the queue at most once and all ids are below
+        // the bound of the dependencies or of attrs
+        int[] queue = new int[Math.max(bound, attrs.length())];
+        int head = 0;
+        int tail = 0;
+
+        for (int id = result.nextId(0); id >= 0; id = result.nextId(id + 1)) {
+            queue[tail++] = id;
+        }
+        for (int e = 0; e < emptyCount; e++) {
+            if (emptyLhs[e] != masked) {
+                tail = fire(emptyLhs[e], result, queue, tail);
+            }
+        }
+        while (head < tail) {
+            int id = queue[head++];
+            if (id >= index.length) {
+                continue;
+            }
+            int[] dependents = index[id];
+            for (int d = indexSize[id] - 1; d >= 0; d--) {
+                int i = dependents[d];
+                if (--remaining[i] == 0 && i != masked) {
+                    tail = fire(i, result, queue, tail);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * closures of up to 64 attribute sets at once, bit-sliced: slice[a]
+     * has bit j set when attribute a is in the closure of the j-th input,
+     * so one pass over a dependency updates all inputs of the block. a
+     * dependency is looked at again only when a slice of its left hand
+     * side changed.
+     * @param inputs
+     * @param from first input of the block
+     * @param to one past the last input of the block, at most from + 64
+     * @param results closures are stored at the same positions
+     */
+    public void closureBlock(List<AttributeSet> inputs, int from, int to, AttributeSet[] results) {
+        int count = bound;
+        for (int j = from; j < to; j++) {
+            count = Math.max(count, inputs.get(j).length());
+        }
+        long[] slice = new long[count];
+        long all = to - from == 64 ? -1L : (1L << (to - from)) - 1;
+        for (int j = from; j < to; j++) {
+            AttributeSet attrs = inputs.get(j);
+            long bit = 1L << (j - from);
+            for (int id = attrs.nextId(0); id >= 0; id = attrs.nextId(id + 1)) {
+                slice[id] |= bit;
+            }
+        }
+
+        int n = Math.max(slots, 1);
+        int[] queue = new int[n];
+        boolean[] queued = new boolean[n];
+        int head = 0;
+        int size = 0;
+        for (int i = 0; i < slots; i++) {
+            if (lhs[i] != null) {
+                queue[size++] = i;
+                queued[i] = true;
+            }
+        }
+        while (size > 0) {
+            int i = queue[head];
+            head = head + 1 == n ? 0 : head + 1;
+            size--;
+            queued[i] = false;
+
+            long fire = all;
+            AttributeSet l = lhs[i];
+            for (int id = l.nextId(0); id >= 0 && fire != 0; id = l.nextId(id + 1)) {
+                fire &= slice[id];
+            }
+            if (fire == 0) {
+                continue;
+            }
+            AttributeSet r = rhs[i];
+            for (int id = r.nextId(0); id >= 0; id = r.nextId(id + 1)) {
+                long before = slice[id];
+                if ((before | fire) == before) {
+                    continue;
+                }
+                slice[id] = before | fire;
+                if (id < index.length) {
+                    for (int d = indexSize[id] - 1; d >= 0; d--) {
+                        int dependent = index[id][d];
+                        if (!queued[dependent]) {
+                            queued[dependent] = true;
+                            queue[(head + size) % n] = dependent;
+                            size++;
+                        }
+                    }
+                }
+            }
+        }
+
+        for (int j = from; j < to; j++) {
+            results[j] = new AttributeSet(inputs.get(j).dictionary());
+        }
+        for (int id = 0; id < count; id++) {
+            for (long w = slice[id]; w != 0; w &= w - 1) {
+                results[from + Long.numberOfTrailingZeros(w)].addId(id);
+            }
+        }
+    }
+
+    /**
+     * add the right hand side of dependency i to result, queueing
+     * the attributes that were not there yet
+     */
+    private int fire(int i, AttributeSet result, int[] queue, int tail) {
+        AttributeSet r = rhs[i];
+        for (int id = r.nextId(0); id >= 0; id = r.nextId(id + 1)) {
+            if (result.addId(id) == 1) {
+                queue[tail++] = id;
+            }
+        }
+        return tail;
+    }
+}
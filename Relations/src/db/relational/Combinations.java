@@ -0,0 +1,361 @@
+package db.relational;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * the k-subsets of n positions as bitmask words, produced lazily in colex
+ * order (ascending as numbers) with Gosper's hack, so only the current
+ * subset exists at any time. the subsets are numbered by the combinatorial
+ * number system, which lets a split jump straight to the middle of its
+ * range, so parallel streams divide the work evenly. a word has 64 bits,
+ * so n is at most 64.
+ *
+ * the static of methods enumerate the subsets of an attribute set, sets
+ * with more than 64 attributes fall back to an array of positions that
+ * is stepped sequentially in the same order.
+ */
+public class Combinations implements Spliterator.OfLong {
+    public static final int MAX_POSITIONS = 64;
+
+    // BINOMIAL[n][k] = n choose k, 64 choose 32 still fits in a long
+    private static final long[][] BINOMIAL = new long[MAX_POSITIONS + 1][];
+
+    static {
+        for (int n = 0; n <= MAX_POSITIONS; n++) {
+            BINOMIAL[n] = new long[n + 1];
+            BINOMIAL[n][0] = BINOMIAL[n][n] = 1;
+            for (int k = 1; k < n; k++) {
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+            }
+        }
+    }
+
+    private final int k;
+    private long mask;
+    private long index;
+    private final long fence;
+
+    // region Constructors
+
+    /**
+     * every k-subset of the positions 0 to n - 1
+     * @param n at most 64
+     * @param k
+     */
+    public Combinations(int n, int k) {
+        if (n < 0 || n > MAX_POSITIONS) {
+            throw new IllegalArgumentException("no bitmask word for " + n + " positions");
+        }
+        this.k = k;
+        this.index = 0;
+        this.fence = count(n, k);
+        this.mask = fence == 0 ? 0 : lowest(k);
+    }
+
+    private Combinations(int k, long mask, long index, long fence) {
+        this.k = k;
+        this.mask = mask;
+        this.index = index;
+        this.fence = fence;
+    }
+    // endregion
+
+    /**
+     * n choose k
+     * @param n at most 64
+     * @param k
+     * @return
+     */
+    public static long count(int n, int k) {
+        return k < 0 || k > n ? 0 : BINOMIAL[n][k];
+    }
+
+    private static long lowest(int k) {
+        return k == 64 ? -1L : (1L << k) - 1;
+    }
+
+    /**
+     * Gosper's hack: the next larger word with as many bits set, mask
+     * must not be zero and must have a successor within 64 bits
+     * @param mask
+     * @return
+     */
+    public static long next(long mask) {
+        long c = mask & -mask;
+        long r = mask + c;
+        return (((r ^ mask) >>> 2) / c) | r;
+    }
+
+    /**
+     * the k-subset with the given colex rank
+     * @param rank
+     * @param k
+     * @return
+     */
+    static long unrank(long rank, int k) {
+        long mask = 0;
+        int c = MAX_POSITIONS - 1;
+        for (int i = k; i > 0; i--) {
+            while (count(c, i) > rank) {
+                c--;
+            }
+            mask |= 1L << c;
+            rank -= count(c, i);
+            c--;
+        }
+        return mask;
+    }
+
+    @Override
+    public boolean tryAdvance(LongConsumer action) {
+        if (index >= fence) {
+            return false;
+        }
+        long current = mask;
+        if (++index < fence) {
+            mask = next(mask);
+        }
+        action.accept(current);
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(LongConsumer action) {
+        long m = mask;
+        long i = index;
+        index = fence;
+        while (i < fence) {
+            action.accept(m);
+            if (++i < fence) {
+                m = next(m);
+            }
+        }
+    }
+
+    @Override
+    public Combinations trySplit() {
+        long mid = index + ((fence - index) >>> 1);
+        if (mid == index) {
+            return null;
+        }
+        Combinations prefix = new Combinations(k, mask, index, mid);
+        mask = unrank(mid, k);
+        index = mid;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | DISTINCT | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+    }
+
+    /**
+     * the subsets of attrs with k attributes
+     * @param attrs
+     * @param k
+     * @return
+     */
+    public static Spliterator<AttributeSet> of(AttributeSet attrs, int k) {
+        int[] ids = attrs.ids();
+        AttributeDictionary dictionary = attrs.dictionary();
+        if (ids.length <= MAX_POSITIONS) {
+            return new Subsets(new Combinations(ids.length, k), ids, dictionary);
+        }
+        return Spliterators.spliteratorUnknownSize(new WideSubsets(ids, k, k, dictionary),
+                ORDERED | DISTINCT | NONNULL | IMMUTABLE);
+    }
+
+    /**
+     * the subsets of attrs with from to to attributes, smallest first
+     * @param attrs
+     * @param from
+     * @param to
+     * @return
+     */
+    public static Spliterator<AttributeSet> of(AttributeSet attrs, int from, int to) {
+        int[] ids = attrs.ids();
+        AttributeDictionary dictionary = attrs.dictionary();
+        Iterator<AttributeSet> subsets;
+        if (ids.length <= MAX_POSITIONS) {
+            subsets = new NarrowSubsets(ids, from, to, dictionary);
+        } else {
+            subsets = new WideSubsets(ids, from, to, dictionary);
+        }
+        return Spliterators.spliteratorUnknownSize(subsets, ORDERED | DISTINCT | NONNULL | IMMUTABLE);
+    }
+
+    /**
+     * the attributes of ids at the positions set in mask
+     * @param ids
+     * @param mask
+     * @param dictionary
+     * @return
+     */
+    static AttributeSet subset(int[] ids, long mask, AttributeDictionary dictionary) {
+        AttributeSet attrs = new AttributeSet(dictionary);
+        for (long m = mask; m != 0; m &= m - 1) {
+            attrs.addId(ids[Long.numberOfTrailingZeros(m)]);
+        }
+        return attrs;
+    }
+
+    /**
+     * masks turned into attribute sets one at a time, splits with
+     * the masks
+     */
+    private static final class Subsets implements Spliterator<AttributeSet> {
+        private final Combinations masks;
+        private final int[] ids;
+        private final AttributeDictionary dictionary;
+
+        Subsets(Combinations masks, int[] ids, AttributeDictionary dictionary) {
+            this.masks = masks;
+            this.ids = ids;
+            this.dictionary = dictionary;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super AttributeSet> action) {
+            return masks.tryAdvance((long mask) -> action.accept(subset(ids, mask, dictionary)));
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super AttributeSet> action) {
+            masks.forEachRemaining((long mask) -> action.accept(subset(ids, mask, dictionary)));
+        }
+
+        @Override
+        public Spliterator<AttributeSet> trySplit() {
+            Combinations prefix = masks.trySplit();
+            return prefix == null ? null : new Subsets(prefix, ids, dictionary);
+        }
+
+        @Override
+        public long estimateSize() {
+            return masks.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return masks.characteristics();
+        }
+    }
+
+    /**
+     * subsets of up to 64 attributes by size, one mask at a time
+     */
+    private static final class NarrowSubsets implements Iterator<AttributeSet> {
+        private final int[] ids;
+        private final int to;
+        private final AttributeDictionary dictionary;
+        private int k;
+        private long mask;
+        private long left;
+
+        NarrowSubsets(int[] ids, int from, int to, AttributeDictionary dictionary) {
+            this.ids = ids;
+            this.to = Math.min(to, ids.length);
+            this.dictionary = dictionary;
+            this.k = Math.max(from, 0) - 1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (left == 0 && k < to) {
+                k++;
+                left = count(ids.length, k);
+                mask = lowest(k);
+            }
+            return left > 0;
+        }
+
+        @Override
+        public AttributeSet next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            AttributeSet attrs = subset(ids, mask, dictionary);
+            if (--left > 0) {
+                mask = Combinations.next(mask);
+            }
+            return attrs;
+        }
+    }
+
+    /**
+     * subsets of more than 64 attributes by size, the positions of the
+     * current subset are kept in an array and stepped in colex order
+     */
+    private static final class WideSubsets implements Iterator<AttributeSet> {
+        private final int[] ids;
+        private final int to;
+        private final AttributeDictionary dictionary;
+        private int[] positions;
+        private boolean pending;
+
+        WideSubsets(int[] ids, int from, int to, AttributeDictionary dictionary) {
+            this.ids = ids;
+            this.to = Math.min(to, ids.length);
+            this.dictionary = dictionary;
+            this.pending = start(Math.max(from, 0));
+        }
+
+        private boolean start(int k) {
+            if (k > to) {
+                return false;
+            }
+            positions = new int[k];
+            for (int i = 0; i < k; i++) {
+                positions[i] = i;
+            }
+            return true;
+        }
+
+        /**
+         * the colex successor: raise the lowest position that has room
+         * above it and pack the ones below it to the bottom
+         */
+        private boolean step() {
+            int k = positions.length;
+            for (int i = 0; i < k; i++) {
+                int limit = i + 1 < k ? positions[i + 1] : ids.length;
+                if (positions[i] + 1 < limit) {
+                    positions[i]++;
+                    for (int j = 0; j < i; j++) {
+                        positions[j] = j;
+                    }
+                    return true;
+                }
+            }
+            return start(k + 1);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return pending;
+        }
+
+        @Override
+        public AttributeSet next() {
+            if (!pending) {
+                throw new NoSuchElementException();
+            }
+            AttributeSet attrs = new AttributeSet(dictionary);
+            for (int p : positions) {
+                attrs.addId(ids[p]);
+            }
+            pending = step();
+            return attrs;
+        }
+    }
+}
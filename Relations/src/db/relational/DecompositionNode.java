@@ -0,0 +1,79 @@
+package db.relational;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * node of a decomposition tree, an inner node records the dependency
+ * that caused its relation to be split and the two fragments it was
+ * split into, the leaves are the final relations
+ */
+public class DecompositionNode {
+    public Relation relation;
+    public FunctionalDependency violation;
+    public DecompositionNode left;
+    public DecompositionNode right;
+
+    /**
+     * leaf for a relation
+     * @param relation
+     */
+    public DecompositionNode(Relation relation) {
+        this.relation = relation;
+    }
+
+    /**
+     * split this node on a violation into two fragments
+     * @param violation
+     * @param left
+     * @param right
+     */
+    public void split(FunctionalDependency violation, Relation left, Relation right) {
+        this.violation = violation;
+        this.left = new DecompositionNode(left);
+        this.right = new DecompositionNode(right);
+    }
+
+    public boolean isLeaf() {
+        return left == null;
+    }
+
+    /**
+     * final relations below this node, left to right
+     * @return
+     */
+    public List<Relation> leaves() {
+        List<Relation> leaves = new ArrayList<>();
+        List<DecompositionNode> stack = new ArrayList<>();
+        stack.add(this);
+        while (!stack.isEmpty()) {
+            DecompositionNode node = stack.remove(stack.size() - 1);
+            if (node.isLeaf()) {
+                leaves.add(node.relation);
+            } else {
+                stack.add(node.right);
+                stack.add(node.left);
+            }
+        }
+        return leaves;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        append(out, "");
+        return out.toString();
+    }
+
+    private void append(StringBuilder out, String indent) {
+        out.append(indent).append(relation);
+        if (!isLeaf()) {
+            out.append(" split on ").append(violation);
+        }
+        out.append("\n");
+        if (!isLeaf()) {
+            left.append(out, indent + "  ");
+            right.append(out, indent + "  ");
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package db.relational;
+
+import db.util.Set;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * checks a decomposition of a relation for a lossless join and for
+ * dependency preservation, both in polynomial time.
+ *
+ * the lossless join test is the tableau chase of LosslessJoinChecker.
+ *
+ * dependency preservation grows, for every dependency X -> Y, the set Z = X
+ * by (Z n Ri)+ n Ri over the fragments Ri until it is stable, the
+ * dependency is preserved when Y is in Z. this never computes the
+ * projections themselves.
+ */
+public class DecompositionVerifier {
+    private final AttributeSet attributes;
+    private final FunctionalDependencySet fds;
+    private final List<AttributeSet> fragments = new ArrayList<>();
+
+    // region Constructors
+
+    /**
+     * verifier for a decomposition of r into fragments
+     * @param r
+     * @param fragments
+     */
+    public DecompositionVerifier(Relation r, Set<Relation> fragments) {
+        this.attributes = new AttributeSet(r.attributes);
+        this.fds = r.localDependencies();
+        for (Relation fragment : fragments) {
+            this.fragments.add(fragment.attributes);
+        }
+    }
+    // endregion
+
+    /**
+     * both lossless and dependency preserving
+     * @return
+     */
+    public boolean verify() {
+        return isLossless() && isDependencyPreserving();
+    }
+
+    /**
+     * tableau chase over the fragments
+     * @return whether joining the fragments gives back the relation
+     */
+    public boolean isLossless() {
+        return new LosslessJoinChecker(attributes, fds, fragments).isLossless();
+    }
+
+    /**
+     * whether every dependency of the relation follows from the
+     * dependencies that hold on the fragments
+     * @return
+     */
+    public boolean isDependencyPreserving() {
+        for (FunctionalDependency fd : fds.withLHSIn(attributes)) {
+            if (!fd.multivalued && fd.rhs.subsetOf(attributes) && !isPreserved(fd)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isPreserved(FunctionalDependency fd) {
+        AttributeSet z = new AttributeSet(fd.lhs);
+        int change;
+        do {
+            change = 0;
+            for (AttributeSet fragment : fragments) {
+                AttributeSet t = AttributeSet.intersect(z, fragment).closureUnder(fds);
+                t.retain(fragment);
+                change += z.union(t);
+            }
+        } while (change != 0 && !fd.rhs.subsetOf(z));
+        return fd.rhs.subsetOf(z);
+    }
+}
@@ -0,0 +1,165 @@
+package db.relational;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * dependency basis of attribute sets under a mix of functional and
+ * multivalued dependencies over a universe of attributes (Beeri's
+ * algorithm as partition refinement).
+ *
+ * the basis of X partitions U - X into blocks such that X ->> Y holds
+ * exactly when Y - X is a union of blocks. it starts as the single block
+ * U - X and a dependency V ->> W splits every block S that is disjoint
+ * from V and that W cuts into S n W and S - W, until no dependency splits
+ * anything. a functional dependency V -> W takes part as V ->> A for every
+ * A in W - V. blocks are bitsets and every split adds a block, so there
+ * are at most |U| splits and a pass that splits nothing ends the loop. a
+ * dependency only visits the blocks of the attributes of W, found through
+ * an attribute to block index.
+ *
+ * X -> A holds for an A outside X exactly when {A} is a block of the basis
+ * and A is on the right hand side of some functional dependency without
+ * being on its left (coalescence), which gives closures under the mixed
+ * set.
+ */
+public class DependencyBasis {
+    private final AttributeSet universe;
+    private final int size;
+    private final AttributeSet[] lhs;
+    private final AttributeSet[] rhs;
+    private final AttributeSet determined;
+
+    // region Constructors
+
+    /**
+     * compile the dependencies, functional and multivalued, over universe
+     * @param universe
+     * @param fds
+     */
+    public DependencyBasis(AttributeSet universe, FunctionalDependencySet fds) {
+        this.universe = new AttributeSet(universe);
+        this.determined = new AttributeSet(universe.dictionary());
+        int last = -1;
+        for (int id = universe.nextId(0); id >= 0; id = universe.nextId(id + 1)) {
+            last = id;
+        }
+        this.size = last + 1;
+        List<AttributeSet> lhs = new ArrayList<>();
+        List<AttributeSet> rhs = new ArrayList<>();
+        for (FunctionalDependency fd : fds) {
+            AttributeSet w = AttributeSet.subtract(fd.rhs, fd.lhs);
+            if (w.isEmpty()) {
+                continue;
+            }
+            if (fd.multivalued) {
+                lhs.add(fd.lhs);
+                rhs.add(w);
+                continue;
+            }
+            determined.union(w);
+            for (int id = w.nextId(0); id >= 0; id = w.nextId(id + 1)) {
+                AttributeSet single = new AttributeSet(w.dictionary());
+                single.addId(id);
+                lhs.add(fd.lhs);
+                rhs.add(single);
+            }
+        }
+        this.lhs = lhs.toArray(new AttributeSet[0]);
+        this.rhs = rhs.toArray(new AttributeSet[0]);
+    }
+    // endregion
+
+    /**
+     * the blocks of the dependency basis of x that partition U - x, the
+     * attributes of x are trivially blocks of their own and left out
+     * @param x
+     * @return
+     */
+    public List<AttributeSet> basis(AttributeSet x) {
+        List<AttributeSet> blocks = new ArrayList<>();
+        AttributeSet rest = AttributeSet.subtract(universe, x);
+        if (rest.isEmpty()) {
+            return blocks;
+        }
+        blocks.add(rest);
+        // the block of every attribute of U - x, -1 elsewhere, so a
+        // dependency only looks at the blocks its right hand side hits
+        int[] blockOf = new int[size];
+        Arrays.fill(blockOf, -1);
+        for (int id = rest.nextId(0); id >= 0; id = rest.nextId(id + 1)) {
+            blockOf[id] = 0;
+        }
+        boolean split = true;
+        while (split) {
+            split = false;
+            for (int d = 0; d < lhs.length; d++) {
+                AttributeSet v = lhs[d];
+                AttributeSet w = rhs[d];
+                for (int id = w.nextId(0); id >= 0 && id < size; id = w.nextId(id + 1)) {
+                    int b = blockOf[id];
+                    if (b < 0) {
+                        continue;
+                    }
+                    // after a cut the part outside w holds no attribute of w
+                    // and the part inside is in w, so no block is cut twice
+                    AttributeSet s = blocks.get(b);
+                    if (s.subsetOf(w) || !s.disjoint(v)) {
+                        continue;
+                    }
+                    AttributeSet inside = AttributeSet.intersect(s, w);
+                    s.subtract(w);
+                    for (int i = inside.nextId(0); i >= 0; i = inside.nextId(i + 1)) {
+                        blockOf[i] = blocks.size();
+                    }
+                    blocks.add(inside);
+                    split = true;
+                }
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * closure of x under the functional and multivalued dependencies
+     * @param x
+     * @return
+     */
+    public AttributeSet closure(AttributeSet x) {
+        return closure(x, basis(x));
+    }
+
+    /**
+     * closure of x read off its already computed basis
+     */
+    AttributeSet closure(AttributeSet x, List<AttributeSet> blocks) {
+        AttributeSet closure = new AttributeSet(x);
+        for (AttributeSet block : blocks) {
+            if (block.size() == 1 && block.subsetOf(determined)) {
+                closure.union(block);
+            }
+        }
+        return closure;
+    }
+
+    /**
+     * whether a functional or multivalued dependency follows from the
+     * compiled dependencies
+     * @param fd
+     * @return
+     */
+    public boolean implies(FunctionalDependency fd) {
+        if (!fd.multivalued) {
+            return fd.rhs.subsetOf(closure(fd.lhs));
+        }
+        AttributeSet y = AttributeSet.subtract(fd.rhs, fd.lhs);
+        y.retain(universe);
+        for (AttributeSet block : basis(fd.lhs)) {
+            if (!block.disjoint(y) && !block.subsetOf(y)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
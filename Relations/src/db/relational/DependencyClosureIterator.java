@@ -0,0 +1,66 @@
+package db.relational;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterators;
+
+/**
+ * lazily walks F+ over a set of attributes as the dependencies X -> X+,
+ * one for every non-empty subset X, smallest subsets first. every
+ * dependency in F+ with a left hand side inside the attributes is implied
+ * by one of these, and only the current subset is held in memory, so a
+ * caller can filter or stop at any point without materializing F+.
+ */
+public class DependencyClosureIterator implements Iterator<FunctionalDependency> {
+    private final ClosureEngine engine;
+    private final Iterator<AttributeSet> subsets;
+    private final boolean nontrivialOnly;
+
+    private FunctionalDependency next;
+
+    // region Constructors
+
+    /**
+     * nontrivial dependencies X -> X+ of fds for subsets X of attributes
+     * @param fds
+     * @param attributes
+     */
+    public DependencyClosureIterator(FunctionalDependencySet fds, AttributeSet attributes) {
+        this(fds, attributes, true);
+    }
+
+    /**
+     * dependencies X -> X+ of fds for subsets X of attributes
+     * @param fds
+     * @param attributes
+     * @param nontrivialOnly skip X -> X+ when X+ adds nothing to X
+     */
+    public DependencyClosureIterator(FunctionalDependencySet fds, AttributeSet attributes, boolean nontrivialOnly) {
+        this.engine = fds.closureEngine();
+        this.nontrivialOnly = nontrivialOnly;
+        this.subsets = Spliterators.iterator(Combinations.of(attributes, 1, attributes.size()));
+    }
+    // endregion
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && subsets.hasNext()) {
+            AttributeSet lhs = subsets.next();
+            AttributeSet rhs = engine.closure(lhs);
+            if (!nontrivialOnly || !rhs.subsetOf(lhs)) {
+                next = new FunctionalDependency(lhs, rhs);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public FunctionalDependency next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        FunctionalDependency fd = next;
+        next = null;
+        return fd;
+    }
+}
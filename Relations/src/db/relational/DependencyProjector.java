@@ -0,0 +1,201 @@
+package db.relational;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * projects a functional dependency set onto a subset of its attributes,
+ * computing a canonical cover of the dependencies of F+ that only use those
+ * attributes without enumerating F+.
+ *
+ * only left hand sides X -> X+ are considered, and the lattice of candidate
+ * left hand sides is reduced three ways:
+ * - attributes that are on no left hand side of F never help derive anything,
+ *   so they are left out of every candidate
+ * - a candidate with an attribute that is in the closure of the others has
+ *   the same closure as the others, it and all its supersets are skipped
+ * - a candidate whose closure covers the target is a superkey of it, its
+ *   supersets only give implied dependencies and are skipped
+ * the two skipping rules are closed under taking subsets, so candidates are
+ * built level by level from pairs of surviving candidates like in Apriori,
+ * and the redundancy test reads the closures kept from the previous level.
+ *
+ * with a dependency basis the functional dependencies that follow from a
+ * mix of functional and multivalued dependencies are projected, the
+ * closures are then read off the basis one at a time.
+ */
+public class DependencyProjector {
+    private final FunctionalDependencySet fds;
+    private final DependencyBasis basis;
+    private final AttributeSet target;
+    private final boolean parallel;
+
+    // region Constructors
+
+    /**
+     * projection of fds onto target
+     * @param fds
+     * @param target
+     * @param parallel compute the closures of each level on the common pool
+     */
+    public DependencyProjector(FunctionalDependencySet fds, AttributeSet target, boolean parallel) {
+        this.fds = fds;
+        this.basis = null;
+        this.target = new AttributeSet(target);
+        this.parallel = parallel;
+    }
+
+    /**
+     * projection onto target of the functional dependencies that follow
+     * from fds, functional and multivalued, through their basis
+     * @param fds
+     * @param basis the dependency basis of fds over a superset of target
+     * @param target
+     */
+    DependencyProjector(FunctionalDependencySet fds, DependencyBasis basis, AttributeSet target) {
+        this.fds = fds;
+        this.basis = basis;
+        this.target = new AttributeSet(target);
+        this.parallel = false;
+    }
+    // endregion
+
+    /**
+     * run the projection
+     * @return a canonical cover of the projected dependencies
+     */
+    public FunctionalDependencySet project() {
+        AttributeSet usable = new AttributeSet();
+        for (FunctionalDependency fd : fds) {
+            if (!fd.multivalued || basis != null) {
+                usable.union(fd.lhs);
+            }
+        }
+        usable.retain(target);
+        int[] ids = new int[usable.size()];
+        int n = 0;
+        for (int id = usable.nextId(0); id >= 0; id = usable.nextId(id + 1)) {
+            ids[n++] = id;
+        }
+
+        FunctionalDependencySet projected = new FunctionalDependencySet();
+        AttributeSet empty = new AttributeSet(target.dictionary());
+        AttributeSet emptyClosure = restricted(basis != null ? basis.closure(empty) : empty.closureUnder(fds));
+        emit(projected, empty, emptyClosure);
+        if (target.subsetOf(emptyClosure)) {
+            return projected.canonicalCover();
+        }
+
+        // the open candidates of the current level, as sorted positions in
+        // ids, with their closures restricted to the target
+        List<int[]> level = new ArrayList<>();
+        HashMap<AttributeSet, AttributeSet> closures = new HashMap<>();
+        closures.put(empty, emptyClosure);
+        level.add(new int[0]);
+
+        while (!level.isEmpty()) {
+            List<int[]> candidates = new ArrayList<>();
+            List<AttributeSet> sets = new ArrayList<>();
+            if (level.get(0).length == 0) {
+                for (int p = 0; p < ids.length; p++) {
+                    add(new int[]{p}, ids, closures, candidates, sets);
+                }
+            } else {
+                // the level is in lexicographic order, so the partners of x
+                // that share its prefix directly follow it
+                for (int a = 0; a < level.size(); a++) {
+                    for (int b = a + 1; b < level.size(); b++) {
+                        int[] y = join(level.get(a), level.get(b));
+                        if (y == null) {
+                            break;
+                        }
+                        add(y, ids, closures, candidates, sets);
+                    }
+                }
+            }
+
+            List<AttributeSet> results = closures(sets);
+            HashMap<AttributeSet, AttributeSet> next = new HashMap<>();
+            List<int[]> open = new ArrayList<>();
+            for (int i = 0; i < candidates.size(); i++) {
+                AttributeSet closure = restricted(results.get(i));
+                emit(projected, sets.get(i), closure);
+                if (!target.subsetOf(closure)) {
+                    next.put(sets.get(i), closure);
+                    open.add(candidates.get(i));
+                }
+            }
+            closures = next;
+            level = open;
+        }
+        return projected.canonicalCover();
+    }
+
+    private List<AttributeSet> closures(List<AttributeSet> sets) {
+        if (basis == null) {
+            return fds.closureAll(sets, parallel);
+        }
+        List<AttributeSet> closures = new ArrayList<>(sets.size());
+        for (AttributeSet set : sets) {
+            closures.add(basis.closure(set));
+        }
+        return closures;
+    }
+
+    /**
+     * join two candidates of size k that agree on their first k - 1
+     * positions into one of size k + 1, null if they do not agree
+     */
+    private static int[] join(int[] x, int[] y) {
+        int k = x.length;
+        for (int i = 0; i < k - 1; i++) {
+            if (x[i] != y[i]) {
+                return null;
+            }
+        }
+        int[] z = Arrays.copyOf(x, k + 1);
+        z[k] = y[k - 1];
+        return z;
+    }
+
+    /**
+     * keep a candidate if every subset one smaller is open and none of its
+     * attributes is in the closure of the others
+     */
+    private void add(int[] candidate, int[] ids, HashMap<AttributeSet, AttributeSet> closures,
+                     List<int[]> candidates, List<AttributeSet> sets) {
+        AttributeSet set = new AttributeSet(target.dictionary());
+        for (int p : candidate) {
+            set.addId(ids[p]);
+        }
+        for (int p : candidate) {
+            set.removeId(ids[p]);
+            AttributeSet closure = closures.get(set);
+            set.addId(ids[p]);
+            if (closure == null || closure.containsId(ids[p])) {
+                return;
+            }
+        }
+        candidates.add(candidate);
+        sets.add(set);
+    }
+
+    private AttributeSet restricted(AttributeSet closure) {
+        closure.retain(target);
+        return closure;
+    }
+
+    /**
+     * add lhs -> closure - lhs unless what it adds already follows from
+     * the dependencies emitted so far
+     */
+    private static void emit(FunctionalDependencySet projected, AttributeSet lhs, AttributeSet closure) {
+        AttributeSet rhs = AttributeSet.subtract(closure, lhs);
+        if (rhs.isEmpty() || rhs.subsetOf(projected.closureEngine().closure(lhs))) {
+            return;
+        }
+        projected.add(new FunctionalDependency(lhs, rhs));
+    }
+}
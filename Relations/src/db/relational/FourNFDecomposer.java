@@ -0,0 +1,185 @@
+package db.relational;
+
+import db.util.Set;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterators;
+
+/**
+ * 4NF decomposition driven by a worklist of fragments, like BCNFDecomposer.
+ * a fragment R violates 4NF when some X in R that is not a superkey of R
+ * has a dependency basis with at least two blocks inside R - X, then
+ * X ->> Y holds for the first such block Y and R is split into X u Y and
+ * R - Y.
+ *
+ * multivalued dependencies do not project onto fragments as a set of
+ * dependencies, so all fragments share one dependency basis over the
+ * attributes of the relation and its dependencies. each fragment carries
+ * the dependencies that hold on it: the projection of the functional
+ * dependencies that follow from all of them, read off the basis, and
+ * X ->> Y n R for every X ->> Y with X inside R.
+ * fragments are split on the left hand sides of the dependencies cut down
+ * to them, as in the textbook algorithm. for the whole relation these are
+ * the only left hand sides to check, for a part of it firstViolation falls
+ * back to checking every subset smallest first, which is exponential in the
+ * width of the part. an exact decomposer, the default, does that for every
+ * fragment, the other one only splits on the dependencies and its leaves
+ * may still have violations.
+ */
+public class FourNFDecomposer {
+    private final FunctionalDependencySet fds;
+    private final AttributeSet universe;
+    private final DependencyBasis basis;
+    private final DecompositionNode root;
+    private final boolean exact;
+    private int fragments;
+
+    // region Constructors
+
+    /**
+     * exact decomposer for a relation, the relation is not modified
+     * @param r
+     */
+    public FourNFDecomposer(Relation r) {
+        this(r, true);
+    }
+
+    /**
+     * decomposer for a relation, the relation is not modified
+     * @param r
+     * @param exact check every subset of a fragment that no dependency
+     *              splits, exponential in the width of the fragment, when
+     *              false the leaves are only free of the violations the
+     *              dependencies point at
+     */
+    public FourNFDecomposer(Relation r, boolean exact) {
+        this.exact = exact;
+        this.fds = r.functionalDependencies;
+        this.universe = AttributeSet.union(r.attributes, fds.attributes());
+        this.basis = fds.dependencyBasis(universe);
+        this.root = new DecompositionNode(r);
+    }
+    // endregion
+
+    /**
+     * run the decomposition
+     * @return the decomposition tree, its leaves are in 4NF
+     */
+    public DecompositionNode decompose() {
+        Deque<DecompositionNode> worklist = new ArrayDeque<>();
+        worklist.push(root);
+        while (!worklist.isEmpty()) {
+            DecompositionNode node = worklist.pop();
+            AttributeSet attributes = node.relation.attributes;
+            FunctionalDependency violation = exact ? firstViolation(attributes) : dependencyViolation(attributes);
+            if (violation == null) {
+                continue;
+            }
+            AttributeSet a1 = AttributeSet.subtract(node.relation.attributes, violation.rhs);
+            AttributeSet a2 = new AttributeSet(violation);
+            Relation r1 = new Relation(a1, dependencies(a1)).name("R" + (++fragments));
+            Relation r2 = new Relation(a2, dependencies(a2)).name("R" + (++fragments));
+            node.split(violation, r1, r2);
+            worklist.push(node.right);
+            worklist.push(node.left);
+        }
+        return root;
+    }
+
+    /**
+     * the dependencies that hold on a fragment
+     */
+    private FunctionalDependencySet dependencies(AttributeSet attributes) {
+        FunctionalDependencySet dependencies = new DependencyProjector(fds, basis, attributes).project();
+        for (FunctionalDependency fd : fds) {
+            if (fd.multivalued && fd.lhs.subsetOf(attributes)) {
+                AttributeSet rhs = AttributeSet.intersect(fd.rhs, attributes);
+                rhs.subtract(fd.lhs);
+                if (!rhs.isEmpty()) {
+                    dependencies.add(new FunctionalDependency(new AttributeSet(fd.lhs), rhs).multivalued(true));
+                }
+            }
+        }
+        return dependencies;
+    }
+
+    /**
+     * the final relations of the decomposition
+     * @return
+     */
+    public Set<Relation> result() {
+        return new Set<>(decompose().leaves());
+    }
+
+    /**
+     * first X ->> Y that keeps attributes out of 4NF, null if there is none
+     * @param attributes
+     * @return
+     */
+    public FunctionalDependency firstViolation(AttributeSet attributes) {
+        FunctionalDependency violation = dependencyViolation(attributes);
+        if (violation != null || attributes.equals(universe)) {
+            return violation;
+        }
+        // the proper subsets of attributes by size, a subset that contains
+        // a superkey is a superkey itself
+        SetTrie<AttributeSet> superKeys = new SetTrie<>();
+        Iterator<AttributeSet> subsets = Spliterators.iterator(Combinations.of(attributes, 0, attributes.size() - 1));
+        while (subsets.hasNext()) {
+            AttributeSet x = subsets.next();
+            if (!superKeys.containsSubsetOf(x)) {
+                violation = violation(attributes, x);
+                if (violation != null) {
+                    return violation;
+                }
+                if (attributes.subsetOf(basis.closure(x))) {
+                    superKeys.put(x, x);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * first violation among the left hand sides of the dependencies cut
+     * down to attributes
+     */
+    private FunctionalDependency dependencyViolation(AttributeSet attributes) {
+        for (FunctionalDependency fd : fds) {
+            FunctionalDependency violation = violation(attributes, AttributeSet.intersect(fd.lhs, attributes));
+            if (violation != null) {
+                return violation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * x ->> Y for the first block Y of the basis of x inside attributes,
+     * if x is not a superkey and there are at least two such blocks
+     */
+    private FunctionalDependency violation(AttributeSet attributes, AttributeSet x) {
+        if (!x.subsetOf(attributes)) {
+            return null;
+        }
+        List<AttributeSet> blocks = basis.basis(x);
+        if (attributes.subsetOf(basis.closure(x, blocks))) {
+            return null;
+        }
+        AttributeSet first = null;
+        for (AttributeSet block : blocks) {
+            block.retain(attributes);
+            if (block.isEmpty()) {
+                continue;
+            }
+            if (first != null) {
+                return new FunctionalDependency(x, first).multivalued(true);
+            }
+            first = block;
+        }
+        return null;
+    }
+}
@@ -1,7 +1,5 @@
 package db.relational;
 
-import java.util.Objects;
-
 public class FunctionalDependency {
     public AttributeSet lhs = new AttributeSet();
     public AttributeSet rhs = new AttributeSet();
@@ -15,12 +13,8 @@ public class FunctionalDependency {
      * @param rhs
      */
     public FunctionalDependency(AttributeSet lhs, AttributeSet rhs) {
-        for (Attribute attr : lhs.toList()) {
-            this.lhs.add(attr);
-        }
-        for (Attribute attr : rhs.toList()) {
-            this.rhs.add(attr);
-        }
+        this.lhs.union(lhs);
+        this.rhs.union(rhs);
     }
 
     /**
@@ -41,11 +35,22 @@ public class FunctionalDependency {
      * @param rhs
      */
     public FunctionalDependency(String[] lhs, String[] rhs) {
+        this(lhs, rhs, AttributeDictionary.global());
+    }
+
+    /**
+     * functional dependency from a separated left and right hand side
+     * with the attributes interned by dictionary
+     * @param lhs
+     * @param rhs
+     * @param dictionary
+     */
+    public FunctionalDependency(String[] lhs, String[] rhs, AttributeDictionary dictionary) {
         for (String attr : lhs) {
-            this.lhs.add(Attribute.fromString(attr.replace(" ", "_")));
+            this.lhs.add(dictionary.fromString(attr.replace(" ", "_")));
         }
         for (String attr : rhs) {
-            this.rhs.add(Attribute.fromString(attr.replace(" ", "_")));
+            this.rhs.add(dictionary.fromString(attr.replace(" ", "_")));
         }
     }
 
@@ -54,17 +59,15 @@ public class FunctionalDependency {
      * @param fd
      */
     public FunctionalDependency(FunctionalDependency fd) {
-        for (Attribute attr : fd.lhs.toList()) {
-            this.lhs.add(attr);
-        }
-        for (Attribute attr : fd.rhs.toList()) {
-            this.rhs.add(attr);
-        }
+        this.lhs.union(fd.lhs);
+        this.rhs.union(fd.rhs);
+        this.multivalued = fd.multivalued;
     }
 
     /**
      * functional dependency from a string "a<delimeter_nextAttr>b<arrow>c"
-     * ex. a,b->c (delimeter_nextAttr = ",", arrow = "->")
+     * ex. a,b->c (delimeter_nextAttr = ",", arrow = "->"), a,b->>c is read
+     * as a multivalued dependency
      * @param str
      * @param delimeter_nextAttr
      * @param arrow
@@ -73,8 +76,27 @@ public class FunctionalDependency {
     public static FunctionalDependency fromString(String str,
                                                   String delimeter_nextAttr,
                                                   String arrow) {
+        return fromString(str, delimeter_nextAttr, arrow, AttributeDictionary.global());
+    }
+
+    /**
+     * functional dependency from a string like fromString(str, delimeter_nextAttr, arrow)
+     * with the attributes interned by dictionary
+     * @param str
+     * @param delimeter_nextAttr
+     * @param arrow
+     * @param dictionary
+     * @return
+     */
+    public static FunctionalDependency fromString(String str,
+                                                  String delimeter_nextAttr,
+                                                  String arrow,
+                                                  AttributeDictionary dictionary) {
         String[] lrhs = str.split(arrow);
-        return new FunctionalDependency(lrhs[0], lrhs[1], delimeter_nextAttr);
+        boolean multivalued = lrhs[1].startsWith(">");
+        String rhs = multivalued ? lrhs[1].substring(1) : lrhs[1];
+        return new FunctionalDependency(lrhs[0].split(delimeter_nextAttr), rhs.split(delimeter_nextAttr), dictionary)
+                .multivalued(multivalued);
     }
     // endregion
 
@@ -84,14 +106,17 @@ public class FunctionalDependency {
     }
 
     public AttributeSet attributes() {
-        AttributeSet attrs = new AttributeSet();
-        for (Attribute attr : this.lhs.toList()) {
-            attrs.add(attr);
-        }
-        for (Attribute attr : this.rhs.toList()) {
-            attrs.add(attr);
-        }
-        return attrs;
+        return AttributeSet.union(this.lhs, this.rhs);
+    }
+
+    /**
+     * whether both sides only use attributes of attrs, same as
+     * attributes().subsetOf(attrs) without building the union
+     * @param attrs
+     * @return
+     */
+    public boolean within(AttributeSet attrs) {
+        return lhs.subsetOf(attrs) && rhs.subsetOf(attrs);
     }
 
     public static FunctionalDependency augmentationRule(FunctionalDependency original, Attribute attr) {
@@ -124,11 +149,19 @@ public class FunctionalDependency {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         FunctionalDependency that = (FunctionalDependency) o;
-        return Objects.equals(lhs, that.lhs) && Objects.equals(rhs, that.rhs);
+        return multivalued == that.multivalued && lhs.equals(that.lhs) && rhs.equals(that.rhs);
     }
 
+    /**
+     * built from the hashes the two sides keep up to date themselves, so
+     * it is constant time and still right after lhs or rhs are changed
+     * in place. a dependency that is in a hash based set must not be
+     * changed though, see FunctionalDependencySet.modified
+     */
     @Override
     public int hashCode() {
-        return Objects.hash(lhs, rhs);
+        long h = lhs.zobrist() * 31 + Long.rotateLeft(rhs.zobrist(), 17);
+        int hash = (int) (h ^ (h >>> 32));
+        return multivalued ? ~hash : hash;
     }
 }
@@ -5,8 +5,21 @@ import db.util.Set;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.*;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class FunctionalDependencySet extends Set<FunctionalDependency> {
+    // built lazily by whichever thread asks first, so readers that share
+    // an unchanged set (forked closure tasks) see one engine and one cache
+    private volatile ClosureEngine closureEngine;
+    private SetTrie<List<FunctionalDependency>> lhsIndex;
+    private volatile ClosureCache closureCache;
+    private int closureCacheCapacity = ClosureCache.DEFAULT_CAPACITY;
+    private int modCount;
+    private FunctionalDependencySet adoptedCover;
+    private int adoptedCoverVersion;
+
     // region Constructors
     public FunctionalDependencySet() {}
 
@@ -17,26 +30,275 @@ public class FunctionalDependencySet extends Set<FunctionalDependency> {
     }
 
     public FunctionalDependencySet(FunctionalDependencySet fds) {
-        for (FunctionalDependency fd : fds.toList()) {
+        for (FunctionalDependency fd : fds) {
             this.add(fd);
         }
     }
 
     public FunctionalDependencySet(Set set) {
-        for (Object item : set.toList()) {
+        for (Object item : set) {
             this.add((FunctionalDependency) item);
         }
     }
     // endregion
 
+    @Override
+    public int add(FunctionalDependency fd) {
+        int added = super.add(fd);
+        if (added != 0) {
+            modCount++;
+            ClosureEngine engine = closureEngine;
+            if (engine != null) {
+                engine.add(fd);
+            }
+            if (lhsIndex != null) {
+                index(fd);
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public int subtract(FunctionalDependency fd) {
+        int removed = super.subtract(fd);
+        if (removed != 0) {
+            modCount++;
+            ClosureEngine engine = closureEngine;
+            if (engine != null) {
+                engine.remove(fd);
+            }
+            if (lhsIndex != null) {
+                List<FunctionalDependency> same = lhsIndex.get(fd.lhs);
+                same.remove(fd);
+                if (same.isEmpty()) {
+                    lhsIndex.remove(fd.lhs);
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * call after changing the lhs or rhs of a functional dependency
+     * in this set in place, add and subtract keep the closure index
+     * up to date themselves
+     */
+    void modified() {
+        closureEngine = null;
+        lhsIndex = null;
+        modCount++;
+    }
+
+    /**
+     * modification counter, changes whenever the set changes
+     * @return
+     */
+    public int getModCount() {
+        return modCount;
+    }
+
+    /**
+     * compiled closure index of this set, built on first use and
+     * reused until the set changes, threads that only read the set
+     * share one
+     * @return
+     */
+    public ClosureEngine closureEngine() {
+        ClosureEngine engine = closureEngine;
+        if (engine == null) {
+            synchronized (this) {
+                engine = closureEngine;
+                if (engine == null) {
+                    engine = new ClosureEngine(this.toList());
+                    closureEngine = engine;
+                }
+            }
+        }
+        return engine;
+    }
+
+    /**
+     * the dependencies whose left hand side is a subset of attrs, found
+     * through a set-trie over the left hand sides that is built on first
+     * use and kept up to date like the closure index
+     * @param attrs
+     * @return
+     */
+    public List<FunctionalDependency> withLHSIn(AttributeSet attrs) {
+        if (lhsIndex == null) {
+            lhsIndex = new SetTrie<>();
+            for (FunctionalDependency fd : this) {
+                index(fd);
+            }
+        }
+        List<FunctionalDependency> fds = new ArrayList<>();
+        lhsIndex.subsetsOf(attrs, fds::addAll);
+        return fds;
+    }
+
+    private void index(FunctionalDependency fd) {
+        List<FunctionalDependency> same = lhsIndex.get(fd.lhs);
+        if (same == null) {
+            same = new ArrayList<>(1);
+            lhsIndex.put(new AttributeSet(fd.lhs), same);
+        }
+        same.add(fd);
+    }
+
+    /**
+     * use a closure index compiled elsewhere from exactly the
+     * dependencies of this set, see SchemaSnapshot
+     * @param engine
+     */
+    void adopt(ClosureEngine engine) {
+        this.closureEngine = engine;
+    }
+
+    /**
+     * use a canonical cover computed elsewhere for exactly the
+     * dependencies of this set until the set changes, see SchemaSnapshot
+     * @param cover
+     */
+    void adoptCanonicalCover(FunctionalDependencySet cover) {
+        this.adoptedCover = copy(cover);
+        this.adoptedCoverVersion = modCount;
+    }
+
+    private static FunctionalDependencySet copy(FunctionalDependencySet fds) {
+        FunctionalDependencySet copy = new FunctionalDependencySet();
+        for (FunctionalDependency fd : fds) {
+            copy.add(new FunctionalDependency(fd));
+        }
+        return copy;
+    }
+
+    /**
+     * closure cache of this set, created on first use, threads that only
+     * read the set share one
+     * @return
+     */
+    public ClosureCache closureCache() {
+        ClosureCache cache = closureCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = closureCache;
+                if (cache == null) {
+                    cache = new ClosureCache(closureCacheCapacity);
+                    closureCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * bound the number of cached closures, drops the current cache
+     * @param capacity
+     */
+    public void setClosureCacheCapacity(int capacity) {
+        this.closureCache = new ClosureCache(capacity);
+        this.closureCacheCapacity = capacity;
+    }
+
+    /**
+     * closure of attrs under this set, served from the closure cache
+     * when the same set was asked for since the last modification
+     * @param attrs
+     * @return a new attribute set the caller may modify
+     */
+    public AttributeSet closureOf(AttributeSet attrs) {
+        ClosureCache cache = closureCache();
+        int version = modCount;
+        AttributeSet closure = cache.get(attrs, version);
+        if (closure == null) {
+            closure = closureEngine().closure(attrs);
+            cache.put(new AttributeSet(attrs), closure, version);
+        }
+        return new AttributeSet(closure);
+    }
+
+    /**
+     * closures of many attribute sets against this set in one pass,
+     * the set is compiled once and the inputs are processed 64 at a
+     * time with bit-sliced closures
+     * @param attrs
+     * @return closures in the order of attrs
+     */
+    public List<AttributeSet> closureAll(List<AttributeSet> attrs) {
+        return closureAll(attrs, false);
+    }
+
+    /**
+     * closures of many attribute sets against this set in one pass
+     * @param attrs
+     * @param parallel spread the blocks of 64 inputs over the common pool
+     * @return closures in the order of attrs
+     */
+    public List<AttributeSet> closureAll(List<AttributeSet> attrs, boolean parallel) {
+        ClosureEngine engine = closureEngine();
+        AttributeSet[] results = new AttributeSet[attrs.size()];
+        int blocks = (attrs.size() + 63) / 64;
+        IntStream range = IntStream.range(0, blocks);
+        (parallel ? range.parallel() : range).forEach(b ->
+                engine.closureBlock(attrs, b * 64, Math.min(attrs.size(), b * 64 + 64), results));
+        return Arrays.asList(results);
+    }
+
+    /**
+     * the functional dependencies of this set without the multivalued
+     * ones, this set itself when it has none
+     * @return
+     */
+    public FunctionalDependencySet functional() {
+        FunctionalDependencySet functional = new FunctionalDependencySet();
+        for (FunctionalDependency fd : this) {
+            if (!fd.multivalued) {
+                functional.add(fd);
+            }
+        }
+        return functional.size() == this.size() ? this : functional;
+    }
+
+    /**
+     * the multivalued dependencies of this set
+     * @return
+     */
+    public List<FunctionalDependency> multivalued() {
+        List<FunctionalDependency> multivalued = new ArrayList<>();
+        for (FunctionalDependency fd : this) {
+            if (fd.multivalued) {
+                multivalued.add(fd);
+            }
+        }
+        return multivalued;
+    }
+
+    /**
+     * dependency basis engine over universe for the functional and
+     * multivalued dependencies of this set
+     * @param universe
+     * @return
+     */
+    public DependencyBasis dependencyBasis(AttributeSet universe) {
+        return new DependencyBasis(universe, this);
+    }
+
     public AttributeSet attributes() {
         AttributeSet attributes = new AttributeSet();
-        for (FunctionalDependency fd : this.toList()) {
-            attributes.union(fd.attributes());
+        for (FunctionalDependency fd : this) {
+            attributes.union(fd.lhs);
+            attributes.union(fd.rhs);
         }
         return attributes;
     }
 
+    /**
+     * every ordered pair of dependencies, quadratic in the size of the set
+     * @return
+     * @deprecated only the inference rule closure used the pairs, walk
+     *             toList() by index instead
+     */
+    @Deprecated
     public List<FunctionalDependency[]> getPairs() {
         List<FunctionalDependency> fds = this.toList();
         List<FunctionalDependency[]> pairs = new ArrayList<>();
@@ -51,53 +313,128 @@ public class FunctionalDependencySet extends Set<FunctionalDependency> {
 
     public AttributeSet extraneousLHS(FunctionalDependency fd) {
         // gamma = a - {A}, check if gamma -> B can be inferred from F
-        AttributeSet attrs = fd.lhs;
-        AttributeSet extraneous = new AttributeSet();
-        for (Attribute A : attrs.toList()) {
-            AttributeSet gamma = AttributeSet.subtract(fd.lhs, A.toSet());
-            AttributeSet gammaClosure = gamma.closureUnder(this);
-
-            if (fd.rhs.subsetOf(gammaClosure)) {
-                extraneous.add(A);
+        int[] ids = fd.lhs.ids();
+        List<AttributeSet> gammas = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            AttributeSet gamma = new AttributeSet(fd.lhs);
+            gamma.removeId(id);
+            gammas.add(gamma);
+        }
+        List<AttributeSet> gammaClosures = closureAll(gammas);
+        AttributeSet extraneous = new AttributeSet(fd.lhs.dictionary());
+        for (int i = 0; i < ids.length; i++) {
+            if (fd.rhs.subsetOf(gammaClosures.get(i))) {
+                extraneous.addId(ids[i]);
             }
         }
         return extraneous;
     }
 
     public AttributeSet extraneousRHS(FunctionalDependency fd) {
-        // F' = (F - {a -> b}) u (a -> {b - A})
-        AttributeSet attrs = fd.rhs;
-        AttributeSet extraneous = new AttributeSet();
-        for (Attribute A : attrs.toList()) {
-            FunctionalDependencySet left = FunctionalDependencySet.subtract(this, fd.toSet());
-            FunctionalDependencySet right = new FunctionalDependency(fd.lhs, AttributeSet.subtract(fd.rhs, A.toSet())).toSet();
-            FunctionalDependencySet fPrime = FunctionalDependencySet.union(left, right);
-
-            AttributeSet lhsClosure = fd.lhs.closureUnder(fPrime);
-            if (A.toSet().subsetOf(lhsClosure)) {
-                extraneous.add(A);
+        // F' = (F - {a -> b}) u (a -> {b - A}), a -> {b - A} fires at once so
+        // A is extraneous when it is in (a u {b - A})+ under F - {a -> b}
+        ClosureEngine engine = closureEngine();
+        int masked = engine.slotOf(fd);
+        AttributeSet extraneous = new AttributeSet(fd.rhs.dictionary());
+        for (int id = fd.rhs.nextId(0); id >= 0; id = fd.rhs.nextId(id + 1)) {
+            AttributeSet start = new AttributeSet(fd.rhs);
+            start.removeId(id);
+            start.union(fd.lhs);
+            if (engine.closure(start, masked).containsId(id)) {
+                extraneous.addId(id);
             }
         }
         return extraneous;
     }
 
+    /**
+     * X -> X+ for every subset X of attributes with n attributes, the
+     * subsets are generated lazily and closed in blocks of 64
+     * @param attributes
+     * @param n
+     * @return
+     */
     public FunctionalDependencySet closureOfN(AttributeSet attributes, int n) {
-        List<AttributeSet> combinations = attributes.generateCombinations(n);
+        ClosureEngine engine = closureEngine();
         FunctionalDependencySet closure = new FunctionalDependencySet();
-        for (AttributeSet attrs : combinations) {
-            closure.add(new FunctionalDependency(attrs, attrs.closureUnder(this)));
+        List<AttributeSet> block = new ArrayList<>(64);
+        AttributeSet[] closures = new AttributeSet[64];
+        Spliterator<AttributeSet> combinations = Combinations.of(attributes, n);
+        while (combinations.tryAdvance(block::add)) {
+            if (block.size() == 64) {
+                closeBlock(engine, block, closures, closure);
+            }
         }
+        closeBlock(engine, block, closures, closure);
         return closure;
     }
 
+    private static void closeBlock(ClosureEngine engine, List<AttributeSet> block, AttributeSet[] closures,
+                                   FunctionalDependencySet closure) {
+        if (block.isEmpty()) {
+            return;
+        }
+        engine.closureBlock(block, 0, block.size(), closures);
+        for (int i = 0; i < block.size(); i++) {
+            closure.add(new FunctionalDependency(block.get(i), closures[i]));
+        }
+        block.clear();
+    }
+
     public FunctionalDependencySet closure2(AttributeSet attributes) {
         FunctionalDependencySet fds = new FunctionalDependencySet();
-        for (int i = 1; i <= attributes.size(); i++) {
-            fds.union(closureOfN(attributes, i));
+        Iterator<FunctionalDependency> closure = new DependencyClosureIterator(this, attributes, false);
+        while (closure.hasNext()) {
+            fds.add(closure.next());
         }
         return fds;
     }
 
+    /**
+     * F+ over attributes as a lazy stream of the nontrivial dependencies
+     * X -> X+, smallest X first, nothing is computed until it is consumed
+     * @param attributes
+     * @return
+     */
+    public Stream<FunctionalDependency> closureStream(AttributeSet attributes) {
+        return closureStream(attributes, true);
+    }
+
+    /**
+     * F+ over attributes as a lazy stream of X -> X+, smallest X first
+     * @param attributes
+     * @param nontrivialOnly skip X -> X+ when X+ adds nothing to X
+     * @return
+     */
+    public Stream<FunctionalDependency> closureStream(AttributeSet attributes, boolean nontrivialOnly) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+                new DependencyClosureIterator(this, attributes, nontrivialOnly),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * the closed sets X = X+ inside attributes as a lazy stream in lectic
+     * order, see ClosedSetIterator. every X -> X+ of F+ closes to one of
+     * them, so this lists F+ by its distinct closures only
+     * @param attributes
+     * @return
+     */
+    public Stream<AttributeSet> closedSets(AttributeSet attributes) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+                new ClosedSetIterator(this, attributes),
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * F+ by applying augmentation with the attributes and transitivity
+     * until nothing changes, every derived dependency is held in memory
+     * and every round pairs all of them
+     * @param attributes
+     * @return
+     * @deprecated use closureStream(attributes) to walk F+ lazily as
+     *             X -> X+, or closure2(attributes) to collect it
+     */
+    @Deprecated
     public FunctionalDependencySet closure(AttributeSet attributes) {
         FunctionalDependencySet closure = new FunctionalDependencySet(this);
         int change = 0;
@@ -105,49 +442,51 @@ public class FunctionalDependencySet extends Set<FunctionalDependency> {
             change = 0;
             List<FunctionalDependency> fds = new ArrayList<>(closure.toList());
             for (FunctionalDependency f : fds) {
-                for (Attribute attr : attributes.toList()) {
+                for (Attribute attr : attributes) {
                     change += closure.add(FunctionalDependency.augmentationRule(f, attr));
                 }
             }
-            List<FunctionalDependency[]> pairs = closure.getPairs();
-            for (FunctionalDependency[] pair : pairs) {
-                change += closure.add(FunctionalDependency.transitivityRule(pair[0], pair[1]));
+            fds = closure.toList();
+            for (int i = 0; i < fds.size() - 1; i++) {
+                for (int j = i + 1; j < fds.size(); j++) {
+                    change += closure.add(FunctionalDependency.transitivityRule(fds.get(i), fds.get(j)));
+                    change += closure.add(FunctionalDependency.transitivityRule(fds.get(j), fds.get(i)));
+                }
             }
         } while (change != 0);
         return closure;
     }
 
+    /**
+     * canonical cover of this set, see CanonicalCoverEngine, or a copy of
+     * the one read from a snapshot while this set has not changed
+     * @return a new set, this set and its dependencies are not modified
+     */
     public FunctionalDependencySet canonicalCover() {
-        FunctionalDependencySet fc = new FunctionalDependencySet(this);
-        int change;
-        do {
-            change = 0;
-            FunctionalDependencySet fc_new = new FunctionalDependencySet();
-            HashMap<AttributeSet, AttributeSet> lrhs = new HashMap<>();
-            for (FunctionalDependency fd : fc.toList()) {
-                if (!lrhs.containsKey(fd.lhs)) {
-                    lrhs.put(fd.lhs, new AttributeSet());
-                }
-                lrhs.get(fd.lhs).union(fd.rhs);
-            }
-            for (Map.Entry<AttributeSet, AttributeSet> entry : lrhs.entrySet()) {
-                fc_new.add(new FunctionalDependency(entry.getKey(), entry.getValue()));
-            }
-            change += fc.size() - fc_new.size();
-            fc = fc_new;
-            List<FunctionalDependency> fds = fc.toList();
-            for (int i = fds.size() - 1; i >= 0; i--) {
-                FunctionalDependency fd = fds.get(i);
-                AttributeSet extraneousLHS = fc.extraneousLHS(fd);
-                AttributeSet extraneousRHS = fc.extraneousRHS(fd);
-                change += fd.lhs.subtract(extraneousLHS);
-                change += fd.rhs.subtract(extraneousRHS);
-                if (fd.attributes().isEmpty()) {
-                    fc.subtract(fd);
-                }
-            }
-        } while (change != 0);
-        return fc;
+        if (adoptedCover != null && adoptedCoverVersion == modCount) {
+            return copy(adoptedCover);
+        }
+        return new CanonicalCoverEngine(this.toList()).cover();
+    }
+
+    /**
+     * the dependencies of F+ that only use the given attributes, as a
+     * canonical cover, see DependencyProjector
+     * @param attributes
+     * @return
+     */
+    public FunctionalDependencySet project(AttributeSet attributes) {
+        return project(attributes, false);
+    }
+
+    /**
+     * the dependencies of F+ that only use the given attributes
+     * @param attributes
+     * @param parallel compute closures on the common pool
+     * @return
+     */
+    public FunctionalDependencySet project(AttributeSet attributes, boolean parallel) {
+        return new DependencyProjector(this, attributes, parallel).project();
     }
 
     public static FunctionalDependencySet subtract(FunctionalDependencySet fds1, FunctionalDependencySet fds2) {
@@ -161,7 +500,7 @@ public class FunctionalDependencySet extends Set<FunctionalDependency> {
     public FunctionalDependency find(String fdString) {
         String[] fdSplit = fdString.split("->");
         FunctionalDependency fd = new FunctionalDependency(fdSplit[0], fdSplit[1], "");
-        for (FunctionalDependency f : this.toList()) {
+        for (FunctionalDependency f : this) {
             if (fd.equals(f)) {
                 return f;
             }
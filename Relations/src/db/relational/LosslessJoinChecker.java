@@ -0,0 +1,282 @@
+package db.relational;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * n-way lossless join test by the tableau chase, for decompositions into
+ * hundreds of fragments.
+ *
+ * the tableau has one row per fragment and one column per attribute, and a
+ * cell holds a symbol of its column: the rows of a fragment that contains
+ * the attribute share the distinguished symbol, every other row starts with
+ * a symbol of its own. equating symbols is a union-find per column, so a
+ * cell is never rewritten, its symbol is the root of its row. every class
+ * also keeps its rows in a circular list, so when a class is merged into
+ * the distinguished one the rows that gain a distinguished cell are known
+ * and counted. the chase stops as soon as one row is distinguished in
+ * every column, or when no equation is left to make.
+ *
+ * rows are grouped per dependency by the roots of their left hand side
+ * columns with one hash lookup, instead of comparing every pair of rows.
+ * a merge only changes the roots of the rows of the smaller class, so
+ * only those rows are looked up again, and only for the dependencies that
+ * read the merged column. this is congruence closure over the tableau.
+ */
+public class LosslessJoinChecker {
+    private final int m;
+    private final int n;
+    private final int[][] lhs;
+    private final int[][] rhs;
+    // per column: the dependencies with the column on their left hand side
+    private final int[][] dependents;
+
+    // per column: union-find parents, class sizes and the next row of the
+    // class in its circular list, indexed by row
+    private final int[][] parent;
+    private final int[][] size;
+    private final int[][] next;
+    // per column: a row holding the distinguished symbol, -1 if none does
+    private final int[] distinguished;
+    private final int[] distinguishedCount;
+    private boolean lossless;
+
+    private List<HashMap<RowKey, Integer>> tables;
+    // equations still to be made, as column, row, row
+    private int[] work = new int[48];
+    private int pending;
+
+    // region Constructors
+
+    /**
+     * chase of attributes decomposed into fragments under fds, dependencies
+     * that use attributes outside of attributes and multivalued
+     * dependencies are ignored
+     * @param attributes
+     * @param fds
+     * @param fragments
+     */
+    public LosslessJoinChecker(AttributeSet attributes, FunctionalDependencySet fds, List<AttributeSet> fragments) {
+        int[] column = new int[Math.max(attributes.length(), 1)];
+        int[] ids = new int[attributes.size()];
+        int c = 0;
+        for (int id = attributes.nextId(0); id >= 0; id = attributes.nextId(id + 1)) {
+            column[id] = c;
+            ids[c++] = id;
+        }
+        this.m = fragments.size();
+        this.n = ids.length;
+
+        List<FunctionalDependency> list = fds.withLHSIn(attributes);
+        int count = 0;
+        int[][] lhs = new int[list.size()][];
+        int[][] rhs = new int[list.size()][];
+        for (FunctionalDependency fd : list) {
+            AttributeSet r = AttributeSet.subtract(fd.rhs, fd.lhs);
+            if (r.isEmpty() || fd.multivalued || !fd.rhs.subsetOf(attributes)) {
+                continue;
+            }
+            lhs[count] = columns(fd.lhs, column);
+            rhs[count] = columns(r, column);
+            count++;
+        }
+        this.lhs = Arrays.copyOf(lhs, count);
+        this.rhs = Arrays.copyOf(rhs, count);
+        int[] degree = new int[n];
+        for (int f = 0; f < count; f++) {
+            for (int j : lhs[f]) {
+                degree[j]++;
+            }
+        }
+        this.dependents = new int[n][];
+        for (int j = 0; j < n; j++) {
+            dependents[j] = new int[degree[j]];
+            degree[j] = 0;
+        }
+        for (int f = 0; f < count; f++) {
+            for (int j : lhs[f]) {
+                dependents[j][degree[j]++] = f;
+            }
+        }
+
+        this.parent = new int[n][m];
+        this.size = new int[n][m];
+        this.next = new int[n][m];
+        this.distinguished = new int[n];
+        this.distinguishedCount = new int[m];
+        for (int j = 0; j < n; j++) {
+            distinguished[j] = -1;
+            for (int i = 0; i < m; i++) {
+                parent[j][i] = i;
+                size[j][i] = 1;
+                next[j][i] = i;
+            }
+        }
+        for (int i = 0; i < m; i++) {
+            AttributeSet fragment = fragments.get(i);
+            for (int j = 0; j < n; j++) {
+                if (!fragment.containsId(ids[j])) {
+                    continue;
+                }
+                distinguishedCount[i]++;
+                if (distinguished[j] < 0) {
+                    distinguished[j] = i;
+                } else {
+                    link(j, find(j, distinguished[j]), i);
+                }
+            }
+            lossless |= distinguishedCount[i] == n;
+        }
+    }
+    // endregion
+
+    private static int[] columns(AttributeSet attrs, int[] column) {
+        int[] columns = new int[attrs.size()];
+        int k = 0;
+        for (int id = attrs.nextId(0); id >= 0; id = attrs.nextId(id + 1)) {
+            columns[k++] = column[id];
+        }
+        return columns;
+    }
+
+    /**
+     * run the chase
+     * @return whether joining the fragments gives back the relation
+     */
+    public boolean isLossless() {
+        if (m == 0) {
+            return n == 0;
+        }
+        if (lossless) {
+            return true;
+        }
+        // every dependency keeps the rows it has seen by the roots of their
+        // left hand side columns, rows that land on an occupied key agree
+        // with its row and get their right hand sides equated
+        tables = new ArrayList<>();
+        for (int f = 0; f < lhs.length; f++) {
+            tables.add(new HashMap<RowKey, Integer>());
+            for (int i = 0; i < m; i++) {
+                place(f, i);
+            }
+        }
+        while (pending > 0 && !lossless) {
+            pending -= 3;
+            union(work[pending], work[pending + 1], work[pending + 2]);
+        }
+        return lossless;
+    }
+
+    /**
+     * file a row under its current key for a dependency, queueing the
+     * equations with the row already there
+     */
+    private void place(int f, int row) {
+        int[] x = lhs[f];
+        int[] roots = new int[x.length];
+        for (int k = 0; k < x.length; k++) {
+            roots[k] = find(x[k], row);
+        }
+        Integer other = tables.get(f).putIfAbsent(new RowKey(roots), row);
+        if (other == null || other == row) {
+            return;
+        }
+        for (int j : rhs[f]) {
+            if (pending + 3 > work.length) {
+                work = Arrays.copyOf(work, work.length * 2);
+            }
+            work[pending++] = j;
+            work[pending++] = other;
+            work[pending++] = row;
+        }
+    }
+
+    private int find(int column, int row) {
+        int[] p = parent[column];
+        int root = row;
+        while (p[root] != root) {
+            root = p[root];
+        }
+        while (p[row] != root) {
+            int up = p[row];
+            p[row] = root;
+            row = up;
+        }
+        return root;
+    }
+
+    /**
+     * merge the classes of two rows in a column, the rows of the smaller
+     * class change their roots and are filed again under every dependency
+     * that reads the column
+     */
+    private void union(int column, int row1, int row2) {
+        int a = find(column, row1);
+        int b = find(column, row2);
+        if (a == b) {
+            return;
+        }
+        if (size[column][a] < size[column][b]) {
+            int t = a;
+            a = b;
+            b = t;
+        }
+        int d = distinguished[column] < 0 ? -1 : find(column, distinguished[column]);
+        if (a == d || b == d) {
+            // every row of the other class gains a distinguished cell
+            int other = a == d ? b : a;
+            int row = other;
+            do {
+                if (++distinguishedCount[row] == n) {
+                    lossless = true;
+                }
+                row = next[column][row];
+            } while (row != other);
+        }
+        link(column, a, b);
+        // after the splice the rows of b follow a and end with b
+        int row = a;
+        do {
+            row = next[column][row];
+            for (int f : dependents[column]) {
+                place(f, row);
+            }
+        } while (row != b);
+    }
+
+    /**
+     * hang root b under root a and splice their row lists
+     */
+    private void link(int column, int a, int b) {
+        parent[column][b] = a;
+        size[column][a] += size[column][b];
+        int t = next[column][a];
+        next[column][a] = next[column][b];
+        next[column][b] = t;
+    }
+
+    /**
+     * the roots of a row's left hand side columns
+     */
+    private static class RowKey {
+        private final int[] roots;
+        private final int hash;
+
+        RowKey(int[] roots) {
+            this.roots = roots;
+            this.hash = Arrays.hashCode(roots);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof RowKey && Arrays.equals(roots, ((RowKey) o).roots);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package db.relational;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * finds a candidate key of minimum size by branch and bound, without
+ * enumerating the other keys. every key is the core plus some of the
+ * attributes that are both derived and used on a left hand side, see
+ * CandidateKeyFinder. the core is widened by the attributes that the
+ * other attributes can not derive, they are in every key as well, and
+ * the size of the core is the lower bound every branch starts from.
+ *
+ * the remaining attributes are tried in order of determining power, how
+ * much the closure of the core grows when the attribute is added, and a
+ * greedy key along that order is the first upper bound. a branch is cut
+ * when it can not get below the best key found so far, when it adds an
+ * attribute the chosen ones already derive (the result would not be
+ * minimal), or when even all attributes still open do not make a superkey.
+ * a search with a time budget returns the best key found when it runs out.
+ */
+public class MinimumKeyFinder {
+    private final AttributeSet attributes;
+    private final ClosureEngine engine;
+    private final AttributeSet core;
+    private final int[] order;
+
+    private AttributeSet best;
+    private boolean bounded;
+    private long deadline;
+    private boolean optimal;
+
+    // region Constructors
+
+    /**
+     * minimum key of a relation
+     * @param r
+     */
+    public MinimumKeyFinder(Relation r) {
+        this(r.attributes, r.functionalDependencies);
+    }
+
+    /**
+     * minimum key of the attributes under fds
+     * @param attributes
+     * @param fds
+     */
+    public MinimumKeyFinder(AttributeSet attributes, FunctionalDependencySet fds) {
+        CandidateKeyFinder partition = new CandidateKeyFinder(attributes, fds);
+        this.attributes = new AttributeSet(attributes);
+        this.engine = fds.closureEngine();
+
+        AttributeSet core = partition.getCore();
+        AttributeSet both = partition.getBoth();
+        for (int id = both.nextId(0); id >= 0; id = both.nextId(id + 1)) {
+            AttributeSet others = new AttributeSet(attributes);
+            others.removeId(id);
+            if (!engine.closure(others).containsId(id)) {
+                core.addId(id);
+            }
+        }
+        both.subtract(core);
+        this.core = core;
+
+        AttributeSet coreClosure = engine.closure(core);
+        final int[] power = new int[both.length()];
+        List<Integer> ids = new ArrayList<>();
+        for (int id = both.nextId(0); id >= 0; id = both.nextId(id + 1)) {
+            AttributeSet start = new AttributeSet(coreClosure);
+            start.addId(id);
+            AttributeSet closure = engine.closure(start);
+            closure.retain(attributes);
+            power[id] = closure.size();
+            ids.add(id);
+        }
+        Collections.sort(ids, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return power[a] != power[b] ? Integer.compare(power[b], power[a]) : Integer.compare(a, b);
+            }
+        });
+        this.order = new int[ids.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = ids.get(i);
+        }
+    }
+    // endregion
+
+    /**
+     * attributes that are in every candidate key, the lower bound
+     * of the search
+     * @return
+     */
+    public AttributeSet getCore() {
+        return new AttributeSet(core);
+    }
+
+    /**
+     * a candidate key of minimum size
+     * @return
+     */
+    public AttributeSet find() {
+        bounded = false;
+        return run();
+    }
+
+    /**
+     * a candidate key of minimum size, or the smallest key found
+     * within the time budget, see isOptimal
+     * @param timeout
+     * @param unit
+     * @return
+     */
+    public AttributeSet find(long timeout, TimeUnit unit) {
+        // a budget of centuries is no budget, and would overflow below
+        long budget = unit.toNanos(timeout);
+        bounded = budget < Long.MAX_VALUE / 2;
+        deadline = System.nanoTime() + budget;
+        return run();
+    }
+
+    private AttributeSet run() {
+        optimal = true;
+        best = greedy();
+        if (best.size() > core.size()) {
+            AttributeSet chosen = new AttributeSet(core);
+            search(chosen, engine.closure(chosen), 0);
+        }
+        return new AttributeSet(best);
+    }
+
+    /**
+     * whether the last find searched to the end, so the key it
+     * returned has minimum size
+     * @return
+     */
+    public boolean isOptimal() {
+        return optimal;
+    }
+
+    /**
+     * core plus attributes in order until it is a superkey, then
+     * minimized from the weakest attribute back
+     */
+    private AttributeSet greedy() {
+        AttributeSet key = new AttributeSet(core);
+        AttributeSet closure = engine.closure(key);
+        List<Integer> added = new ArrayList<>();
+        for (int i = 0; i < order.length && !attributes.subsetOf(closure); i++) {
+            if (!closure.containsId(order[i])) {
+                key.addId(order[i]);
+                added.add(order[i]);
+                closure = engine.closure(key);
+            }
+        }
+        for (int i = added.size() - 1; i >= 0; i--) {
+            key.removeId(added.get(i));
+            if (!attributes.subsetOf(engine.closure(key))) {
+                key.addId(added.get(i));
+            }
+        }
+        return key;
+    }
+
+    /**
+     * extend chosen by attributes from position start of the order on
+     * @param chosen core plus the attributes picked so far
+     * @param closure closure of chosen
+     * @param start
+     */
+    private void search(AttributeSet chosen, AttributeSet closure, int start) {
+        if (attributes.subsetOf(closure)) {
+            if (chosen.size() < best.size()) {
+                best = new AttributeSet(chosen);
+            }
+            return;
+        }
+        // a superkey needs at least one more attribute
+        if (chosen.size() + 1 >= best.size()) {
+            return;
+        }
+        if (bounded && System.nanoTime() - deadline > 0) {
+            optimal = false;
+            return;
+        }
+        AttributeSet open = new AttributeSet(chosen);
+        for (int i = start; i < order.length; i++) {
+            if (!closure.containsId(order[i])) {
+                open.addId(order[i]);
+            }
+        }
+        if (!attributes.subsetOf(engine.closure(open))) {
+            return;
+        }
+        for (int i = start; i < order.length && chosen.size() + 1 < best.size() && optimal; i++) {
+            int id = order[i];
+            if (closure.containsId(id)) {
+                continue;
+            }
+            chosen.addId(id);
+            search(chosen, engine.closure(chosen), i + 1);
+            chosen.removeId(id);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package db.relational;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * candidate key search that splits the subset lattice across a fork-join
+ * pool. every key is the core plus a subset of the attributes that are
+ * both derived and used on a left hand side, those subsets are searched
+ * one size at a time and each size is split by prefix into tasks. keys of
+ * smaller sizes are shared with every worker so supersets are pruned
+ * before their closure is computed. the keys of a level are sorted before
+ * they are published, so the result does not depend on the parallelism.
+ */
+public class ParallelKeySearch {
+    /**
+     * subtrees with fewer subsets than this are searched by one worker
+     */
+    private static final long SPLIT_THRESHOLD = 256;
+
+    public static final Comparator<AttributeSet> KEY_ORDER = new Comparator<AttributeSet>() {
+        @Override
+        public int compare(AttributeSet k1, AttributeSet k2) {
+            if (k1.size() != k2.size()) {
+                return Integer.compare(k1.size(), k2.size());
+            }
+            int i1 = k1.nextId(0);
+            int i2 = k2.nextId(0);
+            while (i1 == i2 && i1 >= 0) {
+                i1 = k1.nextId(i1 + 1);
+                i2 = k2.nextId(i2 + 1);
+            }
+            return Integer.compare(i1, i2);
+        }
+    };
+
+    private final AttributeSet attributes;
+    private final ClosureEngine engine;
+    private final AttributeSet core;
+    private final int[] free;
+    private final List<AttributeSet> keys = new ArrayList<>();
+    // keys of the finished levels, only written between levels
+    private SetTrie<AttributeSet> keyTrie = new SetTrie<>();
+
+    // region Constructors
+
+    /**
+     * search for the candidate keys of a relation
+     * @param r
+     */
+    public ParallelKeySearch(Relation r) {
+        this(r.attributes, r.functionalDependencies);
+    }
+
+    /**
+     * search for the candidate keys of the attributes under fds
+     * @param attributes
+     * @param fds
+     */
+    public ParallelKeySearch(AttributeSet attributes, FunctionalDependencySet fds) {
+        CandidateKeyFinder partition = new CandidateKeyFinder(attributes, fds);
+        this.attributes = new AttributeSet(attributes);
+        this.engine = fds.closureEngine();
+        this.core = partition.getCore();
+        AttributeSet both = partition.getBoth();
+        this.free = new int[both.size()];
+        int i = 0;
+        for (int id = both.nextId(0); id >= 0; id = both.nextId(id + 1)) {
+            free[i++] = id;
+        }
+    }
+    // endregion
+
+    /**
+     * run the search in the common pool
+     * @return candidate keys, smallest first
+     */
+    public List<AttributeSet> search() {
+        return search(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * run the search in the given pool
+     * @param pool
+     * @return candidate keys, smallest first
+     */
+    public List<AttributeSet> search(ForkJoinPool pool) {
+        keys.clear();
+        keyTrie = new SetTrie<>();
+        for (int k = 0; k <= free.length; k++) {
+            Queue<AttributeSet> found = new ConcurrentLinkedQueue<>();
+            AtomicBoolean open = new AtomicBoolean(false);
+            pool.invoke(new LevelTask(k, new int[k], 0, 0, found, open));
+
+            List<AttributeSet> level = new ArrayList<>(found);
+            Collections.sort(level, KEY_ORDER);
+            keys.addAll(level);
+            for (AttributeSet key : level) {
+                keyTrie.put(key, key);
+            }
+            // every larger subset contains one of this size, so once all of
+            // them contain a key there is nothing left to find
+            if (!open.get()) {
+                break;
+            }
+        }
+        List<AttributeSet> result = new ArrayList<>();
+        for (AttributeSet key : keys) {
+            result.add(new AttributeSet(key));
+        }
+        return result;
+    }
+
+    private boolean containsKey(AttributeSet attrs) {
+        return keyTrie.containsSubsetOf(attrs);
+    }
+
+    /**
+     * number of ways to choose k out of n, saturating
+     */
+    private static long choose(int n, int k) {
+        if (k < 0 || k > n) {
+            return 0;
+        }
+        long c = 1;
+        for (int i = 1; i <= k; i++) {
+            c = c * (n - k + i) / i;
+            if (c > Integer.MAX_VALUE) {
+                return Integer.MAX_VALUE;
+            }
+        }
+        return c;
+    }
+
+    /**
+     * the subsets of size k of the free attributes that extend a fixed
+     * prefix of chosen indices, the next index is at least start
+     */
+    private class LevelTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int k;
+        private final int[] chosen;
+        private final int length;
+        private final int start;
+        private final Queue<AttributeSet> found;
+        private final AtomicBoolean open;
+
+        LevelTask(int k, int[] chosen, int length, int start, Queue<AttributeSet> found, AtomicBoolean open) {
+            this.k = k;
+            this.chosen = chosen;
+            this.length = length;
+            this.start = start;
+            this.found = found;
+            this.open = open;
+        }
+
+        @Override
+        protected void compute() {
+            if (length == k) {
+                test(chosen);
+                return;
+            }
+            if (choose(free.length - start, k - length) <= SPLIT_THRESHOLD) {
+                enumerate(chosen.clone(), length, start);
+                return;
+            }
+            List<LevelTask> tasks = new ArrayList<>();
+            for (int i = start; i <= free.length - (k - length); i++) {
+                int[] prefix = chosen.clone();
+                prefix[length] = i;
+                tasks.add(new LevelTask(k, prefix, length + 1, i + 1, found, open));
+            }
+            invokeAll(tasks);
+        }
+
+        private void enumerate(int[] combination, int length, int start) {
+            if (length == k) {
+                test(combination);
+                return;
+            }
+            for (int i = start; i <= free.length - (k - length); i++) {
+                combination[length] = i;
+                enumerate(combination, length + 1, i + 1);
+            }
+        }
+
+        private void test(int[] combination) {
+            AttributeSet candidate = new AttributeSet(core);
+            for (int i : combination) {
+                candidate.addId(free[i]);
+            }
+            if (containsKey(candidate)) {
+                return;
+            }
+            open.set(true);
+            if (attributes.subsetOf(engine.closure(candidate))) {
+                found.add(candidate);
+            }
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package db.relational;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * immutable set of attributes, a bitset over attribute ids like
+ * AttributeSet that can be shared between threads without copying.
+ * with and without return a new set and leave this one alone, the
+ * words are copied on write, which for the few words of a schema is
+ * cheaper than a tree of them, and a change that changes nothing
+ * returns the set itself. the size and the Zobrist hash, see
+ * AttributeSet.key, are carried over from set to set. as in
+ * AttributeSet, two non-empty sets of different dictionaries are never
+ * combined or compared id by id.
+ */
+public final class PersistentAttributeSet {
+    private static final long[] NO_WORDS = new long[0];
+
+    private final long[] words;
+    private final AttributeDictionary dictionary;
+    private final int size;
+    private final long hash;
+
+    // region Constructors
+    private PersistentAttributeSet(long[] words, AttributeDictionary dictionary, int size, long hash) {
+        int n = words.length;
+        while (n > 0 && words[n - 1] == 0) {
+            n--;
+        }
+        this.words = n == words.length ? words : Arrays.copyOf(words, n);
+        this.dictionary = dictionary;
+        this.size = size;
+        this.hash = hash;
+    }
+
+    private PersistentAttributeSet(long[] words, AttributeDictionary dictionary) {
+        this(words, dictionary, size(words), hash(words));
+    }
+
+    private static int size(long[] words) {
+        int size = 0;
+        for (long w : words) {
+            size += Long.bitCount(w);
+        }
+        return size;
+    }
+
+    private static long hash(long[] words) {
+        long hash = 0;
+        for (int i = 0; i < words.length; i++) {
+            for (long w = words[i]; w != 0; w &= w - 1) {
+                hash ^= AttributeSet.key((i << 6) + Long.numberOfTrailingZeros(w));
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * empty set of a dictionary
+     * @param dictionary
+     * @return
+     */
+    public static PersistentAttributeSet empty(AttributeDictionary dictionary) {
+        return new PersistentAttributeSet(NO_WORDS, dictionary);
+    }
+
+    /**
+     * immutable copy of attrs
+     * @param attrs
+     * @return
+     */
+    public static PersistentAttributeSet of(AttributeSet attrs) {
+        long[] words = new long[(attrs.length() + 63) >>> 6];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = attrs.word(i);
+        }
+        return new PersistentAttributeSet(words, attrs.dictionary(), attrs.size(), attrs.zobrist());
+    }
+    // endregion
+
+    /**
+     * this set with attr added
+     * @param attr
+     * @return
+     */
+    public PersistentAttributeSet with(Attribute<?> attr) {
+        if (attr.getDictionary() != dictionary) {
+            if (size != 0 || dictionary != AttributeDictionary.global()) {
+                throw mixed();
+            }
+            return empty(attr.getDictionary()).withId(attr.getId());
+        }
+        return withId(attr.getId());
+    }
+
+    /**
+     * this set with attr removed
+     * @param attr
+     * @return
+     */
+    public PersistentAttributeSet without(Attribute<?> attr) {
+        return attr.getDictionary() == dictionary ? withoutId(attr.getId()) : this;
+    }
+
+    /**
+     * this set with the attribute of the given id added
+     * @param id
+     * @return
+     */
+    public PersistentAttributeSet withId(int id) {
+        if (containsId(id)) {
+            return this;
+        }
+        long[] w = Arrays.copyOf(words, Math.max(words.length, (id >>> 6) + 1));
+        w[id >>> 6] |= 1L << id;
+        return new PersistentAttributeSet(w, dictionary, size + 1, hash ^ AttributeSet.key(id));
+    }
+
+    /**
+     * this set with the attribute of the given id removed
+     * @param id
+     * @return
+     */
+    public PersistentAttributeSet withoutId(int id) {
+        if (!containsId(id)) {
+            return this;
+        }
+        long[] w = words.clone();
+        w[id >>> 6] &= ~(1L << id);
+        return new PersistentAttributeSet(w, dictionary, size - 1, hash ^ AttributeSet.key(id));
+    }
+
+    /**
+     * this set with every attribute of attrs added
+     * @param attrs
+     * @return
+     */
+    public PersistentAttributeSet union(PersistentAttributeSet attrs) {
+        if (attrs.size == 0) {
+            return this;
+        }
+        if (size == 0) {
+            return attrs;
+        }
+        check(attrs.dictionary, attrs.size);
+        if (attrs.subsetOf(this)) {
+            return this;
+        }
+        if (this.subsetOf(attrs)) {
+            return attrs;
+        }
+        long[] w = Arrays.copyOf(words, Math.max(words.length, attrs.words.length));
+        for (int i = 0; i < attrs.words.length; i++) {
+            w[i] |= attrs.words[i];
+        }
+        return new PersistentAttributeSet(w, dictionary);
+    }
+
+    /**
+     * this set without the attributes of attrs
+     * @param attrs
+     * @return
+     */
+    public PersistentAttributeSet subtract(PersistentAttributeSet attrs) {
+        check(attrs.dictionary, attrs.size);
+        long[] w = words.clone();
+        boolean changed = false;
+        for (int i = 0; i < Math.min(w.length, attrs.words.length); i++) {
+            changed |= (w[i] & attrs.words[i]) != 0;
+            w[i] &= ~attrs.words[i];
+        }
+        return changed ? new PersistentAttributeSet(w, dictionary) : this;
+    }
+
+    public boolean contains(Attribute<?> attr) {
+        return attr != null && attr.getDictionary() == dictionary && containsId(attr.getId());
+    }
+
+    public boolean containsId(int id) {
+        int i = id >>> 6;
+        return id >= 0 && i < words.length && (words[i] & (1L << id)) != 0;
+    }
+
+    public boolean subsetOf(PersistentAttributeSet attrs) {
+        check(attrs.dictionary, attrs.size);
+        if (size > attrs.size || words.length > attrs.words.length) {
+            return false;
+        }
+        for (int i = 0; i < words.length; i++) {
+            if ((words[i] & ~attrs.words[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * whether every attribute of this set is in attrs
+     * @param attrs
+     * @return
+     */
+    public boolean subsetOf(AttributeSet attrs) {
+        check(attrs.dictionary(), attrs.size());
+        for (int i = 0; i < words.length; i++) {
+            if ((words[i] & ~attrs.word(i)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * ids of another dictionary only compare with the ids of this set when
+     * one of the two sets is empty
+     */
+    private void check(AttributeDictionary dictionary, int size) {
+        if (this.dictionary != dictionary && this.size != 0 && size != 0) {
+            throw mixed();
+        }
+    }
+
+    private IllegalArgumentException mixed() {
+        return new IllegalArgumentException(this + " is combined with attributes of another dictionary");
+    }
+
+    /**
+     * next id in the set at or after from, -1 if none
+     * @param from
+     * @return
+     */
+    public int nextId(int from) {
+        if (from < 0) {
+            from = 0;
+        }
+        int i = from >>> 6;
+        if (i >= words.length) {
+            return -1;
+        }
+        long w = words[i] & (-1L << from);
+        while (true) {
+            if (w != 0) {
+                return (i << 6) + Long.numberOfTrailingZeros(w);
+            }
+            if (++i >= words.length) {
+                return -1;
+            }
+            w = words[i];
+        }
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public AttributeDictionary dictionary() {
+        return dictionary;
+    }
+
+    /**
+     * mutable copy of this set
+     * @return
+     */
+    public AttributeSet toAttributeSet() {
+        AttributeSet attrs = new AttributeSet(dictionary);
+        for (int i = words.length - 1; i >= 0; i--) {
+            if (words[i] != 0) {
+                attrs.setWord(i, words[i]);
+            }
+        }
+        return attrs;
+    }
+
+    /**
+     * attributes in ascending id order
+     * @return
+     */
+    public List<Attribute<?>> toList() {
+        List<Attribute<?>> list = new ArrayList<>(size);
+        for (int id = nextId(0); id >= 0; id = nextId(id + 1)) {
+            list.add(dictionary.get(id));
+        }
+        return list;
+    }
+
+    @Override
+    public String toString() {
+        return toList().toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PersistentAttributeSet)) return false;
+        PersistentAttributeSet attrs = (PersistentAttributeSet) o;
+        return hash == attrs.hash && size == attrs.size
+                && (size == 0 || dictionary == attrs.dictionary) && Arrays.equals(words, attrs.words);
+    }
+
+    /**
+     * same as the hashCode of an AttributeSet with the same ids
+     * @return
+     */
+    @Override
+    public int hashCode() {
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
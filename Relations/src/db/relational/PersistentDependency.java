@@ -0,0 +1,65 @@
+package db.relational;
+
+/**
+ * immutable functional or multivalued dependency over persistent
+ * attribute sets, the element of a PersistentDependencySet
+ */
+public final class PersistentDependency {
+    public final PersistentAttributeSet lhs;
+    public final PersistentAttributeSet rhs;
+    public final boolean multivalued;
+    private final int hash;
+
+    // region Constructors
+
+    /**
+     * dependency lhs -> rhs, or lhs ->> rhs when multivalued
+     * @param lhs
+     * @param rhs
+     * @param multivalued
+     */
+    public PersistentDependency(PersistentAttributeSet lhs, PersistentAttributeSet rhs, boolean multivalued) {
+        this.lhs = lhs;
+        this.rhs = rhs;
+        this.multivalued = multivalued;
+        int hash = 31 * lhs.hashCode() + rhs.hashCode();
+        this.hash = multivalued ? ~hash : hash;
+    }
+
+    /**
+     * immutable copy of fd
+     * @param fd
+     * @return
+     */
+    public static PersistentDependency of(FunctionalDependency fd) {
+        return new PersistentDependency(PersistentAttributeSet.of(fd.lhs), PersistentAttributeSet.of(fd.rhs),
+                fd.multivalued);
+    }
+    // endregion
+
+    /**
+     * mutable copy of this dependency
+     * @return
+     */
+    public FunctionalDependency toFunctionalDependency() {
+        return new FunctionalDependency(lhs.toAttributeSet(), rhs.toAttributeSet()).multivalued(multivalued);
+    }
+
+    @Override
+    public String toString() {
+        return lhs + (multivalued ? "->>" : "->") + rhs;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PersistentDependency)) return false;
+        PersistentDependency fd = (PersistentDependency) o;
+        return hash == fd.hash && multivalued == fd.multivalued && lhs.equals(fd.lhs) && rhs.equals(fd.rhs);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,386 @@
+package db.relational;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * immutable set of dependencies as a hash array mapped trie: every node
+ * holds a 32 bit bitmap of the hash digits it uses and a packed array of
+ * entries, each either a dependency or a child node for the next 5 bits
+ * of the hash. with and without copy only the path from the root to the
+ * changed entry, everything else is shared with the set they were called
+ * on. dependencies whose hashes agree in all 32 bits end up in a
+ * collision node, a plain array without a bitmap.
+ *
+ * a set can be read from any number of threads. its closure index is
+ * compiled on the first closure and kept, the index is only read
+ * afterwards.
+ */
+public final class PersistentDependencySet implements Iterable<PersistentDependency> {
+    private static final Node EMPTY_NODE = new Node(0, new Object[0]);
+    private static final PersistentDependencySet EMPTY = new PersistentDependencySet(EMPTY_NODE, 0, 0);
+
+    private final Node root;
+    private final int size;
+    private final int hash;
+    private volatile ClosureEngine closureEngine;
+
+    private static final class Node {
+        final int bitmap;
+        final Object[] array;
+
+        Node(int bitmap, Object[] array) {
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+    }
+
+    // region Constructors
+    private PersistentDependencySet(Node root, int size, int hash) {
+        this.root = root;
+        this.size = size;
+        this.hash = hash;
+    }
+
+    /**
+     * the empty set
+     * @return
+     */
+    public static PersistentDependencySet empty() {
+        return EMPTY;
+    }
+
+    /**
+     * immutable copy of fds
+     * @param fds
+     * @return
+     */
+    public static PersistentDependencySet of(FunctionalDependencySet fds) {
+        PersistentDependencySet set = EMPTY;
+        for (FunctionalDependency fd : fds) {
+            set = set.with(fd);
+        }
+        return set;
+    }
+    // endregion
+
+    /**
+     * this set with fd added
+     * @param fd
+     * @return
+     */
+    public PersistentDependencySet with(PersistentDependency fd) {
+        Node node = insert(root, fd, fd.hashCode(), 0);
+        return node == root ? this : new PersistentDependencySet(node, size + 1, hash + fd.hashCode());
+    }
+
+    /**
+     * this set with an immutable copy of fd added
+     * @param fd
+     * @return
+     */
+    public PersistentDependencySet with(FunctionalDependency fd) {
+        return with(PersistentDependency.of(fd));
+    }
+
+    /**
+     * this set with fd removed
+     * @param fd
+     * @return
+     */
+    public PersistentDependencySet without(PersistentDependency fd) {
+        Node node = remove(root, fd, fd.hashCode(), 0);
+        if (node == root) {
+            return this;
+        }
+        return node == null ? EMPTY : new PersistentDependencySet(node, size - 1, hash - fd.hashCode());
+    }
+
+    public boolean contains(PersistentDependency fd) {
+        Node node = root;
+        int h = fd.hashCode();
+        for (int shift = 0; ; shift += 5) {
+            if (shift >= 32) {
+                for (Object entry : node.array) {
+                    if (fd.equals(entry)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            int bit = 1 << ((h >>> shift) & 31);
+            if ((node.bitmap & bit) == 0) {
+                return false;
+            }
+            Object entry = node.array[Integer.bitCount(node.bitmap & (bit - 1))];
+            if (!(entry instanceof Node)) {
+                return fd.equals(entry);
+            }
+            node = (Node) entry;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * closure of attrs under the functional dependencies of this set
+     * @param attrs
+     * @return a new attribute set, attrs is not modified
+     */
+    public AttributeSet closure(AttributeSet attrs) {
+        return closureEngine().closure(attrs);
+    }
+
+    /**
+     * closure of attrs under the functional dependencies of this set
+     * @param attrs
+     * @return
+     */
+    public PersistentAttributeSet closure(PersistentAttributeSet attrs) {
+        return PersistentAttributeSet.of(closureEngine().closure(attrs.toAttributeSet()));
+    }
+
+    /**
+     * compiled closure index, built once per set. two threads may both
+     * build it the first time, either result is the same index
+     */
+    private ClosureEngine closureEngine() {
+        ClosureEngine engine = closureEngine;
+        if (engine == null) {
+            List<FunctionalDependency> fds = new ArrayList<>(size);
+            for (PersistentDependency fd : this) {
+                fds.add(fd.toFunctionalDependency());
+            }
+            engine = new ClosureEngine(fds);
+            closureEngine = engine;
+        }
+        return engine;
+    }
+
+    /**
+     * mutable copy of this set
+     * @return
+     */
+    public FunctionalDependencySet toFunctionalDependencySet() {
+        FunctionalDependencySet fds = new FunctionalDependencySet();
+        for (PersistentDependency fd : this) {
+            fds.add(fd.toFunctionalDependency());
+        }
+        return fds;
+    }
+
+    // region Trie
+    private static Node insert(Node node, PersistentDependency fd, int h, int shift) {
+        if (shift >= 32) {
+            for (Object entry : node.array) {
+                if (fd.equals(entry)) {
+                    return node;
+                }
+            }
+            Object[] array = Arrays.copyOf(node.array, node.array.length + 1);
+            array[node.array.length] = fd;
+            return new Node(0, array);
+        }
+        int bit = 1 << ((h >>> shift) & 31);
+        int i = Integer.bitCount(node.bitmap & (bit - 1));
+        if ((node.bitmap & bit) == 0) {
+            Object[] array = new Object[node.array.length + 1];
+            System.arraycopy(node.array, 0, array, 0, i);
+            array[i] = fd;
+            System.arraycopy(node.array, i, array, i + 1, node.array.length - i);
+            return new Node(node.bitmap | bit, array);
+        }
+        Object entry = node.array[i];
+        Object child;
+        if (entry instanceof Node) {
+            child = insert((Node) entry, fd, h, shift + 5);
+            if (child == entry) {
+                return node;
+            }
+        } else if (fd.equals(entry)) {
+            return node;
+        } else {
+            child = pair((PersistentDependency) entry, fd, h, shift + 5);
+        }
+        Object[] array = node.array.clone();
+        array[i] = child;
+        return new Node(node.bitmap, array);
+    }
+
+    /**
+     * node holding two dependencies whose hashes agree below shift
+     */
+    private static Node pair(PersistentDependency a, PersistentDependency b, int h, int shift) {
+        if (shift >= 32) {
+            return new Node(0, new Object[]{a, b});
+        }
+        int ha = (a.hashCode() >>> shift) & 31;
+        int hb = (h >>> shift) & 31;
+        if (ha == hb) {
+            return new Node(1 << ha, new Object[]{pair(a, b, h, shift + 5)});
+        }
+        return new Node((1 << ha) | (1 << hb), ha < hb ? new Object[]{a, b} : new Object[]{b, a});
+    }
+
+    /**
+     * node without fd, the node itself if fd is not in it and null if
+     * nothing is left
+     */
+    private static Node remove(Node node, PersistentDependency fd, int h, int shift) {
+        if (shift >= 32) {
+            for (int i = 0; i < node.array.length; i++) {
+                if (fd.equals(node.array[i])) {
+                    return node.array.length == 1 ? null : new Node(0, without(node.array, i));
+                }
+            }
+            return node;
+        }
+        int bit = 1 << ((h >>> shift) & 31);
+        if ((node.bitmap & bit) == 0) {
+            return node;
+        }
+        int i = Integer.bitCount(node.bitmap & (bit - 1));
+        Object entry = node.array[i];
+        if (entry instanceof Node) {
+            Node child = remove((Node) entry, fd, h, shift + 5);
+            if (child == entry) {
+                return node;
+            }
+            if (child != null) {
+                Object[] array = node.array.clone();
+                // a child left with a single dependency is pulled up. the
+                // child did the same with its own child, so a whole chain
+                // that is left with one dependency collapses level by level
+                // and the dependency ends where insert would put it. a chain
+                // of single child nodes above two or more dependencies
+                // stays, insert builds the same chain through pair
+                array[i] = child.array.length == 1 && !(child.array[0] instanceof Node) ? child.array[0] : child;
+                return new Node(node.bitmap, array);
+            }
+        } else if (!fd.equals(entry)) {
+            return node;
+        }
+        if (node.array.length == 1) {
+            return null;
+        }
+        return new Node(node.bitmap & ~bit, without(node.array, i));
+    }
+
+    /**
+     * number of nodes of the trie, the same dependencies give the same
+     * count whatever the order of with and without
+     */
+    int nodeCount() {
+        return nodeCount(root);
+    }
+
+    private static int nodeCount(Node node) {
+        int count = 1;
+        for (Object entry : node.array) {
+            if (entry instanceof Node) {
+                count += nodeCount((Node) entry);
+            }
+        }
+        return count;
+    }
+
+    private static Object[] without(Object[] array, int i) {
+        Object[] smaller = new Object[array.length - 1];
+        System.arraycopy(array, 0, smaller, 0, i);
+        System.arraycopy(array, i + 1, smaller, i, array.length - i - 1);
+        return smaller;
+    }
+    // endregion
+
+    @Override
+    public Iterator<PersistentDependency> iterator() {
+        return new Iterator<PersistentDependency>() {
+            private final Deque<Node> nodes = new ArrayDeque<>();
+            private final Deque<Integer> positions = new ArrayDeque<>();
+            private PersistentDependency next;
+
+            {
+                nodes.push(root);
+                positions.push(0);
+                advance();
+            }
+
+            private void advance() {
+                next = null;
+                while (!nodes.isEmpty()) {
+                    Node node = nodes.peek();
+                    int i = positions.pop();
+                    if (i == node.array.length) {
+                        nodes.pop();
+                        continue;
+                    }
+                    positions.push(i + 1);
+                    Object entry = node.array[i];
+                    if (entry instanceof Node) {
+                        nodes.push((Node) entry);
+                        positions.push(0);
+                    } else {
+                        next = (PersistentDependency) entry;
+                        return;
+                    }
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public PersistentDependency next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                PersistentDependency fd = next;
+                advance();
+                return fd;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder();
+        for (PersistentDependency fd : this) {
+            out.append(fd).append("\n");
+        }
+        return out.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PersistentDependencySet)) return false;
+        PersistentDependencySet fds = (PersistentDependencySet) o;
+        if (size != fds.size || hash != fds.hash) {
+            return false;
+        }
+        for (PersistentDependency fd : this) {
+            if (!fds.contains(fd)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -2,18 +2,25 @@ package db.relational;
 
 import db.util.Set;
 
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Scanner;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 public class Relation {
     public String name;
     public AttributeSet attributes;
     public FunctionalDependencySet functionalDependencies;
+    private List<AttributeSet> adoptedKeys;
+    private AttributeSet adoptedKeysAttributes;
+    private FunctionalDependencySet adoptedKeysFds;
+    private int adoptedKeysVersion;
 
     // region Constructors
     public Relation() {
@@ -78,23 +85,62 @@ public class Relation {
 
     /**
      * relation from a file with the first line as "name(attr1, attr2, attr3...)"
-     * and the following lines are functional dependencies
+     * and the following lines are functional dependencies, see SchemaParser.
+     * malformed lines are skipped, the overload with an error list reports them
      * @param filename
      * @return relation if success, null if failed
      */
     public static Relation fromFile(String filename, String delimeter_nextAttr, String arrow) {
+        return fromFile(filename, delimeter_nextAttr, arrow, AttributeDictionary.global());
+    }
+
+    /**
+     * relation from a file like fromFile(filename, delimeter_nextAttr, arrow)
+     * with its attributes interned by dictionary, so schemas with their own
+     * dictionaries can be loaded side by side
+     * @param filename
+     * @param dictionary
+     * @return relation if success, null if failed
+     */
+    public static Relation fromFile(String filename, String delimeter_nextAttr, String arrow,
+                                    AttributeDictionary dictionary) {
+        return fromFile(filename, delimeter_nextAttr, arrow, dictionary, new ArrayList<>());
+    }
+
+    /**
+     * relation from a file like fromFile(filename, delimeter_nextAttr, arrow,
+     * dictionary) that hands the malformed lines to the caller
+     * @param filename
+     * @param dictionary
+     * @param errors receives the errors of the parse, at most
+     *               SchemaParser.MAX_ERRORS of them, also when the header
+     *               is malformed and null is returned
+     * @return relation if success, null if failed
+     */
+    public static Relation fromFile(String filename, String delimeter_nextAttr, String arrow,
+                                    AttributeDictionary dictionary, List<SchemaParser.Error> errors) {
+        SchemaParser parser = new SchemaParser(delimeter_nextAttr, arrow, dictionary);
         try {
-            Scanner scanner = new Scanner(new File(filename));
-            Relation relation = Relation.fromString(scanner.nextLine());
-            if (relation == null) {
-                return null;
-            }
-            while (scanner.hasNextLine()) {
-                relation.functionalDependencies.add(
-                        FunctionalDependency.fromString(scanner.nextLine(), delimeter_nextAttr, arrow));
-            }
-            return relation;
-        } catch (FileNotFoundException e) {
+            Relation relation = parser.parse(Paths.get(filename));
+            errors.addAll(parser.getErrors());
+            return parser.hasHeader() ? relation : null;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * relation from a binary snapshot written by SchemaSnapshot, with
+     * its closure index, canonical cover and candidate keys taken from
+     * the snapshot if it has them
+     * @param filename
+     * @return relation if success, null if failed
+     */
+    public static Relation fromSnapshot(String filename) {
+        try {
+            return SchemaSnapshot.read(Paths.get(filename)).relation;
+        } catch (IOException e) {
             e.printStackTrace();
         }
         return null;
@@ -112,11 +158,37 @@ public class Relation {
     }
 
     // region BCNF
+
+    /**
+     * whether fd is checked for BCNF in a relation over attributes: it is
+     * functional, nontrivial and within the attributes. it violates BCNF
+     * when its left hand side is not a superkey either
+     * @param fd
+     * @param attributes
+     * @return
+     */
+    static boolean mayViolateBCNF(FunctionalDependency fd, AttributeSet attributes) {
+        return !fd.multivalued && !fd.rhs.subsetOf(fd.lhs) && fd.within(attributes);
+    }
+
+    /**
+     * dependencies of this relation that violate BCNF, see mayViolateBCNF
+     * @return
+     */
     public FunctionalDependencySet BCNFViolations() {
+        List<FunctionalDependency> candidates = new ArrayList<>();
+        List<AttributeSet> lhs = new ArrayList<>();
+        for (FunctionalDependency fd : functionalDependencies.withLHSIn(attributes)) {
+            if (mayViolateBCNF(fd, attributes)) {
+                candidates.add(fd);
+                lhs.add(fd.lhs);
+            }
+        }
+        List<AttributeSet> closures = functionalDependencies.closureAll(lhs);
         FunctionalDependencySet violations = new FunctionalDependencySet();
-        for (FunctionalDependency fd : functionalDependencies.toList()) {
-            if (fd.attributes().subsetOf(attributes) && !isSuperKey(fd.lhs)) {
-                violations.add(fd);
+        for (int i = 0; i < candidates.size(); i++) {
+            if (!attributes.subsetOf(closures.get(i))) {
+                violations.add(candidates.get(i));
             }
         }
         return violations;
@@ -126,108 +198,289 @@ public class Relation {
         return this.BCNFViolations().isEmpty();
     }
 
+    /**
+     * BCNF decomposition, see BCNFDecomposer. a relation that inBCNF
+     * accepts can still violate BCNF through dependencies that are only
+     * implied, so the decomposer decides on the projected dependencies
+     * @return
+     */
     public Set<Relation> BCNFDecomposition() {
-        if (inBCNF()) {
-            return new Set<>(this);
-        }
-        Set<Relation> result = new Set<>(this);
-        boolean done = false;
-        int i = 0;
-        while (!done) {
-            int changed = 0;
-            List<Relation> resultList = result.toList();
-            for (Relation ri : resultList) {
-                FunctionalDependency violation = ri.BCNFViolations().get();
-                if (violation != null) {
-                    result.subtract(ri);
-                    result.add(subtract(ri, violation.rhs).name("R" + (++i)));
-                    result.add(new Relation(new AttributeSet(violation), ri.functionalDependencies).name("R" + (++i)));
-                    changed++;
-                }
-            }
-            done = changed == 0;
-        }
-        return result;
+        return new BCNFDecomposer(this).result();
+    }
+
+    /**
+     * BCNF decomposition as a tree that records which violation
+     * caused each split
+     * @return
+     */
+    public DecompositionNode BCNFDecompositionTree() {
+        return new BCNFDecomposer(this).decompose();
     }
     // endregion
 
     // region 3NF
+
+    /**
+     * every nontrivial X -> A has a superkey X or a prime A. one candidate
+     * key settles most attributes, more keys are only enumerated for an
+     * attribute that is neither in a key found so far nor right-only
+     * @return
+     */
     public boolean in3NF() {
-        FunctionalDependencySet BCNFViolations = BCNFViolations();
-        Set<AttributeSet> candidateKeys = getCandidateKeys();
-        for (FunctionalDependency fd : BCNFViolations.toList()) {
-            if (!containedInCandidateKey(fd)) {
-                return true;
+        FunctionalDependencySet local = localDependencies();
+        CandidateKeyFinder keys = new CandidateKeyFinder(attributes, local);
+        AttributeSet prime = keys.findOne();
+        AttributeSet rightOnly = keys.getRightOnly();
+        List<FunctionalDependency> fds = local.toList();
+        List<AttributeSet> lhs = new ArrayList<>();
+        for (FunctionalDependency fd : fds) {
+            lhs.add(fd.lhs);
+        }
+        List<AttributeSet> closures = local.closureAll(lhs);
+        for (int i = 0; i < fds.size(); i++) {
+            if (attributes.subsetOf(closures.get(i))) {
+                continue;
+            }
+            AttributeSet derived = AttributeSet.subtract(fds.get(i).rhs, fds.get(i).lhs);
+            for (int id = derived.nextId(0); id >= 0; id = derived.nextId(id + 1)) {
+                if (!isPrime(id, keys, prime, rightOnly)) {
+                    return false;
+                }
             }
         }
         return true;
     }
 
-    private boolean containedInCandidateKey(FunctionalDependency fd) {
-        Set<AttributeSet> candidateKeys = getCandidateKeys();
-        for (AttributeSet candidateKey : candidateKeys.toList()) {
-            if (Set.subtract(fd.rhs, fd.lhs).subsetOf(candidateKey)) {
+    private static boolean isPrime(int id, Iterator<AttributeSet> keys, AttributeSet prime, AttributeSet rightOnly) {
+        if (prime.containsId(id)) {
+            return true;
+        }
+        if (rightOnly.containsId(id)) {
+            return false;
+        }
+        while (keys.hasNext()) {
+            AttributeSet key = keys.next();
+            prime.union(key);
+            if (key.containsId(id)) {
                 return true;
             }
         }
         return false;
     }
 
+    /**
+     * 3NF synthesis from the canonical cover: one relation per cover
+     * dependency, plus one candidate key if no relation contains a key,
+     * without relations contained in another one. only a single
+     * candidate key is ever computed.
+     * @return
+     */
     public Set<Relation> ThreeNFDecomposition() {
         if (in3NF()) {
             return new Set<>(this);
         }
-        FunctionalDependencySet f_c = functionalDependencies.canonicalCover();
-        Set<AttributeSet> candidateKeys = getCandidateKeys();
-        List<Relation> resultList = new ArrayList<>();
-        int candidates = 0;
-        for (FunctionalDependency f : f_c.toList()) {
-            resultList.add(new Relation(new FunctionalDependency(f.lhs, f.rhs).toSet()));
-            candidates += f.attributes().elementOf(candidateKeys) ? 1 : 0;
+        FunctionalDependencySet f_c = localDependencies().canonicalCover();
+        List<AttributeSet> schemas = new ArrayList<>();
+        for (FunctionalDependency f : f_c) {
+            schemas.add(new AttributeSet(f));
         }
-        if (candidates == 0) {
-            resultList.add(new Relation(candidateKeys.get(), functionalDependencies));
+        boolean hasKey = false;
+        for (AttributeSet closure : f_c.closureAll(schemas)) {
+            hasKey |= attributes.subsetOf(closure);
         }
-        Set<Relation> result = new Set<>(resultList);
-        for (int i = resultList.size() - 1; i >= 0; i--) {
-            for (Relation r : result.toList()) {
-                if (resultList.get(i) == r) {
-                    break;
-                }
-                if (resultList.get(i).attributes.subsetOf(r.attributes)) {
-                    resultList.remove(i);
-                    break;
+        if (!hasKey) {
+            schemas.add(new CandidateKeyFinder(attributes, f_c).findOne());
+        }
+
+        List<Relation> result = new ArrayList<>();
+        for (int i = 0; i < schemas.size(); i++) {
+            AttributeSet schema = schemas.get(i);
+            boolean contained = false;
+            for (int j = 0; j < schemas.size() && !contained; j++) {
+                AttributeSet other = schemas.get(j);
+                contained = j != i && schema.subsetOf(other) && (j < i || !schema.equals(other));
+            }
+            if (contained) {
+                continue;
+            }
+            FunctionalDependencySet fds = new FunctionalDependencySet();
+            for (FunctionalDependency f : f_c) {
+                if (f.within(schema)) {
+                    fds.add(f);
                 }
             }
+            result.add(new Relation(schema, fds).name("R" + (result.size() + 1)));
+        }
+        return new Set<>(result);
+    }
+
+    /**
+     * whether a decomposition of this relation has a lossless join and
+     * preserves the functional dependencies
+     * @param decomposition
+     * @return
+     */
+    public boolean verifyDecomposition(Set<Relation> decomposition) {
+        return new DecompositionVerifier(this, decomposition).verify();
+    }
+
+    /**
+     * the functional dependencies without the multivalued ones, projected
+     * onto the attributes when some of them reach outside of the relation
+     * @return
+     */
+    FunctionalDependencySet localDependencies() {
+        FunctionalDependencySet functional = functionalDependencies.functional();
+        if (functional.attributes().subsetOf(attributes)) {
+            return functional;
         }
-        return new Set<>(resultList);
+        return functional.project(attributes);
+    }
+    // endregion
+
+    // region 4NF
+
+    /**
+     * no nontrivial X ->> Y over the relation that follows from the
+     * functional and multivalued dependencies has a left hand side X that
+     * is not a superkey, see FourNFDecomposer
+     * @return
+     */
+    public boolean in4NF() {
+        return new FourNFDecomposer(this).firstViolation(attributes) == null;
+    }
+
+    /**
+     * 4NF decomposition whose leaves are all in 4NF, see FourNFDecomposer
+     * @return
+     */
+    public Set<Relation> FourNFDecomposition() {
+        return new FourNFDecomposer(this).result();
+    }
+
+    /**
+     * 4NF decomposition, when not exact it only splits on the dependencies
+     * and is cheaper on wide fragments, but its leaves can still violate 4NF
+     * @param exact
+     * @return
+     */
+    public Set<Relation> FourNFDecomposition(boolean exact) {
+        return new FourNFDecomposer(this, exact).result();
+    }
+
+    /**
+     * 4NF decomposition as a tree that records which multivalued
+     * dependency caused each split
+     * @return
+     */
+    public DecompositionNode FourNFDecompositionTree() {
+        return new FourNFDecomposer(this).decompose();
     }
     // endregion
 
     public Attribute getAttribute(String name) {
-        return Attribute.get(name);
+        return attributes.dictionary().get(name);
     }
 
+    /**
+     * every superkey, there can be exponentially many
+     * @return
+     * @deprecated use superKeys() and stop consuming it when done
+     */
+    @Deprecated
     public Set<AttributeSet> getSuperKeys() {
-        FunctionalDependencySet closure = closure();
         Set<AttributeSet> superkeys = new Set<>();
-        for (FunctionalDependency fd : closure.toList()) {
-            if (attributes.subsetOf(fd.rhs)) {
-                superkeys.add(fd.lhs);
-            }
-        }
+        superKeys().forEach(superkeys::add);
         return superkeys;
     }
 
+    /**
+     * superkeys streamed from F+ smallest first, F+ itself is
+     * never materialized
+     * @return
+     */
+    public Stream<AttributeSet> superKeys() {
+        return functionalDependencies.closureStream(attributes, false)
+                .filter(fd -> attributes.subsetOf(fd.rhs))
+                .map(fd -> fd.lhs);
+    }
+
+    /**
+     * the closed attribute sets of the relation in lectic order, one for
+     * every distinct closure X+, without looking at all subsets X
+     * @return
+     */
+    public Stream<AttributeSet> closedSets() {
+        return functionalDependencies.closedSets(attributes);
+    }
+
     public Set<AttributeSet> getCandidateKeys() {
-        List<AttributeSet> superkeysList = getSuperKeys().toList();
-        Set<AttributeSet> superkeys = new Set<>();
-        for (AttributeSet superkey : superkeysList) {
-            if (!isSuperSet(superkeysList, superkey)) {
-                superkeys.add(superkey);
+        if (adoptedKeys != null && adoptedKeysFds == functionalDependencies
+                && adoptedKeysVersion == functionalDependencies.getModCount()
+                && adoptedKeysAttributes.equals(attributes)) {
+            Set<AttributeSet> keys = new Set<>();
+            for (AttributeSet key : adoptedKeys) {
+                keys.add(new AttributeSet(key));
             }
+            return keys;
         }
-        return superkeys;
+        return new Set<>(new CandidateKeyFinder(this).findAll());
+    }
+
+    /**
+     * use candidate keys found elsewhere for exactly the attributes and
+     * dependencies of this relation until either changes, see SchemaSnapshot
+     * @param keys
+     */
+    void adoptCandidateKeys(List<AttributeSet> keys) {
+        this.adoptedKeys = new ArrayList<>();
+        for (AttributeSet key : keys) {
+            adoptedKeys.add(new AttributeSet(key));
+        }
+        this.adoptedKeysAttributes = new AttributeSet(attributes);
+        this.adoptedKeysFds = functionalDependencies;
+        this.adoptedKeysVersion = functionalDependencies.getModCount();
+    }
+
+    /**
+     * candidate keys found by searching the attribute lattice in
+     * parallel on the given pool, the result does not depend on
+     * the pool's parallelism
+     * @param pool
+     * @return
+     */
+    public Set<AttributeSet> getCandidateKeys(ForkJoinPool pool) {
+        return new Set<>(new ParallelKeySearch(this).search(pool));
+    }
+
+    /**
+     * a candidate key with as few attributes as possible, found by
+     * branch and bound without enumerating the other keys
+     * @return
+     */
+    public AttributeSet minimumKey() {
+        return new MinimumKeyFinder(this).find();
+    }
+
+    /**
+     * minimumKey() with a time budget, when the budget runs out the
+     * smallest key found so far is returned, which is still a candidate
+     * key but may not be the smallest one
+     * @param timeout
+     * @param unit
+     * @return
+     */
+    public AttributeSet minimumKey(long timeout, TimeUnit unit) {
+        return new MinimumKeyFinder(this).find(timeout, unit);
+    }
+
+    /**
+     * candidate keys produced one at a time as they are found,
+     * stop iterating to stop the search
+     * @return
+     */
+    public Iterator<AttributeSet> candidateKeys() {
+        return new CandidateKeyFinder(this);
     }
 
     public boolean isSuperKey(AttributeSet attrs) {
@@ -238,43 +491,59 @@ public class Relation {
         return r.attributes.subsetOf(attrs.closureUnder(r.functionalDependencies));
     }
 
-    private boolean isSuperSet(List<AttributeSet> sets, AttributeSet attrs) {
-        for (AttributeSet set : sets) {
-            if (set.strictSubsetOf(attrs)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
+    /**
+     * lossless join test for a split into two relations, the
+     * intersection has to be a superkey of one side
+     * @param r1
+     * @param r2
+     * @return
+     */
     public static boolean isLossless(Relation r1, Relation r2) {
         AttributeSet intersect = AttributeSet.intersect(r1.attributes, r2.attributes);
         return Relation.isSuperKey(intersect, r1) || Relation.isSuperKey(intersect, r2);
     }
 
+    /**
+     * lossless join test for a split into any number of relations
+     * by the tableau chase
+     * @param decomposition
+     * @return
+     */
+    public boolean isLossless(Set<Relation> decomposition) {
+        return new DecompositionVerifier(this, decomposition).isLossless();
+    }
+
     public FunctionalDependencySet closure() {
         return functionalDependencies.closure2(attributes);
     }
 
+    /**
+     * relation on a subset of the attributes carrying the projection
+     * of the functional dependencies onto it
+     * @param attrs
+     * @return
+     */
+    public Relation project(AttributeSet attrs) {
+        return new Relation(new AttributeSet(attrs), functionalDependencies.project(attrs)).name(name);
+    }
+
+    /**
+     * r1 without the attributes of r2, carrying the projected dependencies
+     * @param r1
+     * @param r2
+     * @return
+     */
     public static Relation subtract(Relation r1, Relation r2) {
-        Relation r = new Relation(r1);
-        r.attributes = AttributeSet.subtract(r1.attributes, r2.attributes);
-        return r;
+        return r1.project(AttributeSet.subtract(r1.attributes, r2.attributes));
     }
     public static Relation subtract(Relation r1, AttributeSet r2) {
-        Relation r = new Relation(r1);
-        r.attributes = AttributeSet.subtract(r1.attributes, r2);
-        return r;
+        return r1.project(AttributeSet.subtract(r1.attributes, r2));
     }
     public static Relation subtract(Relation r1, Attribute r2) {
-        Relation r = new Relation(r1);
-        r.attributes = AttributeSet.subtract(r1.attributes, r2.toSet());
-        return r;
+        return r1.project(AttributeSet.subtract(r1.attributes, r2.toSet()));
     }
     public static Relation intersect(Relation r1, Relation r2) {
-        Relation r = new Relation(r1);
-        r.attributes = AttributeSet.intersect(r1.attributes, r2.attributes);
-        return r;
+        return r1.project(AttributeSet.intersect(r1.attributes, r2.attributes));
     }
 
     public AttributeSet closureAttribute(String name) {
@@ -284,7 +553,7 @@ public class Relation {
     public Set<Relation> split(String delimiter, String...rs) {
         Set<Relation> result = new Set<>();
         for (int i = 0; i < rs.length; i++) {
-            result.add(new Relation(AttributeSet.fromString(rs[i], delimiter), functionalDependencies).name("R" + (i + 1)));
+            result.add(new Relation(AttributeSet.fromString(rs[i], delimiter, attributes.dictionary()), functionalDependencies).name("R" + (i + 1)));
         }
         return result;
     }
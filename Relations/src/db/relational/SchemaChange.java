@@ -0,0 +1,29 @@
+package db.relational;
+
+import db.util.Set;
+
+/**
+ * what a single dependency insertion or deletion changed in a
+ * SchemaMaintainer
+ */
+public class SchemaChange {
+    /**
+     * whether F+ changed, when it did not the cover and keys are untouched
+     */
+    public boolean closureChanged = false;
+    public FunctionalDependencySet addedToCover = new FunctionalDependencySet();
+    public FunctionalDependencySet removedFromCover = new FunctionalDependencySet();
+    public Set<AttributeSet> addedKeys = new Set<>();
+    public Set<AttributeSet> removedKeys = new Set<>();
+
+    public boolean isEmpty() {
+        return !closureChanged && addedToCover.isEmpty() && removedFromCover.isEmpty()
+                && addedKeys.isEmpty() && removedKeys.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SchemaChange(closureChanged=%s, cover +%s -%s, keys +%s -%s)",
+                closureChanged, addedToCover.toList(), removedFromCover.toList(), addedKeys, removedKeys);
+    }
+}
@@ -0,0 +1,357 @@
+package db.relational;
+
+import db.util.Set;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * keeps the canonical cover and the candidate keys of a relation up to
+ * date while functional dependencies are added and removed one at a time.
+ * multivalued dependencies are not maintained and are rejected.
+ *
+ * the closures of the left hand sides are cached. a dependency X -> Y can
+ * only take part in the closures that contain X, so an edit of it only
+ * touches the dependencies whose left hand side closure reaches X, the
+ * others keep their closure and need no check:
+ * - an edit that does not change F+ (inserting an implied dependency,
+ *   deleting one that the others still imply) costs one closure and leaves
+ *   the cover and keys alone
+ * - an insertion puts X -> Y into the cover and checks it and the cover
+ *   dependencies that reach X for extraneous attributes
+ * - a deletion drops the cover dependencies that reach X and are no longer
+ *   implied, puts back the remaining dependencies that reach X and are not
+ *   implied by what is left, and checks those for extraneous attributes
+ * the keys are seeded with the old ones: after an insertion every old key
+ * is minimized again, after a deletion the keys that are still superkeys
+ * are kept as they are and only the others are grown back to superkeys
+ * and minimized. the generation step then only minimizes the sets that
+ * contain none of these.
+ */
+public class SchemaMaintainer {
+    private final AttributeSet attributes;
+    private final FunctionalDependencySet fds;
+    private final FunctionalDependencySet cover;
+    private final ClosureEngine coverEngine;
+    private final HashMap<AttributeSet, FunctionalDependency> coverByLhs = new HashMap<>();
+    private final HashMap<AttributeSet, AttributeSet> closures = new HashMap<>();
+    private List<AttributeSet> keys;
+    private SetTrie<AttributeSet> keyTrie;
+
+    // region Constructors
+
+    /**
+     * maintain a copy of a relation's attributes and dependencies
+     * @param r
+     */
+    public SchemaMaintainer(Relation r) {
+        this(r.attributes, r.functionalDependencies);
+    }
+
+    /**
+     * maintain a copy of attributes and fds, every dependency has to be
+     * functional and over the attributes
+     * @param attributes
+     * @param fds
+     */
+    public SchemaMaintainer(AttributeSet attributes, FunctionalDependencySet fds) {
+        this.attributes = new AttributeSet(attributes);
+        this.fds = new FunctionalDependencySet();
+        for (FunctionalDependency fd : fds) {
+            checkAttributes(fd);
+            this.fds.add(new FunctionalDependency(fd));
+        }
+        this.cover = this.fds.canonicalCover();
+        this.coverEngine = new ClosureEngine(cover.toList());
+        for (FunctionalDependency fd : cover) {
+            coverByLhs.put(fd.lhs, fd);
+        }
+        this.keys = new CandidateKeyFinder(this.attributes, this.fds).findAll();
+        this.keyTrie = trie(keys);
+    }
+    // endregion
+
+    private void checkAttributes(FunctionalDependency fd) {
+        if (fd.multivalued) {
+            throw new IllegalArgumentException(fd + " is multivalued, only functional dependencies are maintained");
+        }
+        if (!fd.within(attributes)) {
+            throw new IllegalArgumentException(fd + " uses attributes outside of " + attributes);
+        }
+    }
+
+    /**
+     * insert a functional dependency
+     * @param fd
+     * @return what changed
+     */
+    public SchemaChange add(FunctionalDependency fd) {
+        checkAttributes(fd);
+        SchemaChange change = new SchemaChange();
+        if (fds.contains(fd)) {
+            return change;
+        }
+        FunctionalDependency copy = new FunctionalDependency(fd);
+        if (copy.rhs.subsetOf(lhsClosure(copy.lhs))) {
+            fds.add(copy);
+            return change;
+        }
+        change.closureChanged = true;
+        // found before the insertion, while the cached closures are the old ones
+        List<FunctionalDependency> work = reaching(copy.lhs, cover);
+        fds.add(copy);
+        forget(copy.lhs);
+
+        work.add(coverAdd(copy, change));
+        reduce(work, change);
+        updateKeys(new CandidateKeyFinder(attributes, fds, cover.toList(),
+                Collections.<AttributeSet>emptyList(), keys).findAll(), change);
+        return change;
+    }
+
+    /**
+     * delete a functional dependency
+     * @param fd
+     * @return what changed
+     */
+    public SchemaChange remove(FunctionalDependency fd) {
+        SchemaChange change = new SchemaChange();
+        if (!fds.contains(fd)) {
+            return change;
+        }
+        List<FunctionalDependency> affected = reaching(fd.lhs, cover);
+        List<FunctionalDependency> reaching = reaching(fd.lhs, fds);
+        fds.subtract(fd);
+        if (fd.rhs.subsetOf(fds.closureOf(fd.lhs))) {
+            return change;
+        }
+        change.closureChanged = true;
+        forget(fd.lhs);
+
+        // the cover dependencies that do not reach the left hand side of fd
+        // and the remaining dependencies that do are still a cover
+        List<FunctionalDependency> work = new ArrayList<>();
+        for (FunctionalDependency c : affected) {
+            if (c.rhs.subsetOf(lhsClosure(c.lhs))) {
+                work.add(c);
+            } else {
+                coverRemove(c, change);
+            }
+        }
+        for (FunctionalDependency g : reaching) {
+            if (!g.equals(fd) && !g.rhs.subsetOf(coverEngine.closure(g.lhs))) {
+                work.add(coverAdd(new FunctionalDependency(g), change));
+            }
+        }
+        reduce(work, change);
+
+        List<AttributeSet> surviving = new ArrayList<>();
+        List<AttributeSet> regrown = new ArrayList<>();
+        for (AttributeSet key : keys) {
+            AttributeSet closure = fds.closureOf(key);
+            if (attributes.subsetOf(closure)) {
+                surviving.add(key);
+            } else {
+                // the key plus what it no longer derives is a superkey
+                AttributeSet superkey = AttributeSet.subtract(attributes, closure);
+                superkey.union(key);
+                regrown.add(superkey);
+            }
+        }
+        updateKeys(new CandidateKeyFinder(attributes, fds, cover.toList(), surviving, regrown).findAll(), change);
+        return change;
+    }
+
+    // region Cover
+
+    /**
+     * closure of a left hand side under the current dependencies, cached
+     * until an edit of a dependency it reaches
+     */
+    private AttributeSet lhsClosure(AttributeSet lhs) {
+        AttributeSet closure = closures.get(lhs);
+        if (closure == null) {
+            closure = fds.closureOf(lhs);
+            closures.put(new AttributeSet(lhs), closure);
+        }
+        return closure;
+    }
+
+    /**
+     * drop the cached closures that contain x, only they can change when
+     * a dependency with left hand side x is inserted or deleted
+     */
+    private void forget(AttributeSet x) {
+        closures.values().removeIf(closure -> x.subsetOf(closure));
+    }
+
+    /**
+     * the dependencies of set whose left hand side closure contains x
+     */
+    private List<FunctionalDependency> reaching(AttributeSet x, FunctionalDependencySet set) {
+        List<FunctionalDependency> reaching = new ArrayList<>();
+        for (FunctionalDependency fd : set) {
+            if (x.subsetOf(lhsClosure(fd.lhs))) {
+                reaching.add(fd);
+            }
+        }
+        return reaching;
+    }
+
+    /**
+     * put fd into the cover, merged with the cover dependency of the same
+     * left hand side if there is one
+     * @return the dependency that is in the cover now
+     */
+    private FunctionalDependency coverAdd(FunctionalDependency fd, SchemaChange change) {
+        FunctionalDependency same = coverByLhs.get(fd.lhs);
+        if (same != null) {
+            coverRemove(same, change);
+            fd = new FunctionalDependency(fd.lhs, AttributeSet.union(fd.rhs, same.rhs));
+        }
+        cover.add(fd);
+        coverEngine.add(fd);
+        coverByLhs.put(fd.lhs, fd);
+        if (change.removedFromCover.subtract(fd) == 0) {
+            change.addedToCover.add(fd);
+        }
+        return fd;
+    }
+
+    private void coverRemove(FunctionalDependency fd, SchemaChange change) {
+        cover.subtract(fd);
+        coverEngine.remove(fd);
+        coverByLhs.remove(fd.lhs);
+        if (change.addedToCover.subtract(fd) == 0) {
+            change.removedFromCover.add(fd);
+        }
+    }
+
+    /**
+     * drop extraneous attributes from the cover dependencies in work until
+     * none of them has one, a dependency that is replaced is followed by
+     * its replacement and a smaller left hand side by the dependencies
+     * that reach it
+     */
+    private void reduce(List<FunctionalDependency> work, SchemaChange change) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < work.size(); i++) {
+                FunctionalDependency fd = work.get(i);
+                if (fd == null || !cover.contains(fd)) {
+                    continue;
+                }
+                FunctionalDependency reduced = reduce(fd, work, change);
+                if (reduced != fd) {
+                    work.set(i, reduced);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * fd without its extraneous attributes: a left hand side attribute is
+     * extraneous when the rest of the left hand side derives the right hand
+     * side, a right hand side attribute when the cover derives it with the
+     * attribute taken out of fd
+     * @return the dependency that replaced fd in the cover, fd itself if it
+     * had no extraneous attribute, null if it was redundant
+     */
+    private FunctionalDependency reduce(FunctionalDependency fd, List<FunctionalDependency> work, SchemaChange change) {
+        FunctionalDependency reduced = fd;
+        AttributeSet lhs = new AttributeSet(fd.lhs);
+        for (int id = fd.lhs.nextId(0); id >= 0; id = fd.lhs.nextId(id + 1)) {
+            lhs.removeId(id);
+            if (!fd.rhs.subsetOf(coverEngine.closure(lhs))) {
+                lhs.addId(id);
+            }
+        }
+        if (lhs.size() < fd.lhs.size()) {
+            coverRemove(fd, change);
+            reduced = coverAdd(new FunctionalDependency(lhs, fd.rhs), change);
+            work.addAll(reaching(lhs, cover));
+        }
+        int slot = coverEngine.slotOf(reduced);
+        AttributeSet rhs = new AttributeSet(reduced.rhs);
+        for (int id = reduced.rhs.nextId(0); id >= 0; id = reduced.rhs.nextId(id + 1)) {
+            rhs.removeId(id);
+            if (!coverEngine.closure(AttributeSet.union(reduced.lhs, rhs), slot).containsId(id)) {
+                rhs.addId(id);
+            }
+        }
+        if (rhs.size() < reduced.rhs.size()) {
+            coverRemove(reduced, change);
+            reduced = rhs.isEmpty() ? null : coverAdd(new FunctionalDependency(reduced.lhs, rhs), change);
+        }
+        return reduced;
+    }
+    // endregion
+
+    private void updateKeys(List<AttributeSet> newKeys, SchemaChange change) {
+        Set<AttributeSet> before = new Set<>(keys);
+        Set<AttributeSet> after = new Set<>(newKeys);
+        change.addedKeys = new Set<>(newKeys);
+        change.addedKeys.subtract(before);
+        change.removedKeys = new Set<>(keys);
+        change.removedKeys.subtract(after);
+        keys = newKeys;
+        keyTrie = trie(newKeys);
+    }
+
+    private static SetTrie<AttributeSet> trie(List<AttributeSet> keys) {
+        SetTrie<AttributeSet> trie = new SetTrie<>();
+        for (AttributeSet key : keys) {
+            trie.put(key, key);
+        }
+        return trie;
+    }
+
+    /**
+     * closure of attrs under the current dependencies
+     * @param attrs
+     * @return
+     */
+    public AttributeSet closureOf(AttributeSet attrs) {
+        return fds.closureOf(attrs);
+    }
+
+    /**
+     * the same violations as Relation.BCNFViolations, a left hand side
+     * is a superkey when it contains one of the maintained keys, so no
+     * closures are computed
+     * @return
+     */
+    public FunctionalDependencySet BCNFViolations() {
+        FunctionalDependencySet violations = new FunctionalDependencySet();
+        for (FunctionalDependency fd : fds) {
+            if (Relation.mayViolateBCNF(fd, attributes) && !containsKey(fd.lhs)) {
+                violations.add(fd);
+            }
+        }
+        return violations;
+    }
+
+    private boolean containsKey(AttributeSet attrs) {
+        return keyTrie.containsSubsetOf(attrs);
+    }
+
+    public AttributeSet getAttributes() {
+        return new AttributeSet(attributes);
+    }
+
+    public FunctionalDependencySet getFunctionalDependencies() {
+        return new FunctionalDependencySet(fds);
+    }
+
+    public FunctionalDependencySet getCanonicalCover() {
+        return new FunctionalDependencySet(cover);
+    }
+
+    public Set<AttributeSet> getCandidateKeys() {
+        return new Set<>(keys);
+    }
+}
@@ -0,0 +1,433 @@
+package db.relational;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * streaming parser for schema files: a header "name(attr1, attr2...)" on
+ * the first line that is not blank, followed by one dependency per line,
+ * "a<delimiter>b<arrow>c", where an arrow followed by '>' makes the
+ * dependency multivalued. blank lines are skipped.
+ *
+ * the file is read through a FileChannel into one reused buffer and every
+ * line is tokenized on its bytes, only the buffer grows when a line does
+ * not fit. attribute names are looked up by their bytes in a hash table,
+ * so a String is only built the first time a name is seen. names are
+ * trimmed and blanks inside them become '_', like AttributeSet.fromString,
+ * and interned by the parser's dictionary.
+ *
+ * a malformed line is reported with its line and column (in bytes, from 1)
+ * and skipped, the rest of the file is still parsed.
+ */
+public class SchemaParser {
+    /**
+     * errors beyond this many are only counted
+     */
+    public static final int MAX_ERRORS = 1000;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private final byte[] delimiter;
+    private final byte[] arrow;
+    private final AttributeDictionary dictionary;
+    private final AttributeSet empty;
+
+    private final List<Error> errors = new ArrayList<>();
+    private int errorCount;
+    private int line;
+    private boolean started;
+    private boolean header;
+
+    // interned names: open addressing over entry indices, -1 is empty
+    private int[] table = new int[1024];
+    private byte[][] names = new byte[256][];
+    private int[] hashes = new int[256];
+    private Attribute<?>[] interned = new Attribute<?>[256];
+    private int internedCount;
+    private byte[] scratch = new byte[64];
+
+    private Relation relation;
+    private Consumer<FunctionalDependency> sink;
+
+    /**
+     * a malformed line of a schema file
+     */
+    public static class Error {
+        public final int line;
+        public final int column;
+        public final String message;
+
+        public Error(int line, int column, String message) {
+            this.line = line;
+            this.column = column;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return line + ":" + column + ": " + message;
+        }
+    }
+
+    // region Constructors
+
+    /**
+     * parser for files with the given attribute delimiter and arrow, an
+     * empty delimiter makes every character (code point) an attribute
+     * ex. new SchemaParser(",", "->")
+     * @param delimiter
+     * @param arrow
+     */
+    public SchemaParser(String delimiter, String arrow) {
+        this(delimiter, arrow, AttributeDictionary.global());
+    }
+
+    /**
+     * parser that interns the attributes of every file it reads by dictionary
+     * @param delimiter
+     * @param arrow
+     * @param dictionary
+     */
+    public SchemaParser(String delimiter, String arrow, AttributeDictionary dictionary) {
+        this.delimiter = delimiter.getBytes(StandardCharsets.UTF_8);
+        this.arrow = arrow.getBytes(StandardCharsets.UTF_8);
+        this.dictionary = dictionary;
+        this.empty = new AttributeSet(dictionary);
+        Arrays.fill(table, -1);
+    }
+    // endregion
+
+    /**
+     * parse a file into a relation holding its dependencies
+     * @param file
+     * @return the relation, named and with the header's attributes if the
+     *         header parsed, else unnamed with the attributes of the
+     *         dependencies
+     * @throws IOException
+     */
+    public Relation parse(Path file) throws IOException {
+        Relation r = new Relation(new AttributeSet(empty), new FunctionalDependencySet());
+        parse(file, fd -> {
+            r.functionalDependencies.add(fd);
+            if (!header) {
+                r.attributes.union(fd.lhs);
+                r.attributes.union(fd.rhs);
+            }
+        }, r);
+        return r;
+    }
+
+    /**
+     * parse a file and hand every dependency to sink as soon as its line
+     * is read, nothing but the header is kept
+     * @param file
+     * @param sink
+     * @return the relation of the header, without dependencies
+     * @throws IOException
+     */
+    public Relation parse(Path file, Consumer<FunctionalDependency> sink) throws IOException {
+        Relation r = new Relation(new AttributeSet(empty), new FunctionalDependencySet());
+        parse(file, sink, r);
+        return r;
+    }
+
+    private void parse(Path file, Consumer<FunctionalDependency> sink, Relation r) throws IOException {
+        this.sink = sink;
+        this.relation = r;
+        this.line = 0;
+        this.started = false;
+        this.header = false;
+        this.errors.clear();
+        this.errorCount = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            boolean eof = false;
+            while (!eof) {
+                eof = channel.read(buffer) < 0;
+                byte[] bytes = buffer.array();
+                int end = buffer.position();
+                int start = 0;
+                for (int i = 0; i < end; i++) {
+                    if (bytes[i] == '\n') {
+                        line(bytes, start, i);
+                        start = i + 1;
+                    }
+                }
+                if (eof) {
+                    if (start < end) {
+                        line(bytes, start, end);
+                    }
+                    break;
+                }
+                // keep the unfinished line, a line longer than the buffer
+                // grows it
+                int rest = end - start;
+                if (rest == bytes.length) {
+                    ByteBuffer bigger = ByteBuffer.allocate(bytes.length * 2);
+                    bigger.put(bytes, 0, rest);
+                    buffer = bigger;
+                } else {
+                    System.arraycopy(bytes, start, bytes, 0, rest);
+                    buffer.clear();
+                    buffer.position(rest);
+                }
+            }
+        }
+    }
+
+    /**
+     * errors of the last parse, at most MAX_ERRORS of them
+     * @return
+     */
+    public List<Error> getErrors() {
+        return errors;
+    }
+
+    /**
+     * number of malformed lines of the last parse
+     * @return
+     */
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * whether the last parse found a valid header line
+     * @return
+     */
+    public boolean hasHeader() {
+        return header;
+    }
+
+    private void error(int column, String message) {
+        if (errors.size() < MAX_ERRORS) {
+            errors.add(new Error(line, column, message));
+        }
+        errorCount++;
+    }
+
+    private static boolean blank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    private void line(byte[] bytes, int from, int to) {
+        line++;
+        int lineStart = from;
+        while (from < to && blank(bytes[from])) {
+            from++;
+        }
+        while (to > from && blank(bytes[to - 1])) {
+            to--;
+        }
+        if (from == to) {
+            return;
+        }
+        if (!started) {
+            started = true;
+            header(bytes, from, to, lineStart);
+        } else {
+            dependency(bytes, from, to, lineStart);
+        }
+    }
+
+    /**
+     * name(attr1, attr2...)
+     */
+    private void header(byte[] bytes, int from, int to, int lineStart) {
+        int open = indexOf(bytes, from, to, new byte[]{'('});
+        if (open < 0) {
+            error(to - lineStart + 1, "expected '('");
+            return;
+        }
+        if (bytes[to - 1] != ')') {
+            error(to - lineStart + 1, "expected ')'");
+            return;
+        }
+        AttributeSet attributes = new AttributeSet(empty);
+        if (!names(bytes, open + 1, to - 1, lineStart, new byte[]{','}, attributes, true)) {
+            return;
+        }
+        int nameEnd = open;
+        while (nameEnd > from && blank(bytes[nameEnd - 1])) {
+            nameEnd--;
+        }
+        relation.name = new String(bytes, from, nameEnd - from, StandardCharsets.UTF_8);
+        relation.attributes.union(attributes);
+        header = true;
+    }
+
+    /**
+     * lhs<arrow>rhs or lhs<arrow>>rhs
+     */
+    private void dependency(byte[] bytes, int from, int to, int lineStart) {
+        int at = indexOf(bytes, from, to, arrow);
+        if (at < 0) {
+            error(to - lineStart + 1, "expected '" + new String(arrow, StandardCharsets.UTF_8) + "'");
+            return;
+        }
+        int rhsFrom = at + arrow.length;
+        boolean multivalued = rhsFrom < to && bytes[rhsFrom] == '>';
+        if (multivalued) {
+            rhsFrom++;
+        }
+        int again = indexOf(bytes, rhsFrom, to, arrow);
+        if (again >= 0) {
+            error(again - lineStart + 1, "unexpected second '" + new String(arrow, StandardCharsets.UTF_8) + "'");
+            return;
+        }
+        // the names go straight into the dependency's own sets
+        FunctionalDependency fd = new FunctionalDependency(empty, empty).multivalued(multivalued);
+        if (!names(bytes, from, at, lineStart, delimiter, fd.lhs, true)
+                || !names(bytes, rhsFrom, to, lineStart, delimiter, fd.rhs, false)) {
+            return;
+        }
+        sink.accept(fd);
+    }
+
+    /**
+     * the names between from and to separated by delimiter into attrs
+     * @param emptyAllowed whether a side with no names at all is fine
+     * @return false if a name was empty
+     */
+    private boolean names(byte[] bytes, int from, int to, int lineStart, byte[] delimiter,
+                          AttributeSet attrs, boolean emptyAllowed) {
+        int start = from;
+        while (start < to && blank(bytes[start])) {
+            start++;
+        }
+        if (start == to) {
+            if (!emptyAllowed) {
+                error(to - lineStart + 1, "expected an attribute");
+            }
+            return emptyAllowed;
+        }
+        if (delimiter.length == 0) {
+            // a code point is its lead byte and the continuation bytes
+            // 10xxxxxx after it
+            int i = start;
+            while (i < to) {
+                int end = i + 1;
+                while (end < to && (bytes[end] & 0xC0) == 0x80) {
+                    end++;
+                }
+                if (!blank(bytes[i])) {
+                    attrs.addId(intern(bytes, i, end).getId());
+                }
+                i = end;
+            }
+            return true;
+        }
+        while (true) {
+            int end = indexOf(bytes, start, to, delimiter);
+            int nameEnd = end < 0 ? to : end;
+            int s = start;
+            int e = nameEnd;
+            while (s < e && blank(bytes[s])) {
+                s++;
+            }
+            while (e > s && blank(bytes[e - 1])) {
+                e--;
+            }
+            if (s == e) {
+                error(s - lineStart + 1, "empty attribute name");
+                return false;
+            }
+            attrs.addId(intern(bytes, s, e).getId());
+            if (end < 0) {
+                return true;
+            }
+            start = end + delimiter.length;
+        }
+    }
+
+    private static int indexOf(byte[] bytes, int from, int to, byte[] pattern) {
+        if (pattern.length == 0) {
+            return -1;
+        }
+        outer:
+        for (int i = from; i <= to - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (bytes[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * attribute for the name in bytes[from, to), blanks read as '_'
+     */
+    private Attribute<?> intern(byte[] bytes, int from, int to) {
+        int length = to - from;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        int hash = 0x811c9dc5;
+        for (int i = 0; i < length; i++) {
+            byte b = bytes[from + i];
+            if (blank(b)) {
+                b = '_';
+            }
+            scratch[i] = b;
+            hash = (hash ^ b) * 0x01000193;
+        }
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] >= 0) {
+            int entry = table[slot];
+            if (hashes[entry] == hash && equal(names[entry], scratch, length)) {
+                return interned[entry];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        Attribute<?> attr = dictionary.intern(new String(scratch, 0, length, StandardCharsets.UTF_8));
+        if (internedCount == names.length) {
+            names = Arrays.copyOf(names, internedCount * 2);
+            hashes = Arrays.copyOf(hashes, internedCount * 2);
+            interned = Arrays.copyOf(interned, internedCount * 2);
+        }
+        names[internedCount] = Arrays.copyOf(scratch, length);
+        hashes[internedCount] = hash;
+        interned[internedCount] = attr;
+        table[slot] = internedCount++;
+        if (internedCount * 2 > table.length) {
+            rehash();
+        }
+        return attr;
+    }
+
+    private static boolean equal(byte[] name, byte[] bytes, int length) {
+        if (name.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name[i] != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        Arrays.fill(table, -1);
+        int mask = table.length - 1;
+        for (int entry = 0; entry < internedCount; entry++) {
+            int slot = hashes[entry] & mask;
+            while (table[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = entry;
+        }
+    }
+}
@@ -0,0 +1,513 @@
+package db.relational;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * versioned binary snapshot of a relation and, optionally, of what was
+ * derived from it: a canonical cover, the candidate keys and the closure
+ * index. a snapshot is written and read through a memory-mapped file.
+ *
+ * attributes are numbered by the snapshot's own dictionary, so a snapshot
+ * can be read into a dictionary that has already handed out other ids.
+ * every attribute set is stored as a fixed number of bitset words, which
+ * are copied as they are when the snapshot's ids are the ids of the
+ * dictionary it is read into and remapped bit by bit otherwise.
+ *
+ * layout, big endian:
+ *   int magic, int version, int flags, int attributes, int words,
+ *   int dependencies, int cover size, int keys
+ *   attributes * (int length, name bytes, int length, type bytes)
+ *   int length (-1 for no name), relation name bytes
+ *   words longs: the relation's attributes
+ *   ceil(dependencies / 64) longs: which dependencies are multivalued
+ *   dependencies * 2 * words longs: left and right hand sides
+ *   cover size * 2 * words longs
+ *   keys * words longs
+ *   closure index: attributes + 1 int offsets into the positions that
+ *   follow, the positions count the functional dependencies only
+ */
+public class SchemaSnapshot {
+    public static final int MAGIC = 0x46445353;
+    public static final int VERSION = 1;
+
+    private static final int COVER = 1;
+    private static final int KEYS = 2;
+    private static final int CLOSURE_INDEX = 4;
+
+    public Relation relation;
+    public FunctionalDependencySet canonicalCover;
+    public List<AttributeSet> candidateKeys;
+    private boolean closureIndex;
+
+    // region Constructors
+
+    /**
+     * snapshot of a relation, nothing derived is included until asked for
+     * @param relation
+     */
+    public SchemaSnapshot(Relation relation) {
+        this.relation = relation;
+    }
+    // endregion
+
+    /**
+     * include the canonical cover, computed now
+     * @return
+     */
+    public SchemaSnapshot includeCanonicalCover() {
+        this.canonicalCover = relation.functionalDependencies.canonicalCover();
+        return this;
+    }
+
+    /**
+     * include the candidate keys, computed now
+     * @return
+     */
+    public SchemaSnapshot includeCandidateKeys() {
+        this.candidateKeys = new CandidateKeyFinder(relation).findAll();
+        return this;
+    }
+
+    /**
+     * include the closure index, read back as the relation's compiled
+     * closure engine
+     * @return
+     */
+    public SchemaSnapshot includeClosureIndex() {
+        this.closureIndex = true;
+        return this;
+    }
+
+    /**
+     * write the snapshot to file, replacing it
+     * @param file
+     * @throws IOException
+     */
+    public void write(Path file) throws IOException {
+        // the dictionary: every attribute in use, in the order of its id
+        AttributeSet used = new AttributeSet(relation.attributes);
+        used.union(relation.functionalDependencies.attributes());
+        int[] local = new int[Math.max(used.length(), 1)];
+        List<Attribute<?>> dictionary = new ArrayList<>();
+        for (int id = used.nextId(0); id >= 0; id = used.nextId(id + 1)) {
+            local[id] = dictionary.size();
+            dictionary.add(used.dictionary().get(id));
+        }
+        int n = dictionary.size();
+        int words = Math.max((n + 63) / 64, 1);
+        boolean identity = dictionary.isEmpty() || dictionary.get(n - 1).getId() == n - 1;
+
+        List<FunctionalDependency> fds = relation.functionalDependencies.toList();
+        List<FunctionalDependency> cover = canonicalCover == null
+                ? new ArrayList<FunctionalDependency>() : canonicalCover.toList();
+        List<AttributeSet> keys = candidateKeys == null ? new ArrayList<AttributeSet>() : candidateKeys;
+
+        byte[][] names = new byte[n][];
+        byte[][] types = new byte[n][];
+        long size = 8 * 4;
+        for (int i = 0; i < n; i++) {
+            names[i] = dictionary.get(i).getName().getBytes(StandardCharsets.UTF_8);
+            types[i] = dictionary.get(i).getType().getBytes(StandardCharsets.UTF_8);
+            size += 8 + names[i].length + types[i].length;
+        }
+        byte[] name = relation.name == null ? null : relation.name.getBytes(StandardCharsets.UTF_8);
+        size += 4 + (name == null ? 0 : name.length);
+        size += 8L * words;
+        size += 8L * ((fds.size() + 63) / 64);
+        size += 16L * words * (fds.size() + cover.size());
+        size += 8L * words * keys.size();
+
+        int[][] dependents = null;
+        if (closureIndex) {
+            dependents = dependents(fds, local, n);
+            size += 4L * (n + 1);
+            for (int[] list : dependents) {
+                size += 4L * list.length;
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt((canonicalCover == null ? 0 : COVER) | (candidateKeys == null ? 0 : KEYS)
+                    | (closureIndex ? CLOSURE_INDEX : 0));
+            out.putInt(n);
+            out.putInt(words);
+            out.putInt(fds.size());
+            out.putInt(cover.size());
+            out.putInt(keys.size());
+            for (int i = 0; i < n; i++) {
+                out.putInt(names[i].length);
+                out.put(names[i]);
+                out.putInt(types[i].length);
+                out.put(types[i]);
+            }
+            out.putInt(name == null ? -1 : name.length);
+            if (name != null) {
+                out.put(name);
+            }
+            put(out, relation.attributes, words, local, identity);
+
+            long multivalued = 0;
+            for (int i = 0; i < fds.size(); i++) {
+                if (fds.get(i).multivalued) {
+                    multivalued |= 1L << i;
+                }
+                if ((i & 63) == 63 || i == fds.size() - 1) {
+                    out.putLong(multivalued);
+                    multivalued = 0;
+                }
+            }
+            for (FunctionalDependency fd : fds) {
+                put(out, fd.lhs, words, local, identity);
+                put(out, fd.rhs, words, local, identity);
+            }
+            for (FunctionalDependency fd : cover) {
+                put(out, fd.lhs, words, local, identity);
+                put(out, fd.rhs, words, local, identity);
+            }
+            for (AttributeSet key : keys) {
+                put(out, key, words, local, identity);
+            }
+
+            if (dependents != null) {
+                int offset = 0;
+                for (int[] list : dependents) {
+                    out.putInt(offset);
+                    offset += list.length;
+                }
+                out.putInt(offset);
+                for (int[] list : dependents) {
+                    for (int position : list) {
+                        out.putInt(position);
+                    }
+                }
+            }
+            out.force();
+        }
+    }
+
+    /**
+     * for every dictionary attribute, the positions among the functional
+     * dependencies of those whose left hand side contains it
+     */
+    private static int[][] dependents(List<FunctionalDependency> fds, int[] local, int n) {
+        int[] degree = new int[n];
+        for (FunctionalDependency fd : fds) {
+            if (!fd.multivalued) {
+                for (int id = fd.lhs.nextId(0); id >= 0; id = fd.lhs.nextId(id + 1)) {
+                    degree[local[id]]++;
+                }
+            }
+        }
+        int[][] dependents = new int[n][];
+        for (int i = 0; i < n; i++) {
+            dependents[i] = new int[degree[i]];
+            degree[i] = 0;
+        }
+        int position = 0;
+        for (FunctionalDependency fd : fds) {
+            if (fd.multivalued) {
+                continue;
+            }
+            for (int id = fd.lhs.nextId(0); id >= 0; id = fd.lhs.nextId(id + 1)) {
+                int i = local[id];
+                dependents[i][degree[i]++] = position;
+            }
+            position++;
+        }
+        return dependents;
+    }
+
+    private static void put(MappedByteBuffer out, AttributeSet attrs, int words, int[] local, boolean identity) {
+        if (identity) {
+            for (int i = 0; i < words; i++) {
+                out.putLong(attrs.word(i));
+            }
+            return;
+        }
+        long[] w = new long[words];
+        for (int id = attrs.nextId(0); id >= 0; id = attrs.nextId(id + 1)) {
+            int i = local[id];
+            w[i >>> 6] |= 1L << i;
+        }
+        for (long word : w) {
+            out.putLong(word);
+        }
+    }
+
+    /**
+     * read a snapshot into the global dictionary, see read(Path, AttributeDictionary)
+     * @param file
+     * @return
+     * @throws IOException when the file is not a snapshot of this version
+     */
+    public static SchemaSnapshot read(Path file) throws IOException {
+        return read(file, AttributeDictionary.global());
+    }
+
+    /**
+     * read a snapshot with its attributes interned by dictionary, the
+     * relation gets the stored closure index as its compiled closure
+     * engine and the stored cover and keys as its canonical cover and
+     * candidate keys, when there are any. the whole file is checked before
+     * the first name is interned, so a corrupt file leaves dictionary alone
+     * @param file
+     * @param dictionary
+     * @return
+     * @throws IOException when the file is not a snapshot of this version
+     *                     or is corrupt
+     */
+    public static SchemaSnapshot read(Path file, AttributeDictionary dictionary) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.remaining() < 8 * 4 || in.getInt() != MAGIC) {
+                throw new IOException(file + ": not a schema snapshot");
+            }
+            int version = in.getInt();
+            if (version != VERSION) {
+                throw new IOException(file + ": unsupported snapshot version " + version);
+            }
+            try {
+                return read(in, dictionary);
+            } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new IOException(file + ": corrupt snapshot", e);
+            }
+        }
+    }
+
+    private static SchemaSnapshot read(MappedByteBuffer in, AttributeDictionary dictionary) {
+        int flags = in.getInt();
+        int n = in.getInt();
+        int words = in.getInt();
+        int fdCount = in.getInt();
+        int coverCount = in.getInt();
+        int keyCount = in.getInt();
+        validate(in, in.position(), flags, n, words, fdCount, coverCount, keyCount);
+
+        int[] global = new int[n];
+        int bound = 1;
+        boolean identity = true;
+        for (int i = 0; i < n; i++) {
+            String name = string(in);
+            String type = string(in);
+            global[i] = dictionary.intern(name, type).getId();
+            bound = Math.max(bound, global[i] + 1);
+            identity &= global[i] == i;
+        }
+        String name = string(in);
+        AttributeSet empty = new AttributeSet(dictionary);
+        long[] scratch = new long[Math.max((bound + 63) / 64, words)];
+        AttributeSet attributes = get(in, empty, scratch, words, global, identity);
+
+        long[] multivalued = new long[(fdCount + 63) / 64];
+        for (int i = 0; i < multivalued.length; i++) {
+            multivalued[i] = in.getLong();
+        }
+        FunctionalDependencySet fds = new FunctionalDependencySet();
+        List<FunctionalDependency> functional = new ArrayList<>();
+        for (int i = 0; i < fdCount; i++) {
+            FunctionalDependency fd = dependency(in, empty, scratch, words, global, identity);
+            fd.multivalued = (multivalued[i >>> 6] & (1L << i)) != 0;
+            fds.add(fd);
+            if (!fd.multivalued) {
+                functional.add(fd);
+            }
+        }
+
+        SchemaSnapshot snapshot = new SchemaSnapshot(new Relation(attributes, fds).name(name));
+        if ((flags & COVER) != 0) {
+            snapshot.canonicalCover = new FunctionalDependencySet();
+            for (int i = 0; i < coverCount; i++) {
+                snapshot.canonicalCover.add(dependency(in, empty, scratch, words, global, identity));
+            }
+            fds.adoptCanonicalCover(snapshot.canonicalCover);
+        }
+        if ((flags & KEYS) != 0) {
+            snapshot.candidateKeys = new ArrayList<>();
+            for (int i = 0; i < keyCount; i++) {
+                snapshot.candidateKeys.add(get(in, empty, scratch, words, global, identity));
+            }
+            snapshot.relation.adoptCandidateKeys(snapshot.candidateKeys);
+        }
+        if ((flags & CLOSURE_INDEX) != 0) {
+            int[] offsets = new int[n + 1];
+            for (int i = 0; i <= n; i++) {
+                offsets[i] = in.getInt();
+            }
+            int[][] dependents = new int[bound][];
+            for (int i = 0; i < n; i++) {
+                int length = offsets[i + 1] - offsets[i];
+                if (length == 0) {
+                    continue;
+                }
+                int[] list = new int[length];
+                for (int j = 0; j < length; j++) {
+                    list[j] = in.getInt();
+                }
+                dependents[global[i]] = list;
+            }
+            fds.adopt(new ClosureEngine(functional, dependents));
+            snapshot.closureIndex = true;
+        }
+        return snapshot;
+    }
+
+    /**
+     * walk the snapshot from at to its end without interning anything and
+     * throw when a count, a length, an attribute id or an index entry does
+     * not fit, the sizes are checked before anything is allocated
+     */
+    private static void validate(MappedByteBuffer in, int at, int flags, int n, int words, int fdCount,
+                                 int coverCount, int keyCount) {
+        if (n < 0 || fdCount < 0 || coverCount < 0 || keyCount < 0 || words != Math.max((n + 63) / 64, 1)) {
+            throw new IllegalArgumentException("bad counts");
+        }
+        if (8L * n > in.limit() - at) {
+            throw new BufferUnderflowException();
+        }
+        for (int i = 0; i < 2 * n; i++) {
+            at = skip(in, at, false);
+        }
+        at = skip(in, at, true);
+
+        int multivaluedWords = (fdCount + 63) / 64;
+        long sets = 1 + 2L * fdCount + ((flags & COVER) != 0 ? 2L * coverCount : 0)
+                + ((flags & KEYS) != 0 ? keyCount : 0);
+        if (8L * (words * sets + multivaluedWords) > in.limit() - at) {
+            throw new BufferUnderflowException();
+        }
+        at = checkIds(in, at, 1, words, n);
+        int functional = fdCount;
+        for (int i = 0; i < multivaluedWords; i++, at += 8) {
+            long w = in.getLong(at);
+            if (i == multivaluedWords - 1 && (fdCount & 63) != 0) {
+                w &= (1L << fdCount) - 1;
+            }
+            functional -= Long.bitCount(w);
+        }
+        at = checkIds(in, at, sets - 1, words, n);
+
+        if ((flags & CLOSURE_INDEX) != 0) {
+            if (4L * (n + 1) > in.limit() - at) {
+                throw new BufferUnderflowException();
+            }
+            int previous = 0;
+            for (int i = 0; i <= n; i++, at += 4) {
+                int offset = in.getInt(at);
+                if (offset < previous || (i == 0 && offset != 0)) {
+                    throw new IllegalArgumentException("closure index offsets out of order");
+                }
+                previous = offset;
+            }
+            if (4L * previous > in.limit() - at) {
+                throw new BufferUnderflowException();
+            }
+            for (int j = 0; j < previous; j++, at += 4) {
+                int position = in.getInt(at);
+                if (position < 0 || position >= functional) {
+                    throw new IllegalArgumentException("closure index position " + position + " out of range");
+                }
+            }
+        }
+    }
+
+    /**
+     * position after the string at at, -1 is a missing string when nullable
+     */
+    private static int skip(MappedByteBuffer in, int at, boolean nullable) {
+        if (4 > in.limit() - at) {
+            throw new BufferUnderflowException();
+        }
+        int length = in.getInt(at);
+        if (length == -1 && nullable) {
+            return at + 4;
+        }
+        if (length < 0) {
+            throw new IllegalArgumentException("negative length " + length);
+        }
+        if (length > in.limit() - at - 4) {
+            throw new BufferUnderflowException();
+        }
+        return at + 4 + length;
+    }
+
+    /**
+     * position after count stored sets from at, all ids have to be below n
+     */
+    private static int checkIds(MappedByteBuffer in, int at, long count, int words, int n) {
+        for (long s = 0; s < count; s++) {
+            for (int i = 0; i < words; i++, at += 8) {
+                long w = in.getLong(at);
+                if (w != 0 && (i << 6) + 64 - Long.numberOfLeadingZeros(w) > n) {
+                    throw new IllegalArgumentException("attribute id out of range");
+                }
+            }
+        }
+        return at;
+    }
+
+    private static String string(MappedByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static FunctionalDependency dependency(MappedByteBuffer in, AttributeSet empty, long[] scratch, int words,
+                                                   int[] global, boolean identity) {
+        FunctionalDependency fd = new FunctionalDependency(empty, empty);
+        fill(in, fd.lhs, scratch, words, global, identity);
+        fill(in, fd.rhs, scratch, words, global, identity);
+        return fd;
+    }
+
+    private static AttributeSet get(MappedByteBuffer in, AttributeSet empty, long[] scratch, int words, int[] global,
+                                    boolean identity) {
+        AttributeSet attrs = new AttributeSet(empty);
+        fill(in, attrs, scratch, words, global, identity);
+        return attrs;
+    }
+
+    /**
+     * read one stored set into attrs, the words are collected in scratch
+     * and set from the highest down so the set allocates its words once
+     */
+    private static void fill(MappedByteBuffer in, AttributeSet attrs, long[] scratch, int words, int[] global,
+                             boolean identity) {
+        int top = -1;
+        for (int i = 0; i < words; i++) {
+            long w = in.getLong();
+            if (identity) {
+                scratch[i] = w;
+                top = w != 0 ? i : top;
+                continue;
+            }
+            while (w != 0) {
+                int id = global[(i << 6) + Long.numberOfTrailingZeros(w)];
+                scratch[id >>> 6] |= 1L << id;
+                top = Math.max(top, id >>> 6);
+                w &= w - 1;
+            }
+        }
+        for (int i = top; i >= 0; i--) {
+            if (scratch[i] != 0) {
+                attrs.setWord(i, scratch[i]);
+                scratch[i] = 0;
+            }
+        }
+    }
+}
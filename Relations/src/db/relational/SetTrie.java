@@ -0,0 +1,229 @@
+package db.relational;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * set-trie over attribute ids: every stored attribute set is a path of
+ * its ids in ascending order from the root, and the node at the end of
+ * the path holds the value stored with the set. the sets that are subsets
+ * or supersets of a query are found by walking only the branches that can
+ * still lead to one, so a query costs about the part of the trie it
+ * matches instead of a pass over every stored set.
+ *
+ * a trie can be read from many threads while nobody writes to it.
+ */
+public class SetTrie<V> {
+    private static final int[] NO_IDS = new int[0];
+    private static final Node<?>[] NO_NODES = new Node<?>[0];
+
+    private final Node<V> root = new Node<>();
+    private int size;
+
+    private static final class Node<V> {
+        // children by ascending id
+        int[] ids = NO_IDS;
+        @SuppressWarnings("unchecked")
+        Node<V>[] children = (Node<V>[]) NO_NODES;
+        int childCount;
+        V value;
+
+        int find(int id) {
+            return Arrays.binarySearch(ids, 0, childCount, id);
+        }
+
+        Node<V> child(int id) {
+            int i = find(id);
+            if (i >= 0) {
+                return children[i];
+            }
+            i = -i - 1;
+            if (childCount == ids.length) {
+                int n = Math.max(2, childCount * 2);
+                ids = Arrays.copyOf(ids, n);
+                children = Arrays.copyOf(children, n);
+            }
+            System.arraycopy(ids, i, ids, i + 1, childCount - i);
+            System.arraycopy(children, i, children, i + 1, childCount - i);
+            ids[i] = id;
+            children[i] = new Node<>();
+            childCount++;
+            return children[i];
+        }
+
+        void removeChild(int i) {
+            childCount--;
+            System.arraycopy(ids, i + 1, ids, i, childCount - i);
+            System.arraycopy(children, i + 1, children, i, childCount - i);
+            children[childCount] = null;
+        }
+    }
+
+    /**
+     * store value with attrs, replacing the value stored with it before
+     * @param attrs
+     * @param value not null
+     * @return the value stored with attrs before, null if there was none
+     */
+    public V put(AttributeSet attrs, V value) {
+        Node<V> node = root;
+        for (int id = attrs.nextId(0); id >= 0; id = attrs.nextId(id + 1)) {
+            node = node.child(id);
+        }
+        V before = node.value;
+        node.value = value;
+        if (before == null) {
+            size++;
+        }
+        return before;
+    }
+
+    /**
+     * value stored with exactly attrs, null if attrs is not stored
+     * @param attrs
+     * @return
+     */
+    public V get(AttributeSet attrs) {
+        Node<V> node = root;
+        for (int id = attrs.nextId(0); id >= 0 && node != null; id = attrs.nextId(id + 1)) {
+            int i = node.find(id);
+            node = i < 0 ? null : node.children[i];
+        }
+        return node == null ? null : node.value;
+    }
+
+    /**
+     * drop attrs and its value, nodes that lead nowhere anymore are
+     * unlinked
+     * @param attrs
+     * @return the value that was stored with attrs, null if there was none
+     */
+    public V remove(AttributeSet attrs) {
+        V removed = remove(root, attrs, attrs.nextId(0));
+        if (removed != null) {
+            size--;
+        }
+        return removed;
+    }
+
+    private V remove(Node<V> node, AttributeSet attrs, int id) {
+        if (id < 0) {
+            V value = node.value;
+            node.value = null;
+            return value;
+        }
+        int i = node.find(id);
+        if (i < 0) {
+            return null;
+        }
+        Node<V> child = node.children[i];
+        V value = remove(child, attrs, attrs.nextId(id + 1));
+        if (value != null && child.value == null && child.childCount == 0) {
+            node.removeChild(i);
+        }
+        return value;
+    }
+
+    /**
+     * number of stored sets
+     * @return
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * the values of the stored sets that are subsets of attrs
+     * @param attrs
+     * @param action
+     */
+    public void subsetsOf(AttributeSet attrs, Consumer<? super V> action) {
+        subsetsOf(root, attrs, action);
+    }
+
+    private void subsetsOf(Node<V> node, AttributeSet attrs, Consumer<? super V> action) {
+        if (node.value != null) {
+            action.accept(node.value);
+        }
+        for (int i = 0; i < node.childCount; i++) {
+            if (attrs.containsId(node.ids[i])) {
+                subsetsOf(node.children[i], attrs, action);
+            }
+        }
+    }
+
+    /**
+     * whether a stored set is a subset of attrs
+     * @param attrs
+     * @return
+     */
+    public boolean containsSubsetOf(AttributeSet attrs) {
+        return containsSubsetOf(root, attrs);
+    }
+
+    private boolean containsSubsetOf(Node<V> node, AttributeSet attrs) {
+        if (node.value != null) {
+            return true;
+        }
+        for (int i = 0; i < node.childCount; i++) {
+            if (attrs.containsId(node.ids[i]) && containsSubsetOf(node.children[i], attrs)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * the values of the stored sets that are supersets of attrs
+     * @param attrs
+     * @param action
+     */
+    public void supersetsOf(AttributeSet attrs, Consumer<? super V> action) {
+        supersetsOf(root, attrs, attrs.nextId(0), action);
+    }
+
+    /**
+     * @param next smallest id of attrs the path has not passed yet, -1
+     *             once the path holds all of attrs
+     */
+    private void supersetsOf(Node<V> node, AttributeSet attrs, int next, Consumer<? super V> action) {
+        if (next < 0 && node.value != null) {
+            action.accept(node.value);
+        }
+        for (int i = 0; i < node.childCount; i++) {
+            int id = node.ids[i];
+            if (next >= 0 && id > next) {
+                // the ids only grow along a path, next can not come anymore
+                break;
+            }
+            supersetsOf(node.children[i], attrs, id == next ? attrs.nextId(id + 1) : next, action);
+        }
+    }
+
+    /**
+     * whether a stored set is a superset of attrs
+     * @param attrs
+     * @return
+     */
+    public boolean containsSupersetOf(AttributeSet attrs) {
+        return containsSupersetOf(root, attrs, attrs.nextId(0));
+    }
+
+    private boolean containsSupersetOf(Node<V> node, AttributeSet attrs, int next) {
+        if (next < 0) {
+            // every stored set below here has the whole of attrs
+            return node.value != null || node.childCount > 0;
+        }
+        for (int i = 0; i < node.childCount && node.ids[i] <= next; i++) {
+            int id = node.ids[i];
+            if (containsSupersetOf(node.children[i], attrs, id == next ? attrs.nextId(id + 1) : next)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -1,18 +1,37 @@
 package db.util;
 
 import java.util.*;
+import java.util.function.Consumer;
 
-public class Set<T> {
-    private java.util.Set<T> set = new HashSet<>();
+/**
+ * set backed by a hash set. it is iterated in place, with a for each loop
+ * or forEach, and view gives a read-only java.util.Set over it, so none of
+ * these copy the elements the way toList does. iterators do not support
+ * remove, use subtract
+ */
+public class Set<T> implements Iterable<T> {
+    private java.util.Set<T> set;
 
     public Set() {
+        this.set = new HashSet<>();
+    }
+
+    /**
+     * for subclasses that keep their own storage and override
+     * every accessor, no backing hash set is allocated
+     * @param backed
+     */
+    protected Set(boolean backed) {
+        this.set = backed ? new HashSet<>() : null;
     }
 
     public Set(T item) {
+        this();
         this.set.add(item);
     }
 
     public Set(Set set) {
+        this();
         this.union(set);
     }
 
@@ -21,6 +40,7 @@ public class Set<T> {
     }
 
     public Set(List<T> list) {
+        this();
         for (T item : list) {
             set.add(item);
         }
@@ -28,7 +48,7 @@ public class Set<T> {
 
     public int union(Set set) {
         int added = 0;
-        for (Object item : set.toList()) {
+        for (Object item : set) {
             added += this.add((T)item);
         }
         return added;
@@ -51,8 +71,8 @@ public class Set<T> {
 
     public static Set intersect(Set s1, Set s2) {
         Set s = new Set();
-        for (Object item : s1.toList()) {
-            if (s2.set.contains(item)) {
+        for (Object item : s1) {
+            if (s2.contains(item)) {
                 s.add(item);
             }
         }
@@ -68,7 +88,12 @@ public class Set<T> {
         if (s.size() == 0) {
             return change;
         }
-        for (T item : s.toList()) {
+        if (s == this) {
+            change = this.set.size();
+            this.set.clear();
+            return change;
+        }
+        for (T item : s) {
             change += this.subtract(item);
         }
         return change;
@@ -76,7 +101,7 @@ public class Set<T> {
 
     public static Set subtract(Set s1, Set s2) {
         Set s = new Set(s1);
-        for (Object item : s2.toList()) {
+        for (Object item : s2) {
             s.subtract(item);
         }
         return s;
@@ -88,8 +113,12 @@ public class Set<T> {
         return s;
     }
 
+    public boolean contains(Object item) {
+        return this.set.contains(item);
+    }
+
     public boolean elementOf(Set<? extends Set<T>> set) {
-        for (Set<T> s : set.toList()) {
+        for (Set<T> s : set) {
             if (s.equals(this)) {
                 return true;
             }
@@ -98,11 +127,24 @@ public class Set<T> {
     }
 
     public boolean subsetOf(Set<T> set) {
-        return set.set.containsAll(this.set);
+        return this.size() <= set.size() && this.within(set);
     }
 
     public boolean strictSubsetOf(Set set) {
-        return set.set.containsAll(this.set) && this.set.size() < set.set.size();
+        return this.size() < set.size() && this.within(set);
+    }
+
+    /**
+     * whether set contains every element, through contains so that a
+     * subclass with its own storage answers for set
+     */
+    private boolean within(Set<?> set) {
+        for (T item : this) {
+            if (!set.contains(item)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     public boolean isEmpty() {
@@ -121,11 +163,47 @@ public class Set<T> {
         return new Set<>(this.set);
     }
 
+    /**
+     * any one element, null if the set is empty
+     * @return
+     */
     public T get() {
-        if (this.size() == 0) {
-            return null;
-        }
-        return this.toList().get(0);
+        Iterator<T> items = this.iterator();
+        return items.hasNext() ? items.next() : null;
+    }
+
+    /**
+     * iterator over the elements without a copy, the set must not be
+     * changed while it is in use
+     * @return
+     */
+    @Override
+    public Iterator<T> iterator() {
+        Iterator<T> items = set.iterator();
+        return new Iterator<T>() {
+            @Override
+            public boolean hasNext() {
+                return items.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return items.next();
+            }
+        };
+    }
+
+    @Override
+    public void forEach(Consumer<? super T> action) {
+        set.forEach(action);
+    }
+
+    /**
+     * read-only view of the set, changes to the set show through
+     * @return
+     */
+    public java.util.Set<T> view() {
+        return Collections.unmodifiableSet(set);
     }
 
     @Override
@@ -0,0 +1,170 @@
+package db.relational;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AttributeDictionaryTest {
+    @Test
+    void idsAreDenseAndNamesInterned() {
+        AttributeDictionary dictionary = new AttributeDictionary();
+        Attribute<?> a = dictionary.intern("A");
+        Attribute<?> b = dictionary.intern("B", "Integer");
+        assertSame(a, dictionary.intern("A"));
+        assertSame(b, dictionary.fromString("B String"));
+        assertEquals(0, a.getId());
+        assertEquals(1, b.getId());
+        assertSame(b, dictionary.get(1));
+        assertSame(a, dictionary.get("A"));
+        assertNull(dictionary.get(2));
+        assertNull(dictionary.get("C"));
+        assertEquals(2, dictionary.size());
+    }
+
+    @Test
+    void renamesKeepTheNameMapInStep() {
+        AttributeDictionary dictionary = new AttributeDictionary();
+        Attribute<?> a = dictionary.intern("A");
+        Attribute<?> b = dictionary.intern("B");
+        AttributeSet ab = dictionary.set("A", "B");
+        a.setName("C");
+        assertEquals("C", a.getName());
+        assertSame(a, dictionary.get("C"));
+        assertNull(dictionary.get("A"));
+        assertSame(a, dictionary.intern("C"));
+        assertTrue(ab.containsId(a.getId()));
+        // the old name is free again and gets a new id
+        assertEquals(2, dictionary.intern("A").getId());
+
+        assertThrows(IllegalArgumentException.class, () -> b.setName("C"));
+        assertEquals("B", b.getName());
+        assertSame(b, dictionary.get("B"));
+        assertThrows(IllegalArgumentException.class, () -> new AttributeDictionary().rename(b, "D"));
+        b.setName("B");
+        assertSame(b, dictionary.get("B"));
+    }
+
+    @Test
+    void idsPastAChunk() {
+        AttributeDictionary dictionary = new AttributeDictionary();
+        List<Attribute> attrs = Reference.attributes(dictionary, "A", 3000);
+        for (int i = 0; i < attrs.size(); i++) {
+            assertEquals(i, attrs.get(i).getId());
+            assertSame(attrs.get(i), dictionary.get(i));
+        }
+    }
+
+    @Test
+    void schemasOfTheirOwnMatchTheGlobalDictionary() {
+        Random random = new Random(18);
+        for (int round = 0; round < 50; round++) {
+            AttributeDictionary own = new AttributeDictionary();
+            // a few names first so the ids of the two dictionaries differ
+            Reference.attributes(own, "X", 1 + random.nextInt(5));
+            int n = 2 + random.nextInt(6);
+            List<Attribute> ownAttrs = Reference.attributes(own, "A", n);
+            FunctionalDependencySet ownFds = Reference.randomFds(random, own, ownAttrs, random.nextInt(8), 2, 2);
+            FunctionalDependencySet globalFds = new FunctionalDependencySet();
+            for (FunctionalDependency fd : ownFds) {
+                globalFds.add(new FunctionalDependency(global(fd.lhs), global(fd.rhs)));
+            }
+            AttributeSet ownR = Reference.setOf(own, ownAttrs);
+            AttributeSet globalR = global(ownR);
+
+            for (AttributeSet x : Reference.subsets(ownR)) {
+                assertEquals(names(Reference.closure(x, ownFds)), names(x.closureUnder(ownFds)));
+                assertEquals(names(global(x).closureUnder(globalFds)), names(x.closureUnder(ownFds)));
+            }
+            java.util.Set<java.util.Set<String>> keys = new HashSet<>();
+            for (AttributeSet key : Reference.candidateKeys(ownR, ownFds)) {
+                keys.add(names(key));
+            }
+            assertEquals(keys, keyNames(new CandidateKeyFinder(ownR, ownFds).findAll()));
+            assertEquals(keys, keyNames(new CandidateKeyFinder(globalR, globalFds).findAll()));
+            FunctionalDependencySet cover = new FunctionalDependencySet();
+            for (FunctionalDependency fd : ownFds.canonicalCover()) {
+                cover.add(new FunctionalDependency(global(fd.lhs), global(fd.rhs)));
+            }
+            assertTrue(Reference.equivalent(globalFds, cover));
+            assertEquals(globalFds.canonicalCover().size(), cover.size());
+        }
+    }
+
+    @Test
+    void setsOfDifferentDictionariesAreNotMixed() {
+        AttributeDictionary one = new AttributeDictionary();
+        AttributeDictionary two = new AttributeDictionary();
+        AttributeSet a = Reference.set(one, "A,B");
+        AttributeSet b = Reference.set(two, "A,B");
+        // the same ids and names, but not the same attributes
+        assertNotEquals(a, b);
+        assertThrows(IllegalArgumentException.class, () -> new AttributeSet(a).union(b));
+        assertThrows(IllegalArgumentException.class, () -> new AttributeSet(a).retain(b));
+        assertThrows(IllegalArgumentException.class, () -> a.subsetOf(b));
+        assertThrows(IllegalArgumentException.class, () -> new AttributeSet(a).add(two.get("A")));
+        assertFalse(a.contains(two.get("A")));
+        assertEquals(0, new AttributeSet(a).subtract(two.get("A")));
+
+        PersistentAttributeSet p = PersistentAttributeSet.of(a);
+        PersistentAttributeSet q = PersistentAttributeSet.of(b);
+        assertNotEquals(p, q);
+        assertThrows(IllegalArgumentException.class, () -> p.union(q));
+        assertThrows(IllegalArgumentException.class, () -> p.subsetOf(q));
+        assertThrows(IllegalArgumentException.class, () -> p.subsetOf(b));
+        assertThrows(IllegalArgumentException.class, () -> p.with(two.get("A")));
+        assertFalse(p.contains(two.get("A")));
+        assertSame(p, p.without(two.get("A")));
+    }
+
+    @Test
+    void emptySetsGoWithAnyDictionary() {
+        AttributeDictionary one = new AttributeDictionary();
+        AttributeDictionary two = new AttributeDictionary();
+        assertEquals(new AttributeSet(one), new AttributeSet(two));
+        assertTrue(new AttributeSet(one).subsetOf(Reference.set(two, "A")));
+        assertEquals(PersistentAttributeSet.empty(one), PersistentAttributeSet.empty(two));
+
+        // an empty set of the global dictionary takes on the dictionary of
+        // the first attributes it gets
+        AttributeSet attrs = new AttributeSet();
+        attrs.union(Reference.set(one, "A"));
+        assertSame(one, attrs.dictionary());
+        attrs = new AttributeSet();
+        attrs.add(one.intern("B"));
+        assertSame(one, attrs.dictionary());
+        PersistentAttributeSet p = PersistentAttributeSet.empty(AttributeDictionary.global()).with(one.intern("B"));
+        assertSame(one, p.dictionary());
+        assertSame(p, PersistentAttributeSet.empty(two).union(p));
+    }
+
+    private static java.util.Set<String> names(AttributeSet attrs) {
+        java.util.Set<String> names = new HashSet<>();
+        for (Attribute attr : attrs.toList()) {
+            names.add(attr.getName());
+        }
+        return names;
+    }
+
+    /**
+     * the same attributes by name in the global dictionary
+     */
+    private static AttributeSet global(AttributeSet attrs) {
+        AttributeSet set = new AttributeSet(AttributeDictionary.global());
+        for (Attribute attr : attrs.toList()) {
+            set.add(AttributeDictionary.global().intern(attr.getName()));
+        }
+        return set;
+    }
+
+    private static java.util.Set<java.util.Set<String>> keyNames(List<AttributeSet> keys) {
+        java.util.Set<java.util.Set<String>> names = new HashSet<>();
+        for (AttributeSet key : keys) {
+            names.add(names(key));
+        }
+        return names;
+    }
+}
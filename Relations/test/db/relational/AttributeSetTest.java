@@ -0,0 +1,160 @@
+package db.relational;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AttributeSetTest {
+    private final AttributeDictionary dictionary = new AttributeDictionary();
+    private final List<Attribute> attrs = Reference.attributes(dictionary, "A", 200);
+
+    private AttributeSet random(Random random, int span, java.util.Set<Attribute> model) {
+        AttributeSet set = new AttributeSet(dictionary);
+        int n = random.nextInt(12);
+        for (int i = 0; i < n; i++) {
+            Attribute attr = attrs.get(random.nextInt(span));
+            set.add(attr);
+            model.add(attr);
+        }
+        return set;
+    }
+
+    private static void assertMatches(java.util.Set<Attribute> model, AttributeSet set) {
+        assertEquals(model.size(), set.size());
+        assertEquals(model.isEmpty(), set.isEmpty());
+        assertEquals(model, new HashSet<>(set.toList()));
+        for (Attribute attr : model) {
+            assertTrue(set.contains(attr));
+        }
+    }
+
+    @Test
+    void operationsMatchAHashSet() {
+        Random random = new Random(1);
+        for (int round = 0; round < 2000; round++) {
+            // spans below and above 64 cover the inline word and the word array
+            int span = round % 2 == 0 ? 60 : 200;
+            java.util.Set<Attribute> m1 = new HashSet<>();
+            java.util.Set<Attribute> m2 = new HashSet<>();
+            AttributeSet s1 = random(random, span, m1);
+            AttributeSet s2 = random(random, span, m2);
+
+            java.util.Set<Attribute> union = new HashSet<>(m1);
+            union.addAll(m2);
+            AttributeSet u = new AttributeSet(s1);
+            assertEquals(union.size() - m1.size(), u.union(s2));
+            assertMatches(union, u);
+
+            java.util.Set<Attribute> inter = new HashSet<>(m1);
+            inter.retainAll(m2);
+            assertMatches(inter, AttributeSet.intersect(s1, s2));
+
+            java.util.Set<Attribute> diff = new HashSet<>(m1);
+            diff.removeAll(m2);
+            AttributeSet d = new AttributeSet(s1);
+            assertEquals(m1.size() - diff.size(), d.subtract(s2));
+            assertMatches(diff, d);
+
+            assertEquals(m2.containsAll(m1), s1.subsetOf(s2));
+            assertEquals(m2.containsAll(m1) && m2.size() > m1.size(), s1.strictSubsetOf(s2));
+            assertEquals(inter.isEmpty(), s1.disjoint(s2));
+            assertEquals(m1.equals(m2), s1.equals(s2));
+            if (m1.equals(m2)) {
+                assertEquals(s1.hashCode(), s2.hashCode());
+            }
+            assertMatches(m1, s1);
+        }
+    }
+
+    @Test
+    void idsAreVisitedInAscendingOrder() {
+        AttributeSet set = new AttributeSet(dictionary);
+        int[] ids = {0, 63, 64, 65, 127, 128, 199};
+        for (int id : ids) {
+            set.add(attrs.get(id));
+        }
+        List<Integer> seen = new ArrayList<>();
+        for (int id = set.nextId(0); id >= 0; id = set.nextId(id + 1)) {
+            seen.add(attrs.indexOf(dictionary.get(id)));
+        }
+        List<Integer> expected = new ArrayList<>();
+        for (int id : ids) {
+            expected.add(id);
+        }
+        assertEquals(expected, seen);
+        assertEquals(attrs.get(199).getId() + 1, set.length());
+        List<Attribute> listed = set.toList();
+        for (int i = 0; i < ids.length; i++) {
+            assertSame(attrs.get(ids[i]), listed.get(i));
+        }
+    }
+
+    @Test
+    void iterationAndViewsGoInPlace() {
+        Random random = new Random(2);
+        for (int round = 0; round < 500; round++) {
+            java.util.Set<Attribute> model = new HashSet<>();
+            AttributeSet set = random(random, 200, model);
+            List<Attribute> iterated = new ArrayList<>();
+            for (Attribute attr : set) {
+                iterated.add(attr);
+            }
+            assertEquals(set.toList(), iterated);
+            List<Attribute> each = new ArrayList<>();
+            set.forEach(each::add);
+            assertEquals(iterated, each);
+            java.util.Set<Attribute> view = set.view();
+            assertEquals(model, view);
+            for (Attribute attr : attrs) {
+                assertEquals(model.contains(attr), view.contains(attr));
+            }
+            assertThrows(UnsupportedOperationException.class, () -> view.add(attrs.get(0)));
+            // the view follows the set
+            set.add(attrs.get(199));
+            assertTrue(view.contains(attrs.get(199)));
+            assertEquals(set.size(), view.size());
+        }
+    }
+
+    @Test
+    void removingTheHighWordsKeepsEquality() {
+        AttributeSet small = new AttributeSet(dictionary);
+        small.add(attrs.get(3));
+        AttributeSet grown = new AttributeSet(small);
+        grown.add(attrs.get(150));
+        assertNotEquals(small, grown);
+        grown.subtract(attrs.get(150));
+        assertEquals(small, grown);
+        assertEquals(small.hashCode(), grown.hashCode());
+        assertEquals(1, grown.size());
+    }
+
+    @Test
+    void addAndRemoveReportChanges() {
+        AttributeSet set = new AttributeSet(dictionary);
+        assertEquals(1, set.add(attrs.get(70)));
+        assertEquals(0, set.add(attrs.get(70)));
+        assertEquals(0, set.add(null));
+        assertEquals(1, set.subtract(attrs.get(70)));
+        assertEquals(0, set.subtract(attrs.get(70)));
+        assertTrue(set.isEmpty());
+        assertNull(set.get());
+    }
+
+    @Test
+    void internerHandsOutDenseIds() {
+        AttributeDictionary fresh = new AttributeDictionary();
+        Attribute a = fresh.intern("a");
+        Attribute b = fresh.intern("b");
+        assertEquals(0, a.getId());
+        assertEquals(1, b.getId());
+        assertSame(a, fresh.intern("a"));
+        assertSame(b, fresh.get(1));
+        assertEquals(2, fresh.size());
+    }
+}
@@ -0,0 +1,92 @@
+package db.relational;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BCNFDecomposerTest {
+    private final AttributeDictionary dictionary = new AttributeDictionary();
+
+    /**
+     * whether a relation over attrs is in BCNF under every dependency of
+     * fds+ that lies inside attrs
+     */
+    static boolean inBCNF(AttributeSet attrs, Iterable<FunctionalDependency> fds) {
+        for (FunctionalDependency fd : Reference.projection(attrs, fds)) {
+            if (!fd.rhs.subsetOf(fd.lhs) && !attrs.subsetOf(fd.rhs)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * every split of the tree is lossless under fds: the fragments share
+     * a superkey of one of them
+     */
+    static void assertLossless(DecompositionNode node, Iterable<FunctionalDependency> fds) {
+        if (node.isLeaf()) {
+            return;
+        }
+        AttributeSet left = node.left.relation.attributes;
+        AttributeSet right = node.right.relation.attributes;
+        assertEquals(node.relation.attributes, AttributeSet.union(left, right));
+        AttributeSet common = Reference.closure(AttributeSet.intersect(left, right), fds);
+        assertTrue(left.subsetOf(common) || right.subsetOf(common));
+        assertLossless(node.left, fds);
+        assertLossless(node.right, fds);
+    }
+
+    private static java.util.Set<AttributeSet> attributes(Iterable<Relation> relations) {
+        java.util.Set<AttributeSet> attrs = new HashSet<>();
+        for (Relation r : relations) {
+            attrs.add(r.attributes);
+        }
+        return attrs;
+    }
+
+    @Test
+    void leavesAreInBCNFAndJoinLosslessly() {
+        Random random = new Random(14);
+        for (int round = 0; round < 200; round++) {
+            List<Attribute> attrs = Reference.attributes(dictionary, "A", 3 + random.nextInt(5));
+            FunctionalDependencySet fds = Reference.randomFds(random, dictionary, attrs, random.nextInt(8), 2, 2);
+            // every third relation leaves attributes of the dependencies out
+            List<Attribute> inside = round % 3 == 0 ? attrs.subList(0, attrs.size() - 1) : attrs;
+            Relation r = new Relation(Reference.setOf(dictionary, inside), fds);
+
+            DecompositionNode tree = r.BCNFDecompositionTree();
+            assertLossless(tree, fds);
+            List<Relation> leaves = tree.leaves();
+            for (Relation leaf : leaves) {
+                assertTrue(inBCNF(leaf.attributes, fds), leaf + " is not in BCNF");
+            }
+            assertEquals(attributes(leaves), attributes(r.BCNFDecomposition()));
+        }
+    }
+
+    @Test
+    void impliedViolationsAreDecomposed() {
+        // A -> B only follows through D, which is not in R, so no stated
+        // dependency lies inside R and BCNFViolations finds nothing
+        Relation r = new Relation(Reference.set(dictionary, "A,B,C"), Reference.fds(dictionary, "A->D;D->B"));
+        assertTrue(r.inBCNF());
+        java.util.Set<AttributeSet> expected = new HashSet<>();
+        expected.add(Reference.set(dictionary, "A,B"));
+        expected.add(Reference.set(dictionary, "A,C"));
+        assertEquals(expected, attributes(r.BCNFDecomposition()));
+    }
+
+    @Test
+    void relationInBCNFIsKept() {
+        Relation r = new Relation(Reference.set(dictionary, "A,B,C"), Reference.fds(dictionary, "A->B,C"));
+        List<Relation> result = new ArrayList<>(r.BCNFDecomposition().view());
+        assertEquals(1, result.size());
+        assertEquals(r.attributes, result.get(0).attributes);
+    }
+}
@@ -0,0 +1,61 @@
+package db.relational;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CandidateKeyFinderTest {
+    private final AttributeDictionary dictionary = new AttributeDictionary();
+
+    @Test
+    void keysMatchTheSubsetSearch() {
+        Random random = new Random(6);
+        for (int round = 0; round < 300; round++) {
+            List<Attribute> attrs = Reference.attributes(dictionary, "A", 3 + random.nextInt(7));
+            AttributeSet r = Reference.setOf(dictionary, attrs);
+            FunctionalDependencySet fds = Reference.randomFds(random, dictionary, attrs, random.nextInt(10), 3, 2);
+            Relation relation = new Relation(r, fds);
+            assertEquals(Reference.candidateKeys(r, fds), relation.getCandidateKeys().view());
+        }
+    }
+
+    @Test
+    void dependenciesOutsideTheRelationAreResolved() {
+        Random random = new Random(7);
+        for (int round = 0; round < 300; round++) {
+            List<Attribute> attrs = Reference.attributes(dictionary, "A", 8);
+            FunctionalDependencySet fds = Reference.randomFds(random, dictionary, attrs, 2 + random.nextInt(8), 2, 2);
+            // keys of a part of the attributes, derived through the others
+            AttributeSet r = Reference.setOf(dictionary, attrs.subList(0, 5));
+            assertEquals(Reference.candidateKeys(r, fds), new HashSet<>(new CandidateKeyFinder(r, fds).findAll()));
+        }
+    }
+
+    @Test
+    void textbookKeys() {
+        AttributeSet r = Reference.set(dictionary, "A,B,C,D,E");
+        FunctionalDependencySet fds = Reference.fds(dictionary, "A->B,C;C,D->E;B->D;E->A");
+        java.util.Set<AttributeSet> keys = new HashSet<>();
+        for (String key : new String[]{"A", "E", "B,C", "C,D"}) {
+            keys.add(Reference.set(dictionary, key));
+        }
+        assertEquals(keys, new HashSet<>(new CandidateKeyFinder(r, fds).findAll()));
+    }
+
+    @Test
+    void keysAreHandedOutOnceEach() {
+        AttributeSet r = Reference.set(dictionary, "A,B,C,D,E");
+        FunctionalDependencySet fds = Reference.fds(dictionary, "A->B,C;C,D->E;B->D;E->A");
+        CandidateKeyFinder finder = new CandidateKeyFinder(r, fds);
+        java.util.Set<AttributeSet> seen = new HashSet<>();
+        while (finder.hasNext()) {
+            assertTrue(seen.add(finder.next()));
+        }
+        assertEquals(4, seen.size());
+        assertFalse(finder.hasNext());
+    }
+}
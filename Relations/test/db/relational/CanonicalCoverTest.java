@@ -0,0 +1,73 @@
+package db.relational;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CanonicalCoverTest {
+    private final AttributeDictionary dictionary = new AttributeDictionary();
+
+    private FunctionalDependency fd(String fd) {
+        return FunctionalDependency.fromString(fd, ",", "->", dictionary);
+    }
+
+    /**
+     * cover is equivalent to fds, has no extraneous attribute on either
+     * side and no two dependencies with the same left hand side
+     */
+    private static void assertCanonicalCover(FunctionalDependencySet fds, FunctionalDependencySet cover) {
+        assertTrue(Reference.equivalent(fds, cover));
+        List<FunctionalDependency> list = cover.toList();
+        java.util.Set<AttributeSet> lhs = new HashSet<>();
+        for (FunctionalDependency fd : list) {
+            assertTrue(lhs.add(fd.lhs));
+            assertFalse(fd.rhs.isEmpty());
+            List<FunctionalDependency> others = new ArrayList<>(list);
+            others.remove(fd);
+            for (Attribute attr : fd.lhs.toList()) {
+                AttributeSet gamma = new AttributeSet(fd.lhs);
+                gamma.subtract(attr);
+                assertFalse(fd.rhs.subsetOf(Reference.closure(gamma, list)), attr + " is extraneous in " + fd);
+            }
+            for (Attribute attr : fd.rhs.toList()) {
+                AttributeSet rest = new AttributeSet(fd.rhs);
+                rest.subtract(attr);
+                List<FunctionalDependency> reduced = new ArrayList<>(others);
+                reduced.add(new FunctionalDependency(fd.lhs, rest));
+                assertFalse(Reference.closure(fd.lhs, reduced).contains(attr), attr + " is extraneous in " + fd);
+            }
+        }
+    }
+
+    @Test
+    void coverIsCanonicalAndEquivalent() {
+        Random random = new Random(13);
+        for (int round = 0; round < 300; round++) {
+            List<Attribute> attrs = Reference.attributes(dictionary, "A", 2 + random.nextInt(7));
+            FunctionalDependencySet fds = Reference.randomFds(random, dictionary, attrs, random.nextInt(12), 3, 3);
+            FunctionalDependencySet before = new FunctionalDependencySet(fds);
+            assertCanonicalCover(fds, fds.canonicalCover());
+            assertEquals(before, fds);
+        }
+    }
+
+    @Test
+    void textbookCover() {
+        FunctionalDependencySet fds = Reference.fds(dictionary, "A->B,C;B->C;A->B;A,B->C");
+        assertEquals(Reference.fds(dictionary, "A->B;B->C"), fds.canonicalCover());
+    }
+
+    @Test
+    void extraneousAttributes() {
+        FunctionalDependencySet fds = Reference.fds(dictionary, "A->B;A,B->C;C->D;A->C,D");
+        assertEquals(Reference.set(dictionary, "B"), fds.extraneousLHS(fd("A,B->C")));
+        // A->C,D is left out, C comes from A,B->C and D from C->D
+        assertEquals(Reference.set(dictionary, "C,D"), fds.extraneousRHS(fd("A->C,D")));
+        assertEquals(Reference.set(dictionary, ""), fds.extraneousRHS(fd("C->D")));
+    }
+}
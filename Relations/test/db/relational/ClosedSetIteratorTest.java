@@ -0,0 +1,95 @@
+package db.relational;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClosedSetIteratorTest {
+    private final AttributeDictionary dictionary = new AttributeDictionary();
+
+    /**
+     * lectic order: of two sets the one holding the smallest id they
+     * differ in comes later
+     */
+    private static final Comparator<AttributeSet> LECTIC = (a, b) -> {
+        AttributeSet difference = AttributeSet.subtract(a, b);
+        difference.union(AttributeSet.subtract(b, a));
+        int first = difference.nextId(0);
+        if (first < 0) {
+            return 0;
+        }
+        return a.containsId(first) ? 1 : -1;
+    };
+
+    /**
+     * the closed sets inside attributes by closing every subset
+     */
+    private static List<AttributeSet> closedSets(AttributeSet attributes, FunctionalDependencySet fds) {
+        List<AttributeSet> closed = new ArrayList<>();
+        for (AttributeSet x : Reference.subsets(attributes)) {
+            AttributeSet closure = Reference.closure(x, fds);
+            closure.retain(attributes);
+            if (closure.equals(x)) {
+                closed.add(x);
+            }
+        }
+        closed.sort(LECTIC);
+        return closed;
+    }
+
+    @Test
+    void closedSetsMatchTheSubsetsInLecticOrder() {
+        Random random = new Random(32);
+        for (int round = 0; round < 300; round++) {
+            List<Attribute> attrs = Reference.attributes(dictionary, "A", 2 + random.nextInt(8));
+            FunctionalDependencySet fds = Reference.randomFds(random, dictionary, attrs, random.nextInt(10), 3, 3);
+            // some rounds only look at part of the attributes, the
+            // dependencies still reach outside of it
+            AttributeSet attributes = round % 3 == 0
+                    ? Reference.randomSubset(random, dictionary, attrs)
+                    : Reference.setOf(dictionary, attrs);
+            List<AttributeSet> expected = closedSets(attributes, fds);
+            List<AttributeSet> closed = fds.closedSets(attributes).collect(Collectors.toList());
+            assertEquals(expected, closed);
+        }
+    }
+
+    @Test
+    void emptyLeftHandSidesCloseTheEmptySet() {
+        FunctionalDependencySet fds = Reference.fds(dictionary, "A->B");
+        fds.add(new FunctionalDependency(Reference.set(dictionary, ""), Reference.set(dictionary, "C")));
+        AttributeSet attributes = Reference.set(dictionary, "A,B,C");
+        List<AttributeSet> closed = fds.closedSets(attributes).collect(Collectors.toList());
+        assertEquals(closedSets(attributes, fds), closed);
+        assertEquals(Reference.set(dictionary, "C"), closed.get(0));
+    }
+
+    @Test
+    void withoutDependenciesEverySubsetIsClosed() {
+        AttributeSet attributes = Reference.set(dictionary, "A,B,C,D");
+        List<AttributeSet> closed = new FunctionalDependencySet().closedSets(attributes).collect(Collectors.toList());
+        assertEquals(16, closed.size());
+        assertEquals(Reference.set(dictionary, ""), closed.get(0));
+        assertEquals(attributes, closed.get(15));
+    }
+
+    @Test
+    void iteratorEndsAfterTheLastSet() {
+        FunctionalDependencySet fds = Reference.fds(dictionary, "A->B;B->A");
+        ClosedSetIterator closed = new ClosedSetIterator(fds, Reference.set(dictionary, "A,B"));
+        assertEquals(Reference.set(dictionary, ""), closed.next());
+        // the returned sets are copies, changing one does not steer the walk
+        AttributeSet all = closed.next();
+        assertEquals(Reference.set(dictionary, "A,B"), all);
+        all.subtract(Reference.set(dictionary, "A"));
+        assertFalse(closed.hasNext());
+        assertThrows(NoSuchElementException.class, closed::next);
+    }
+}
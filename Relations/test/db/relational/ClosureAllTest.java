@@ -0,0 +1,47 @@
+package db.relational;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClosureAllTest {
+    private final AttributeDictionary dictionary = new AttributeDictionary();
+
+    @Test
+    void batchClosuresMatchSingleOnes() {
+        Random random = new Random(11);
+        for (int round = 0; round < 40; round++) {
+            // ids past the first word, and batch sizes around the block of 64
+            List<Attribute> attrs = Reference.attributes(dictionary, "A", round % 2 == 0 ? 10 : 80);
+            FunctionalDependencySet fds = Reference.randomFds(random, dictionary, attrs, 1 + random.nextInt(30), 3, 3);
+            List<AttributeSet> inputs = new ArrayList<>();
+            int count = new int[]{0, 1, 63, 64, 65, 200}[round % 6];
+            for (int i = 0; i < count; i++) {
+                inputs.add(Reference.randomSubset(random, dictionary, attrs.subList(0, 10)));
+            }
+            for (boolean parallel : new boolean[]{false, true}) {
+                List<AttributeSet> closures = fds.closureAll(inputs, parallel);
+                assertEquals(inputs.size(), closures.size());
+                for (int i = 0; i < inputs.size(); i++) {
+                    assertEquals(Reference.closure(inputs.get(i), fds), closures.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    void emptyLeftHandSidesApplyToEveryInput() {
+        FunctionalDependencySet fds = Reference.fds(dictionary, "A->B");
+        fds.add(new FunctionalDependency(Reference.set(dictionary, ""), Reference.set(dictionary, "C")));
+        List<AttributeSet> inputs = new ArrayList<>();
+        inputs.add(Reference.set(dictionary, ""));
+        inputs.add(Reference.set(dictionary, "A"));
+        List<AttributeSet> closures = fds.closureAll(inputs);
+        assertEquals(Reference.set(dictionary, "C"), closures.get(0));
+        assertEquals(Reference.set(dictionary, "A,B,C"), closures.get(1));
+    }
+}
@@ -0,0 +1,98 @@
+package db.relational;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClosureCacheTest {
+    private final AttributeDictionary dictionary = new AttributeDictionary();
+
+    @Test
+    void cachedClosuresEqualUncachedOnes() {
+        Random random = new Random(5);
+        List<Attribute> attrs = Reference.attributes(dictionary, "A", 8);
+        FunctionalDependencySet fds = Reference.randomFds(random, dictionary, attrs, 10, 2, 2);
+        fds.setClosureCacheCapacity(16);
+        for (int i = 0; i < 500; i++) {
+            AttributeSet x = Reference.randomSubset(random, dictionary, attrs);
+            assertEquals(Reference.closure(x, fds), fds.closureOf(x));
+        }
+        ClosureCache cache = fds.closureCache();
+        assertTrue(cache.getHits() > 0);
+        assertEquals(500, cache.getHits() + cache.getMisses());
+        assertTrue(cache.size() <= 16);
+    }
+
+    @Test
+    void threadsShareOneEngineAndCache() {
+        Random random = new Random(37);
+        List<Attribute> attrs = Reference.attributes(dictionary, "A", 10);
+        for (int round = 0; round < 50; round++) {
+            FunctionalDependencySet fds = Reference.randomFds(random, dictionary, attrs, 12, 2, 2);
+            List<AttributeSet> inputs = new ArrayList<>();
+            List<AttributeSet> expected = new ArrayList<>();
+            for (int i = 0; i < 64; i++) {
+                AttributeSet x = Reference.randomSubset(random, dictionary, attrs);
+                inputs.add(x);
+                expected.add(Reference.closure(x, fds));
+            }
+            // the first use races on the common pool
+            java.util.Set<Object> shared = ConcurrentHashMap.newKeySet();
+            List<AttributeSet> closures = IntStream.range(0, inputs.size()).parallel().mapToObj(i -> {
+                shared.add(fds.closureEngine());
+                shared.add(fds.closureCache());
+                return fds.closureOf(inputs.get(i));
+            }).collect(Collectors.toList());
+            assertEquals(expected, closures);
+            assertEquals(2, shared.size());
+        }
+    }
+
+    @Test
+    void callersGetCopies() {
+        FunctionalDependencySet fds = Reference.fds(dictionary, "A->B");
+        AttributeSet a = Reference.set(dictionary, "A");
+        fds.closureOf(a).union(Reference.set(dictionary, "C"));
+        assertEquals(Reference.set(dictionary, "A,B"), fds.closureOf(a));
+        assertEquals(1, fds.closureCache().getHits());
+    }
+
+    @Test
+    void modificationsInvalidateTheCache() {
+        FunctionalDependencySet fds = Reference.fds(dictionary, "A->B");
+        AttributeSet a = Reference.set(dictionary, "A");
+        assertEquals(Reference.set(dictionary, "A,B"), fds.closureOf(a));
+
+        FunctionalDependency bc = FunctionalDependency.fromString("B->C", ",", "->", dictionary);
+        fds.add(bc);
+        assertEquals(Reference.set(dictionary, "A,B,C"), fds.closureOf(a));
+        fds.subtract(bc);
+        assertEquals(Reference.set(dictionary, "A,B"), fds.closureOf(a));
+        fds.union(Reference.fds(dictionary, "B->D"));
+        assertEquals(Reference.set(dictionary, "A,B,D"), fds.closureOf(a));
+        assertEquals(0, fds.closureCache().getHits());
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        ClosureCache cache = new ClosureCache(2);
+        AttributeSet a = Reference.set(dictionary, "A");
+        AttributeSet b = Reference.set(dictionary, "B");
+        AttributeSet c = Reference.set(dictionary, "C");
+        cache.put(a, a, 0);
+        cache.put(b, b, 0);
+        assertNotNull(cache.get(a, 0));
+        cache.put(c, c, 0);
+        assertNull(cache.get(b, 0));
+        assertNotNull(cache.get(a, 0));
+        assertNull(cache.get(a, 1));
+        assertThrows(IllegalArgumentException.class, () -> new ClosureCache(0));
+    }
+}
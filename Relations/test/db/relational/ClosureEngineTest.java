@@ -0,0 +1,91 @@
+package db.relational;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClosureEngineTest {
+    private final AttributeDictionary dictionary = new AttributeDictionary();
+
+    @Test
+    void closureMatchesTheFixpoint() {
+        Random random = new Random(2);
+        for (int round = 0; round < 300; round++) {
+            // more attributes than one word, so ids above 63 are indexed too
+            List<Attribute> attrs = Reference.attributes(dictionary, "A", round % 3 == 0 ? 90 : 12);
+            FunctionalDependencySet fds = Reference.randomFds(random, dictionary, attrs, 1 + random.nextInt(20), 3, 3);
+            ClosureEngine engine = new ClosureEngine(fds.toList());
+            for (int i = 0; i < 20; i++) {
+                AttributeSet x = Reference.randomSubset(random, dictionary, attrs.subList(0, 12));
+                AttributeSet before = new AttributeSet(x);
+                assertEquals(Reference.closure(x, fds), engine.closure(x));
+                assertEquals(before, x);
+                assertEquals(Reference.closure(x, fds), x.closureUnder(fds));
+            }
+        }
+    }
+
+    @Test
+    void emptyLeftHandSidesFireWithoutInput() {
+        FunctionalDependencySet fds = Reference.fds(dictionary, "A->B;B,C->D");
+        fds.add(new FunctionalDependency(Reference.set(dictionary, ""), Reference.set(dictionary, "A")));
+        ClosureEngine engine = new ClosureEngine(fds.toList());
+        assertEquals(Reference.set(dictionary, "A,B"), engine.closure(Reference.set(dictionary, "")));
+        assertEquals(Reference.set(dictionary, "A,B,C,D"), engine.closure(Reference.set(dictionary, "C")));
+    }
+
+    @Test
+    void maskedClosureLeavesOneDependencyOut() {
+        Random random = new Random(3);
+        List<Attribute> attrs = Reference.attributes(dictionary, "A", 10);
+        for (int round = 0; round < 100; round++) {
+            List<FunctionalDependency> fds = Reference.randomFds(random, dictionary, attrs, 8, 2, 2).toList();
+            ClosureEngine engine = new ClosureEngine(fds);
+            for (FunctionalDependency fd : fds) {
+                List<FunctionalDependency> others = new ArrayList<>(fds);
+                others.removeIf(fd::equals);
+                AttributeSet x = Reference.randomSubset(random, dictionary, attrs);
+                assertEquals(Reference.closure(x, others), engine.closure(x, engine.slotOf(fd)));
+            }
+        }
+    }
+
+    @Test
+    void addAndRemoveKeepTheIndexConsistent() {
+        Random random = new Random(4);
+        List<Attribute> attrs = Reference.attributes(dictionary, "A", 10);
+        List<FunctionalDependency> live = new ArrayList<>();
+        ClosureEngine engine = new ClosureEngine(live);
+        // enough removals to go through compaction a few times
+        for (int step = 0; step < 2000; step++) {
+            if (live.isEmpty() || random.nextInt(3) > 0) {
+                FunctionalDependency fd = Reference.randomFds(random, dictionary, attrs, 1, 3, 2).get();
+                assertEquals(!live.contains(fd), engine.add(fd));
+                if (!live.contains(fd)) {
+                    live.add(fd);
+                }
+            } else {
+                FunctionalDependency fd = live.remove(random.nextInt(live.size()));
+                assertTrue(engine.remove(fd));
+                assertFalse(engine.remove(fd));
+            }
+            assertEquals(live.size(), engine.size());
+            AttributeSet x = Reference.randomSubset(random, dictionary, attrs);
+            assertEquals(Reference.closure(x, live), engine.closure(x));
+        }
+    }
+
+    @Test
+    void compiledSidesAreCopies() {
+        FunctionalDependency fd = FunctionalDependency.fromString("A->B", ",", "->", dictionary);
+        List<FunctionalDependency> fds = new ArrayList<>();
+        fds.add(fd);
+        ClosureEngine engine = new ClosureEngine(fds);
+        fd.rhs.union(Reference.set(dictionary, "C"));
+        assertEquals(Reference.set(dictionary, "A,B"), engine.closure(Reference.set(dictionary, "A")));
+    }
+}
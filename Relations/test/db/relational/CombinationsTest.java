@@ -0,0 +1,173 @@
+package db.relational;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CombinationsTest {
+    private final AttributeDictionary dictionary = new AttributeDictionary();
+
+    /**
+     * every k-subset of n positions by going through all 2^n masks, which
+     * is ascending and so colex order
+     */
+    private static List<Long> masks(int n, int k) {
+        List<Long> masks = new ArrayList<>();
+        for (long m = 0; m < 1L << n; m++) {
+            if (Long.bitCount(m) == k) {
+                masks.add(m);
+            }
+        }
+        return masks;
+    }
+
+    private static List<Long> drain(Spliterator.OfLong masks) {
+        List<Long> list = new ArrayList<>();
+        masks.forEachRemaining((long m) -> list.add(m));
+        return list;
+    }
+
+    @Test
+    void masksComeInColexOrder() {
+        for (int n = 0; n <= 12; n++) {
+            for (int k = -1; k <= n + 1; k++) {
+                List<Long> expected = k < 0 ? new ArrayList<>() : masks(n, k);
+                assertEquals(expected.size(), Combinations.count(n, k));
+                assertEquals(expected, drain(new Combinations(n, k)));
+                List<Long> stepped = new ArrayList<>();
+                Combinations masks = new Combinations(n, k);
+                while (masks.tryAdvance((long m) -> stepped.add(m))) {
+                    assertEquals(expected.size() - stepped.size(), masks.estimateSize());
+                }
+                assertEquals(expected, stepped);
+            }
+        }
+    }
+
+    @Test
+    void unrankInvertsTheColexRank() {
+        for (int n = 0; n <= 12; n++) {
+            for (int k = 0; k <= n; k++) {
+                List<Long> masks = masks(n, k);
+                for (int rank = 0; rank < masks.size(); rank++) {
+                    assertEquals(masks.get(rank).longValue(), Combinations.unrank(rank, k));
+                }
+            }
+        }
+        // the last subsets of 64 positions use the top bit
+        assertEquals(-1L, Combinations.unrank(0, 64));
+        assertEquals(~1L, Combinations.unrank(Combinations.count(64, 63) - 1, 63));
+        assertEquals(1L << 63, Combinations.unrank(63, 1));
+    }
+
+    @Test
+    void splitsCoverTheRangeOnce() {
+        Random random = new Random(31);
+        for (int round = 0; round < 300; round++) {
+            int n = random.nextInt(15);
+            int k = random.nextInt(n + 1);
+            List<Long> expected = masks(n, k);
+            // split at random points and drain prefixes first, so the
+            // pieces put together give the whole range in order
+            List<Long> seen = new ArrayList<>();
+            List<Combinations> pending = new ArrayList<>();
+            pending.add(new Combinations(n, k));
+            while (!pending.isEmpty()) {
+                Combinations masks = pending.remove(pending.size() - 1);
+                Combinations prefix = random.nextInt(3) == 0 ? null : masks.trySplit();
+                if (prefix == null) {
+                    seen.addAll(drain(masks));
+                } else {
+                    assertTrue(prefix.estimateSize() <= masks.estimateSize());
+                    pending.add(masks);
+                    pending.add(prefix);
+                }
+            }
+            assertEquals(expected, seen);
+        }
+    }
+
+    @Test
+    void wideMasksSplitAsWell() {
+        Combinations masks = new Combinations(64, 3);
+        long size = masks.estimateSize();
+        assertEquals(41664, size);
+        Combinations prefix = masks.trySplit();
+        assertEquals(size, prefix.estimateSize() + masks.estimateSize());
+        List<Long> first = drain(prefix);
+        List<Long> second = drain(masks);
+        assertEquals(7L, first.get(0).longValue());
+        assertEquals(0b111L << 61, second.get(second.size() - 1).longValue());
+        assertTrue(first.get(first.size() - 1) < second.get(0));
+        assertEquals(Combinations.next(first.get(first.size() - 1)), second.get(0).longValue());
+    }
+
+    @Test
+    void subsetsOfAnAttributeSet() {
+        for (int n : new int[]{0, 5, 10, 70}) {
+            AttributeSet attrs = Reference.setOf(dictionary, Reference.attributes(dictionary, "A", n));
+            java.util.Set<AttributeSet> all = new HashSet<>(n <= 10 ? Reference.subsets(attrs) : new ArrayList<>());
+            // past 64 attributes only the small sizes, there are too many
+            int top = n <= 10 ? n : 2;
+            for (int k = 0; k <= top; k++) {
+                int size = k;
+                List<AttributeSet> subsets = StreamSupport.stream(Combinations.of(attrs, k), true)
+                        .collect(Collectors.toList());
+                assertEquals(binomial(n, k), subsets.size());
+                assertEquals(subsets.size(), new HashSet<>(subsets).size());
+                for (AttributeSet subset : subsets) {
+                    assertEquals(size, subset.size());
+                    assertTrue(subset.subsetOf(attrs));
+                }
+                if (n <= 10) {
+                    java.util.Set<AttributeSet> expected = all.stream().filter(s -> s.size() == size)
+                            .collect(Collectors.toSet());
+                    assertEquals(expected, new HashSet<>(subsets));
+                }
+            }
+        }
+    }
+
+    @Test
+    void subsetsBySizeComeSmallestFirst() {
+        for (int n : new int[]{6, 66}) {
+            AttributeSet attrs = Reference.setOf(dictionary, Reference.attributes(dictionary, "A", n));
+            List<AttributeSet> subsets = new ArrayList<>();
+            Combinations.of(attrs, 1, 2).forEachRemaining(subsets::add);
+            assertEquals(binomial(n, 1) + binomial(n, 2), subsets.size());
+            assertEquals(subsets.size(), new HashSet<>(subsets).size());
+            for (int i = 1; i < subsets.size(); i++) {
+                assertTrue(subsets.get(i - 1).size() <= subsets.get(i).size());
+            }
+            List<AttributeSet> none = new ArrayList<>();
+            Combinations.of(attrs, 3, 2).forEachRemaining(none::add);
+            assertTrue(none.isEmpty());
+            List<AttributeSet> empty = new ArrayList<>();
+            Combinations.of(attrs, -1, 0).forEachRemaining(empty::add);
+            assertEquals(1, empty.size());
+            assertTrue(empty.get(0).isEmpty());
+        }
+    }
+
+    @Test
+    void moreThan64PositionsIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new Combinations(65, 1));
+        assertThrows(IllegalArgumentException.class, () -> new Combinations(-1, 0));
+    }
+
+    private static long binomial(int n, int k) {
+        long c = 1;
+        for (int i = 0; i < k; i++) {
+            c = c * (n - i) / (i + 1);
+        }
+        return c;
+    }
+}
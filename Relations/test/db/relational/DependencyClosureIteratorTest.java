@@ -0,0 +1,74 @@
+package db.relational;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DependencyClosureIteratorTest {
+    private final AttributeDictionary dictionary = new AttributeDictionary();
+
+    @Test
+    void streamListsEveryClosureOfASubset() {
+        Random random = new Random(8);
+        for (int round = 0; round < 100; round++) {
+            List<Attribute> attrs = Reference.attributes(dictionary, "A", 1 + random.nextInt(7));
+            AttributeSet r = Reference.setOf(dictionary, attrs);
+            FunctionalDependencySet fds = Reference.randomFds(random, dictionary, attrs, random.nextInt(8), 2, 2);
+
+            java.util.Set<FunctionalDependency> all = new HashSet<>();
+            java.util.Set<FunctionalDependency> nontrivial = new HashSet<>();
+            for (AttributeSet x : Reference.subsets(r)) {
+                if (x.isEmpty()) {
+                    continue;
+                }
+                AttributeSet closure = Reference.closure(x, fds);
+                all.add(new FunctionalDependency(x, closure));
+                if (!closure.equals(x)) {
+                    nontrivial.add(new FunctionalDependency(x, closure));
+                }
+            }
+            List<FunctionalDependency> streamed = fds.closureStream(r, false).collect(Collectors.toList());
+            assertEquals(all.size(), streamed.size());
+            assertEquals(all, new HashSet<>(streamed));
+            assertEquals(nontrivial, fds.closureStream(r).collect(Collectors.toSet()));
+        }
+    }
+
+    @Test
+    void smallerLeftHandSidesComeFirst() {
+        AttributeSet r = Reference.set(dictionary, "A,B,C,D");
+        FunctionalDependencySet fds = Reference.fds(dictionary, "A->B;B,C->D");
+        int size = 0;
+        for (FunctionalDependency fd : fds.closureStream(r, false).collect(Collectors.toList())) {
+            assertTrue(fd.lhs.size() >= size);
+            size = fd.lhs.size();
+        }
+        assertEquals(4, size);
+    }
+
+    @Test
+    void streamIsLazy() {
+        AttributeSet r = Reference.setOf(dictionary, Reference.attributes(dictionary, "A", 40));
+        FunctionalDependencySet fds = Reference.fds(dictionary, "A0->A1");
+        // 2^40 subsets, only the first few are ever closed
+        assertEquals(3, fds.closureStream(r, false).limit(3).count());
+        assertEquals(Reference.set(dictionary, "A0,A1"), fds.closureStream(r).findFirst().get().rhs);
+    }
+
+    @Test
+    void exhaustedIteratorThrows() {
+        Iterator<FunctionalDependency> it = new DependencyClosureIterator(Reference.fds(dictionary, "A->B"),
+                Reference.set(dictionary, "A,B"));
+        assertTrue(it.hasNext());
+        assertEquals(Reference.set(dictionary, "A"), it.next().lhs);
+        assertFalse(it.hasNext());
+        assertThrows(NoSuchElementException.class, it::next);
+    }
+}
@@ -0,0 +1,66 @@
+package db.relational;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DependencyProjectorTest {
+    private final AttributeDictionary dictionary = new AttributeDictionary();
+
+    @Test
+    void projectionIsEquivalentToTheSubsetClosures() {
+        Random random = new Random(15);
+        for (int round = 0; round < 300; round++) {
+            List<Attribute> attrs = Reference.attributes(dictionary, "A", 3 + random.nextInt(6));
+            FunctionalDependencySet fds = Reference.randomFds(random, dictionary, attrs, random.nextInt(10), 3, 2);
+            AttributeSet target = Reference.randomSubset(random, dictionary, attrs);
+            List<FunctionalDependency> expected = Reference.projection(target, fds);
+            for (boolean parallel : new boolean[]{false, true}) {
+                FunctionalDependencySet projected = fds.project(target, parallel);
+                for (FunctionalDependency fd : projected) {
+                    assertTrue(fd.within(target), fd + " leaves " + target);
+                }
+                assertTrue(Reference.equivalent(expected, projected), "projection onto " + target + " of " + fds);
+            }
+        }
+    }
+
+    @Test
+    void dependenciesThroughDroppedAttributesAreKept() {
+        FunctionalDependencySet fds = Reference.fds(dictionary, "A->B;B->C;C,D->E");
+        FunctionalDependencySet projected = fds.project(Reference.set(dictionary, "A,C,D,E"));
+        assertTrue(Reference.equivalent(Reference.fds(dictionary, "A->C;A,D->E;C,D->E"), projected));
+    }
+
+    @Test
+    void projectionOntoNothingIsEmpty() {
+        FunctionalDependencySet fds = Reference.fds(dictionary, "A->B");
+        assertTrue(fds.project(Reference.set(dictionary, "")).isEmpty());
+    }
+
+    @Test
+    void coalescedDependenciesAreProjectedThroughTheBasis() {
+        FunctionalDependencySet fds = Reference.fds(dictionary, "A->>B,C;D->C");
+        DependencyBasis basis = fds.dependencyBasis(Reference.set(dictionary, "A,B,C,D"));
+        FunctionalDependencySet projected = new DependencyProjector(fds, basis, Reference.set(dictionary, "A,C")).project();
+        assertTrue(Reference.equivalent(Reference.fds(dictionary, "A->C"), projected));
+        assertTrue(fds.functional().project(Reference.set(dictionary, "A,C")).isEmpty());
+    }
+
+    @Test
+    void relationFragmentsCarryTheProjection() {
+        AttributeSet r = Reference.set(dictionary, "A,B,C,D");
+        Relation relation = new Relation(r, Reference.fds(dictionary, "A->B;B->C;C->D"));
+        Relation rest = Relation.subtract(relation, Reference.set(dictionary, "B"));
+        assertEquals(Reference.set(dictionary, "A,C,D"), rest.attributes);
+        assertTrue(Reference.equivalent(Reference.fds(dictionary, "A->C;C->D"), rest.functionalDependencies));
+        Relation common = Relation.intersect(relation, new Relation(Reference.set(dictionary, "A,D"), new FunctionalDependencySet()));
+        assertTrue(Reference.equivalent(Reference.fds(dictionary, "A->D"), common.functionalDependencies));
+        for (FunctionalDependency fd : common.functionalDependencies) {
+            assertTrue(fd.within(common.attributes));
+        }
+    }
+}
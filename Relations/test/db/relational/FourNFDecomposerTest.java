@@ -0,0 +1,156 @@
+package db.relational;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FourNFDecomposerTest {
+    private final AttributeDictionary dictionary = new AttributeDictionary();
+
+    private FunctionalDependency fd(String fd) {
+        return FunctionalDependency.fromString(fd, ",", "->", dictionary);
+    }
+
+    private java.util.Set<AttributeSet> sets(String... sets) {
+        java.util.Set<AttributeSet> result = new HashSet<>();
+        for (String set : sets) {
+            result.add(Reference.set(dictionary, set));
+        }
+        return result;
+    }
+
+    private static java.util.Set<AttributeSet> attributes(Iterable<Relation> relations) {
+        java.util.Set<AttributeSet> attrs = new HashSet<>();
+        for (Relation r : relations) {
+            attrs.add(r.attributes);
+        }
+        return attrs;
+    }
+
+    @Test
+    void functionalClosuresMatchTheFixpoint() {
+        Random random = new Random(19);
+        for (int round = 0; round < 200; round++) {
+            List<Attribute> attrs = Reference.attributes(dictionary, "A", 2 + random.nextInt(7));
+            FunctionalDependencySet fds = Reference.randomFds(random, dictionary, attrs, random.nextInt(8), 2, 2);
+            DependencyBasis basis = fds.dependencyBasis(Reference.setOf(dictionary, attrs));
+            for (int i = 0; i < 10; i++) {
+                AttributeSet x = Reference.randomSubset(random, dictionary, attrs);
+                AttributeSet closure = Reference.closure(x, fds);
+                assertEquals(closure, basis.closure(x));
+                // without multivalued dependencies every derived attribute is a block
+                List<AttributeSet> blocks = basis.basis(x);
+                for (AttributeSet block : blocks) {
+                    assertTrue(block.size() == 1 || block.disjoint(closure));
+                }
+            }
+        }
+    }
+
+    @Test
+    void basisOfAMultivaluedDependency() {
+        FunctionalDependencySet fds = Reference.fds(dictionary, "A->>B");
+        DependencyBasis basis = fds.dependencyBasis(Reference.set(dictionary, "A,B,C"));
+        assertEquals(sets("B", "C"), new HashSet<>(basis.basis(Reference.set(dictionary, "A"))));
+        assertTrue(basis.implies(fd("A->>C")));
+        assertTrue(basis.implies(fd("A->>B,C")));
+        assertFalse(basis.implies(fd("A->B")));
+        assertFalse(basis.implies(fd("B->>A")));
+    }
+
+    @Test
+    void coalescence() {
+        // A ->> B,C and D -> C with D outside B,C give A -> C
+        FunctionalDependencySet fds = Reference.fds(dictionary, "A->>B,C;D->C");
+        DependencyBasis basis = fds.dependencyBasis(Reference.set(dictionary, "A,B,C,D"));
+        assertEquals(Reference.set(dictionary, "A,C"), basis.closure(Reference.set(dictionary, "A")));
+        assertTrue(basis.implies(fd("A->C")));
+        assertFalse(basis.implies(fd("A->B")));
+        assertTrue(basis.implies(fd("A->>B")));
+    }
+
+    @Test
+    void courseTeacherBook() {
+        // a course's teachers and books are independent of each other
+        Relation r = new Relation(Reference.set(dictionary, "C,T,B"), Reference.fds(dictionary, "C->>T"));
+        assertFalse(r.in4NF());
+        assertEquals(sets("C,T", "C,B"), attributes(r.FourNFDecomposition()));
+        Relation split = new Relation(Reference.set(dictionary, "C,T"), Reference.fds(dictionary, "C->>T"));
+        assertTrue(split.in4NF());
+    }
+
+    @Test
+    void leavesAreIn4NFAndSplitsAreLossless() {
+        Random random = new Random(20);
+        for (int round = 0; round < 150; round++) {
+            List<Attribute> attrs = Reference.attributes(dictionary, "A", 3 + random.nextInt(4));
+            FunctionalDependencySet fds = Reference.randomFds(random, dictionary, attrs, 1 + random.nextInt(5), 2, 2);
+            for (FunctionalDependency fd : fds.toList()) {
+                if (random.nextBoolean()) {
+                    fds.subtract(fd);
+                    fds.add(new FunctionalDependency(fd).multivalued(true));
+                }
+            }
+            AttributeSet universe = Reference.setOf(dictionary, attrs);
+            DependencyBasis basis = fds.dependencyBasis(universe);
+            Relation r = new Relation(universe, fds);
+            DecompositionNode tree = r.FourNFDecompositionTree();
+            assertLossless(tree, basis);
+            for (Relation leaf : tree.leaves()) {
+                assertNull(new FourNFDecomposer(leaf, true).firstViolation(leaf.attributes));
+                // the leaf's own dependencies hold on it and agree
+                for (FunctionalDependency fd : leaf.functionalDependencies) {
+                    assertTrue(fd.within(leaf.attributes), fd + " leaves " + leaf);
+                    assertTrue(holdsOn(leaf.attributes, fd, basis), fd + " does not hold on " + leaf);
+                }
+                assertTrue(leaf.in4NF(), leaf + " with " + leaf.functionalDependencies);
+                if (fds.multivalued().isEmpty()) {
+                    assertTrue(BCNFDecomposerTest.inBCNF(leaf.attributes, fds));
+                }
+            }
+        }
+    }
+
+    /**
+     * whether fd holds on the projection onto attributes, a multivalued
+     * one when every block of the basis of its left hand side cut down to
+     * attributes is inside its right hand side or outside it
+     */
+    private static boolean holdsOn(AttributeSet attributes, FunctionalDependency fd, DependencyBasis basis) {
+        if (!fd.multivalued) {
+            return basis.implies(fd);
+        }
+        for (AttributeSet block : basis.basis(fd.lhs)) {
+            block.retain(attributes);
+            if (!block.subsetOf(fd.rhs) && !block.disjoint(fd.rhs)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * every split of R into R1 and R2 is on a dependency
+     * R1 n R2 ->> R1 - R2 that holds in R: every block of the basis of
+     * R1 n R2, cut down to R, is inside R1 - R2 or outside it
+     */
+    private static void assertLossless(DecompositionNode node, DependencyBasis basis) {
+        if (node.isLeaf()) {
+            return;
+        }
+        AttributeSet left = node.left.relation.attributes;
+        AttributeSet right = node.right.relation.attributes;
+        assertEquals(node.relation.attributes, AttributeSet.union(left, right));
+        AttributeSet y = AttributeSet.subtract(left, right);
+        for (AttributeSet block : basis.basis(AttributeSet.intersect(left, right))) {
+            AttributeSet inside = AttributeSet.intersect(block, node.relation.attributes);
+            assertTrue(inside.subsetOf(y) || inside.disjoint(y), node.violation.toString());
+        }
+        assertLossless(node.left, basis);
+        assertLossless(node.right, basis);
+    }
+}
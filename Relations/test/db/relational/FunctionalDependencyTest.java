@@ -0,0 +1,126 @@
+package db.relational;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FunctionalDependencyTest {
+    private final AttributeDictionary dictionary = new AttributeDictionary();
+    private final List<Attribute> attrs = Reference.attributes(dictionary, "A", 200);
+
+    /**
+     * the Zobrist hash of ids from scratch
+     */
+    private static long zobrist(java.util.Set<Integer> ids) {
+        long hash = 0;
+        for (int id : ids) {
+            hash ^= AttributeSet.key(id);
+        }
+        return hash;
+    }
+
+    private AttributeSet set(java.util.Set<Integer> ids) {
+        AttributeSet set = new AttributeSet(dictionary);
+        for (int id : ids) {
+            set.addId(id);
+        }
+        return set;
+    }
+
+    @Test
+    void setHashesFollowEveryChange() {
+        Random random = new Random(27);
+        for (int round = 0; round < 300; round++) {
+            int span = round % 2 == 0 ? 60 : 200;
+            AttributeSet set = new AttributeSet(dictionary);
+            TreeSet<Integer> model = new TreeSet<>();
+            for (int step = 0; step < 30; step++) {
+                TreeSet<Integer> other = new TreeSet<>();
+                for (int i = random.nextInt(6); i > 0; i--) {
+                    other.add(random.nextInt(span));
+                }
+                switch (random.nextInt(5)) {
+                    case 0:
+                        set.union(set(other));
+                        model.addAll(other);
+                        break;
+                    case 1:
+                        set.subtract(set(other));
+                        model.removeAll(other);
+                        break;
+                    case 2:
+                        set.retain(set(other));
+                        model.retainAll(other);
+                        break;
+                    case 3:
+                        for (int id : other) {
+                            set.subtract(attrs.get(id));
+                            model.remove(id);
+                        }
+                        break;
+                    default:
+                        for (int id : other) {
+                            set.add(attrs.get(id));
+                            model.add(id);
+                        }
+                }
+                assertEquals(model.size(), set.size());
+                assertEquals(zobrist(model), set.zobrist());
+                AttributeSet fresh = set(model);
+                assertEquals(fresh, set);
+                assertEquals(fresh.hashCode(), set.hashCode());
+                assertEquals(set.hashCode(), PersistentAttributeSet.of(set).hashCode());
+            }
+        }
+    }
+
+    @Test
+    void dependencyHashesFollowTheirSides() {
+        Random random = new Random(28);
+        for (int round = 0; round < 1000; round++) {
+            AttributeSet lhs = Reference.randomSubset(random, dictionary, attrs.subList(0, 70));
+            AttributeSet rhs = Reference.randomSubset(random, dictionary, attrs.subList(0, 70));
+            FunctionalDependency fd = new FunctionalDependency(lhs, rhs);
+            // the sides are changed in place after the dependency is built
+            Attribute attr = attrs.get(random.nextInt(70));
+            if (random.nextBoolean()) {
+                fd.lhs.add(attr);
+            } else {
+                fd.rhs.subtract(attr);
+            }
+            FunctionalDependency same = new FunctionalDependency(new AttributeSet(fd.lhs), new AttributeSet(fd.rhs));
+            assertEquals(same, fd);
+            assertEquals(same.hashCode(), fd.hashCode());
+            FunctionalDependency mvd = new FunctionalDependency(fd.lhs, fd.rhs).multivalued(true);
+            assertNotEquals(fd, mvd);
+            assertNotEquals(fd.hashCode(), mvd.hashCode());
+            assertEquals(PersistentDependency.of(fd), PersistentDependency.of(same));
+        }
+    }
+
+    @Test
+    void dependencySetsFindTheirMembers() {
+        Random random = new Random(29);
+        for (int round = 0; round < 100; round++) {
+            FunctionalDependencySet fds = Reference.randomFds(random, dictionary, attrs.subList(0, 8), 20, 3, 3);
+            FunctionalDependencySet before = new FunctionalDependencySet(fds);
+            FunctionalDependencySet cover = fds.canonicalCover();
+            // the cover leaves the dependencies alone, so every one is
+            // still found under its hash
+            assertEquals(before, fds);
+            for (FunctionalDependency fd : fds) {
+                assertTrue(fds.contains(new FunctionalDependency(new AttributeSet(fd.lhs), new AttributeSet(fd.rhs))));
+            }
+            java.util.Set<FunctionalDependency> members = new HashSet<>(cover.view());
+            for (FunctionalDependency fd : new ArrayList<>(members)) {
+                assertTrue(members.contains(new FunctionalDependency(new AttributeSet(fd.lhs), new AttributeSet(fd.rhs))));
+            }
+        }
+    }
+}
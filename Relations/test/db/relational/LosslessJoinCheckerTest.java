@@ -0,0 +1,116 @@
+package db.relational;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LosslessJoinCheckerTest {
+    private final AttributeDictionary dictionary = new AttributeDictionary();
+
+    private List<AttributeSet> fragments(String... fragments) {
+        List<AttributeSet> sets = new ArrayList<>();
+        for (String fragment : fragments) {
+            sets.add(Reference.set(dictionary, fragment));
+        }
+        return sets;
+    }
+
+    private boolean lossless(String attrs, String fds, String... fragments) {
+        return new LosslessJoinChecker(Reference.set(dictionary, attrs), Reference.fds(dictionary, fds),
+                fragments(fragments)).isLossless();
+    }
+
+    /**
+     * the textbook chase: compare every pair of rows for every dependency
+     * and rename symbols until nothing changes, 0 is the distinguished one
+     */
+    static boolean chase(AttributeSet attrs, Iterable<FunctionalDependency> fds, List<AttributeSet> fragments) {
+        int[] ids = attrs.ids();
+        int[][] rows = new int[fragments.size()][ids.length];
+        for (int i = 0; i < rows.length; i++) {
+            for (int c = 0; c < ids.length; c++) {
+                rows[i][c] = fragments.get(i).containsId(ids[c]) ? 0 : 1 + i * ids.length + c;
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (FunctionalDependency fd : fds) {
+                if (fd.multivalued || !fd.within(attrs)) {
+                    continue;
+                }
+                for (int[] r1 : rows) {
+                    for (int[] r2 : rows) {
+                        boolean agree = true;
+                        for (int c = 0; c < ids.length && agree; c++) {
+                            agree = !fd.lhs.containsId(ids[c]) || r1[c] == r2[c];
+                        }
+                        for (int c = 0; c < ids.length && agree; c++) {
+                            if (fd.rhs.containsId(ids[c]) && r1[c] != r2[c]) {
+                                int from = Math.max(r1[c], r2[c]);
+                                int to = Math.min(r1[c], r2[c]);
+                                for (int[] row : rows) {
+                                    if (row[c] == from) {
+                                        row[c] = to;
+                                    }
+                                }
+                                changed = true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        for (int[] row : rows) {
+            boolean distinguished = true;
+            for (int symbol : row) {
+                distinguished &= symbol == 0;
+            }
+            if (distinguished) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Test
+    void knownSplits() {
+        assertTrue(lossless("A,B,C", "A->B", "A,B", "A,C"));
+        assertFalse(lossless("A,B,C", "A->B", "A,B", "B,C"));
+        assertFalse(lossless("A,B,C", "", "A,B", "B,C"));
+        assertTrue(lossless("A,B,C", "", "A,B,C", "B,C"));
+        assertTrue(lossless("A,B,C,D", "A->B;B->C;C->D", "A,B", "B,C", "C,D"));
+        assertFalse(lossless("A,B,C,D", "A->B;C->D", "A,B", "C,D"));
+        // Ullman's five-way example, lossless only after several rounds
+        assertTrue(lossless("A,B,C,D,E", "A->C;B->C;C->D;D,E->C;C,E->A",
+                "A,D", "A,B", "B,E", "C,D,E", "A,E"));
+        assertFalse(lossless("A,B,C,D,E", "A->C;B->C;C->D;D,E->C",
+                "A,D", "A,B", "B,E", "C,D,E", "A,E"));
+    }
+
+    @Test
+    void chaseMatchesThePairwiseChase() {
+        Random random = new Random(18);
+        for (int round = 0; round < 500; round++) {
+            List<Attribute> attrs = Reference.attributes(dictionary, "A", 2 + random.nextInt(7));
+            FunctionalDependencySet fds = Reference.randomFds(random, dictionary, attrs, random.nextInt(8), 2, 2);
+            AttributeSet r = Reference.setOf(dictionary, attrs);
+            List<AttributeSet> fragments = new ArrayList<>();
+            AttributeSet covered = new AttributeSet(dictionary);
+            int count = 1 + random.nextInt(5);
+            while (fragments.size() < count || !covered.equals(r)) {
+                AttributeSet fragment = Reference.randomSubset(random, dictionary, attrs);
+                if (!fragment.isEmpty()) {
+                    fragments.add(fragment);
+                    covered.union(fragment);
+                }
+            }
+            assertEquals(chase(r, fds, fragments), new LosslessJoinChecker(r, fds, fragments).isLossless(),
+                    fragments + " under " + fds);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package db.relational;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MinimumKeyFinderTest {
+    private final AttributeDictionary dictionary = new AttributeDictionary();
+
+    @Test
+    void keyHasTheSizeOfTheSmallestCandidateKey() {
+        Random random = new Random(33);
+        for (int round = 0; round < 300; round++) {
+            List<Attribute> attrs = Reference.attributes(dictionary, "A", 2 + random.nextInt(9));
+            AttributeSet r = Reference.setOf(dictionary, attrs);
+            FunctionalDependencySet fds = Reference.randomFds(random, dictionary, attrs, random.nextInt(12), 3, 2);
+            java.util.Set<AttributeSet> keys = Reference.candidateKeys(r, fds);
+            int smallest = Integer.MAX_VALUE;
+            for (AttributeSet key : keys) {
+                smallest = Math.min(smallest, key.size());
+            }
+            MinimumKeyFinder finder = new MinimumKeyFinder(r, fds);
+            AttributeSet key = finder.find();
+            assertTrue(keys.contains(key), key + " is no candidate key");
+            assertEquals(smallest, key.size());
+            assertTrue(finder.isOptimal());
+            // the core is in every key
+            for (AttributeSet k : keys) {
+                assertTrue(finder.getCore().subsetOf(k));
+            }
+        }
+    }
+
+    @Test
+    void aBudgetLongEnoughFindsTheSameSize() {
+        Random random = new Random(34);
+        for (int round = 0; round < 50; round++) {
+            List<Attribute> attrs = Reference.attributes(dictionary, "A", 4 + random.nextInt(6));
+            AttributeSet r = Reference.setOf(dictionary, attrs);
+            FunctionalDependencySet fds = Reference.randomFds(random, dictionary, attrs, random.nextInt(10), 2, 2);
+            MinimumKeyFinder finder = new MinimumKeyFinder(r, fds);
+            int size = finder.find().size();
+            AttributeSet key = finder.find(1, TimeUnit.DAYS);
+            assertTrue(finder.isOptimal());
+            assertEquals(size, key.size());
+            // a budget that is no budget at all
+            assertEquals(size, finder.find(Long.MAX_VALUE, TimeUnit.DAYS).size());
+        }
+    }
+
+    @Test
+    void anExpiredBudgetStillGivesASuperkey() {
+        Random random = new Random(35);
+        List<Attribute> attrs = Reference.attributes(dictionary, "A", 30);
+        AttributeSet r = Reference.setOf(dictionary, attrs);
+        FunctionalDependencySet fds = Reference.randomFds(random, dictionary, attrs, 40, 3, 2);
+        AttributeSet key = new MinimumKeyFinder(r, fds).find(0, TimeUnit.NANOSECONDS);
+        assertTrue(key.subsetOf(r));
+        assertEquals(r, AttributeSet.intersect(Reference.closure(key, fds), r));
+    }
+
+    @Test
+    void relationDelegates() {
+        AttributeSet r = Reference.set(dictionary, "A,B,C,D");
+        FunctionalDependencySet fds = Reference.fds(dictionary, "A->B,C,D;B,C->A");
+        assertEquals(Reference.set(dictionary, "A"), new Relation(r, fds).minimumKey());
+    }
+}
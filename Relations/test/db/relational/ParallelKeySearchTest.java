@@ -0,0 +1,53 @@
+package db.relational;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParallelKeySearchTest {
+    private final AttributeDictionary dictionary = new AttributeDictionary();
+
+    @Test
+    void keysMatchTheSubsetSearch() {
+        Random random = new Random(9);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int round = 0; round < 200; round++) {
+                List<Attribute> attrs = Reference.attributes(dictionary, "A", 3 + random.nextInt(8));
+                AttributeSet r = Reference.setOf(dictionary, attrs);
+                FunctionalDependencySet fds = Reference.randomFds(random, dictionary, attrs, random.nextInt(12), 3, 2);
+                List<AttributeSet> keys = new ParallelKeySearch(r, fds).search(pool);
+                assertEquals(keys.size(), new HashSet<>(keys).size());
+                assertEquals(Reference.candidateKeys(r, fds), new HashSet<>(keys));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void resultDoesNotDependOnTheParallelism() {
+        Random random = new Random(10);
+        List<Attribute> attrs = Reference.attributes(dictionary, "A", 16);
+        AttributeSet r = Reference.setOf(dictionary, attrs);
+        FunctionalDependencySet fds = Reference.randomFds(random, dictionary, attrs, 14, 3, 1);
+        ForkJoinPool one = new ForkJoinPool(1);
+        ForkJoinPool many = new ForkJoinPool(8);
+        try {
+            List<AttributeSet> keys = new ParallelKeySearch(r, fds).search(one);
+            assertEquals(keys, new ParallelKeySearch(r, fds).search(many));
+            assertEquals(new HashSet<>(new CandidateKeyFinder(r, fds).findAll()), new HashSet<>(keys));
+            for (int i = 1; i < keys.size(); i++) {
+                assertTrue(ParallelKeySearch.KEY_ORDER.compare(keys.get(i - 1), keys.get(i)) < 0);
+            }
+        } finally {
+            one.shutdown();
+            many.shutdown();
+        }
+    }
+}
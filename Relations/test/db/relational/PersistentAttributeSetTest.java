@@ -0,0 +1,112 @@
+package db.relational;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentAttributeSetTest {
+    private final AttributeDictionary dictionary = new AttributeDictionary();
+    private final List<Attribute> attrs = Reference.attributes(dictionary, "A", 200);
+
+    private static void assertMatches(TreeSet<Integer> model, PersistentAttributeSet set) {
+        assertEquals(model.size(), set.size());
+        assertEquals(model.isEmpty(), set.isEmpty());
+        List<Integer> ids = new ArrayList<>();
+        for (int id = set.nextId(0); id >= 0; id = set.nextId(id + 1)) {
+            ids.add(id);
+        }
+        assertEquals(new ArrayList<>(model), ids);
+        AttributeSet mutable = set.toAttributeSet();
+        assertEquals(model.size(), mutable.size());
+        // the same hash as the mutable set, so both can be looked up alike
+        assertEquals(mutable.hashCode(), set.hashCode());
+        assertEquals(PersistentAttributeSet.of(mutable), set);
+    }
+
+    @Test
+    void everyVersionKeepsItsAttributes() {
+        Random random = new Random(19);
+        for (int round = 0; round < 200; round++) {
+            // spans below and above 64 cover one word and several
+            int span = round % 2 == 0 ? 40 : 200;
+            List<PersistentAttributeSet> versions = new ArrayList<>();
+            List<TreeSet<Integer>> models = new ArrayList<>();
+            PersistentAttributeSet set = PersistentAttributeSet.empty(dictionary);
+            TreeSet<Integer> model = new TreeSet<>();
+            for (int step = 0; step < 40; step++) {
+                versions.add(set);
+                models.add(new TreeSet<>(model));
+                Attribute attr = attrs.get(random.nextInt(span));
+                PersistentAttributeSet next;
+                if (random.nextInt(3) == 0) {
+                    next = set.without(attr);
+                    assertEquals(model.remove(attr.getId()), next != set);
+                } else {
+                    next = set.with(attr);
+                    assertEquals(model.add(attr.getId()), next != set);
+                }
+                assertEquals(model.contains(attr.getId()), next.contains(attr));
+                set = next;
+                assertMatches(model, set);
+            }
+            for (int i = 0; i < versions.size(); i++) {
+                assertMatches(models.get(i), versions.get(i));
+            }
+        }
+    }
+
+    @Test
+    void setOperationsMatchTheModel() {
+        Random random = new Random(20);
+        for (int round = 0; round < 2000; round++) {
+            int span = round % 2 == 0 ? 40 : 200;
+            TreeSet<Integer> a = new TreeSet<>();
+            TreeSet<Integer> b = new TreeSet<>();
+            PersistentAttributeSet x = PersistentAttributeSet.empty(dictionary);
+            PersistentAttributeSet y = PersistentAttributeSet.empty(dictionary);
+            for (int i = random.nextInt(10); i > 0; i--) {
+                int id = random.nextInt(span);
+                a.add(id);
+                x = x.withId(id);
+            }
+            for (int i = random.nextInt(10); i > 0; i--) {
+                int id = random.nextInt(span);
+                b.add(id);
+                y = y.withId(id);
+            }
+            TreeSet<Integer> union = new TreeSet<>(a);
+            union.addAll(b);
+            TreeSet<Integer> difference = new TreeSet<>(a);
+            difference.removeAll(b);
+
+            assertMatches(union, x.union(y));
+            assertMatches(difference, x.subtract(y));
+            assertEquals(b.containsAll(a), x.subsetOf(y));
+            assertEquals(b.containsAll(a), x.subsetOf(y.toAttributeSet()));
+            assertEquals(a.equals(b), x.equals(y));
+            // an operation that changes nothing hands back the set itself
+            if (b.containsAll(a) && !a.containsAll(b)) {
+                assertSame(y, x.union(y));
+            }
+            if (a.containsAll(b)) {
+                assertSame(x, x.union(y));
+            }
+            assertMatches(a, x);
+            assertMatches(b, y);
+        }
+    }
+
+    @Test
+    void removingTheHighestIdTrimsTheWords() {
+        PersistentAttributeSet low = PersistentAttributeSet.empty(dictionary).withId(3);
+        PersistentAttributeSet high = low.withId(150).withoutId(150);
+        assertEquals(low, high);
+        assertEquals(low.hashCode(), high.hashCode());
+        assertEquals(PersistentAttributeSet.empty(dictionary), low.withoutId(3));
+    }
+}
@@ -0,0 +1,177 @@
+package db.relational;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentDependencySetTest {
+    private final AttributeDictionary dictionary = new AttributeDictionary();
+    private final List<Attribute> attrs = Reference.attributes(dictionary, "A", 20);
+
+    private PersistentAttributeSet random(Random random, int span) {
+        PersistentAttributeSet set = PersistentAttributeSet.empty(dictionary);
+        for (int i = 1 + random.nextInt(3); i > 0; i--) {
+            set = set.withId(random.nextInt(span));
+        }
+        return set;
+    }
+
+    private PersistentDependency random(Random random) {
+        return new PersistentDependency(random(random, attrs.size()), random(random, attrs.size()),
+                random.nextInt(4) == 0);
+    }
+
+    private static void assertMatches(java.util.Set<PersistentDependency> model, PersistentDependencySet set) {
+        assertEquals(model.size(), set.size());
+        assertEquals(model.isEmpty(), set.isEmpty());
+        List<PersistentDependency> seen = new ArrayList<>();
+        for (PersistentDependency fd : set) {
+            seen.add(fd);
+        }
+        assertEquals(model.size(), seen.size());
+        assertEquals(model, new HashSet<>(seen));
+        for (PersistentDependency fd : model) {
+            assertTrue(set.contains(fd));
+        }
+    }
+
+    @Test
+    void everyVersionKeepsItsDependencies() {
+        Random random = new Random(21);
+        for (int round = 0; round < 100; round++) {
+            List<PersistentDependencySet> versions = new ArrayList<>();
+            List<java.util.Set<PersistentDependency>> models = new ArrayList<>();
+            PersistentDependencySet set = PersistentDependencySet.empty();
+            java.util.Set<PersistentDependency> model = new HashSet<>();
+            List<PersistentDependency> added = new ArrayList<>();
+            for (int step = 0; step < 150; step++) {
+                versions.add(set);
+                models.add(new HashSet<>(model));
+                PersistentDependencySet next;
+                if (!added.isEmpty() && random.nextInt(3) == 0) {
+                    PersistentDependency fd = added.get(random.nextInt(added.size()));
+                    next = set.without(fd);
+                    assertEquals(model.remove(fd), next != set);
+                    assertFalse(next.contains(fd));
+                } else {
+                    PersistentDependency fd = random(random);
+                    added.add(fd);
+                    next = set.with(fd);
+                    assertEquals(model.add(fd), next != set);
+                    assertTrue(next.contains(fd));
+                }
+                set = next;
+                assertMatches(model, set);
+            }
+            for (int i = 0; i < versions.size(); i++) {
+                assertMatches(models.get(i), versions.get(i));
+            }
+            // the same dependencies make an equal set whatever the order
+            List<PersistentDependency> shuffled = new ArrayList<>(model);
+            java.util.Collections.shuffle(shuffled, random);
+            PersistentDependencySet rebuilt = PersistentDependencySet.empty();
+            for (PersistentDependency fd : shuffled) {
+                rebuilt = rebuilt.with(fd);
+            }
+            assertEquals(set, rebuilt);
+            assertEquals(set.hashCode(), rebuilt.hashCode());
+            // and the same trie, removals leave no chain behind
+            assertEquals(rebuilt.nodeCount(), set.nodeCount());
+        }
+    }
+
+    @Test
+    void dependenciesWithTheSameHashShareACollisionNode() {
+        Random random = new Random(22);
+        Map<Integer, PersistentDependency> byHash = new HashMap<>();
+        PersistentDependency a = null;
+        PersistentDependency b = null;
+        while (a == null) {
+            PersistentDependency fd = random(random);
+            PersistentDependency other = byHash.put(fd.hashCode(), fd);
+            if (other != null && !other.equals(fd)) {
+                a = other;
+                b = fd;
+            }
+        }
+        PersistentDependency c = random(random);
+        PersistentDependencySet set = PersistentDependencySet.empty().with(a).with(c).with(b);
+        assertEquals(3, set.size());
+        assertTrue(set.contains(a));
+        assertTrue(set.contains(b));
+        assertSame(set, set.with(b));
+        PersistentDependencySet withoutA = set.without(a);
+        assertEquals(2, withoutA.size());
+        assertFalse(withoutA.contains(a));
+        assertTrue(withoutA.contains(b));
+        assertEquals(PersistentDependencySet.empty().with(c).with(b), withoutA);
+        assertEquals(PersistentDependencySet.empty().with(c).with(b).nodeCount(), withoutA.nodeCount());
+        // b sits at the bottom of a chain down to the collision node, once
+        // it is alone the whole chain collapses
+        PersistentDependencySet onlyB = set.without(a).without(c);
+        assertEquals(1, onlyB.nodeCount());
+        assertEquals(PersistentDependencySet.empty(), withoutA.without(b).without(c));
+        assertTrue(set.contains(a));
+    }
+
+    @Test
+    void closuresMatchTheFixpoint() {
+        Random random = new Random(23);
+        for (int round = 0; round < 100; round++) {
+            FunctionalDependencySet fds = Reference.randomFds(random, dictionary, attrs.subList(0, 8),
+                    random.nextInt(10), 3, 3);
+            PersistentDependencySet set = PersistentDependencySet.of(fds);
+            assertEquals(fds, set.toFunctionalDependencySet());
+            for (int i = 0; i < 10; i++) {
+                AttributeSet x = Reference.randomSubset(random, dictionary, attrs.subList(0, 8));
+                AttributeSet before = new AttributeSet(x);
+                assertEquals(Reference.closure(x, fds), set.closure(x));
+                assertEquals(before, x);
+                assertEquals(PersistentAttributeSet.of(Reference.closure(x, fds)),
+                        set.closure(PersistentAttributeSet.of(x)));
+            }
+        }
+    }
+
+    @Test
+    void oneSetIsReadFromManyThreads() throws Exception {
+        Random random = new Random(24);
+        FunctionalDependencySet fds = Reference.randomFds(random, dictionary, attrs, 30, 3, 3);
+        PersistentDependencySet set = PersistentDependencySet.of(fds);
+        List<AttributeSet> inputs = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            inputs.add(Reference.randomSubset(random, dictionary, attrs));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<AttributeSet>>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(pool.submit(() -> {
+                    List<AttributeSet> closures = new ArrayList<>();
+                    for (AttributeSet x : inputs) {
+                        closures.add(set.closure(x));
+                    }
+                    return closures;
+                }));
+            }
+            for (Future<List<AttributeSet>> result : results) {
+                List<AttributeSet> closures = result.get();
+                for (int i = 0; i < inputs.size(); i++) {
+                    assertEquals(Reference.closure(inputs.get(i), fds), closures.get(i));
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
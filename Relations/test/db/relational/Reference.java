@@ -0,0 +1,188 @@
+package db.relational;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * small schemas for the tests and the brute force answers the baseline
+ * computed for them: closures by applying dependencies until nothing
+ * changes, keys by checking every subset
+ */
+final class Reference {
+    private Reference() {
+    }
+
+    /**
+     * attribute set from "A,B,C" in dictionary
+     */
+    static AttributeSet set(AttributeDictionary dictionary, String attrs) {
+        AttributeSet set = new AttributeSet(dictionary);
+        if (!attrs.trim().isEmpty()) {
+            set.union(AttributeSet.fromString(attrs, ",", dictionary));
+        }
+        return set;
+    }
+
+    /**
+     * dependency set from "A->B;B,C->D" in dictionary, ->> is multivalued
+     */
+    static FunctionalDependencySet fds(AttributeDictionary dictionary, String fds) {
+        FunctionalDependencySet set = new FunctionalDependencySet();
+        for (String fd : fds.split(";")) {
+            if (!fd.trim().isEmpty()) {
+                set.add(FunctionalDependency.fromString(fd.trim(), ",", "->", dictionary));
+            }
+        }
+        return set;
+    }
+
+    /**
+     * n attributes named prefix0, prefix1, ... in dictionary
+     */
+    static List<Attribute> attributes(AttributeDictionary dictionary, String prefix, int n) {
+        List<Attribute> attrs = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            attrs.add(dictionary.intern(prefix + i));
+        }
+        return attrs;
+    }
+
+    static AttributeSet setOf(AttributeDictionary dictionary, List<Attribute> attrs) {
+        AttributeSet set = new AttributeSet(dictionary);
+        for (Attribute attr : attrs) {
+            set.add(attr);
+        }
+        return set;
+    }
+
+    /**
+     * count random dependencies over attrs with up to maxLhs attributes
+     * on the left and up to maxRhs on the right
+     */
+    static FunctionalDependencySet randomFds(Random random, AttributeDictionary dictionary, List<Attribute> attrs,
+                                             int count, int maxLhs, int maxRhs) {
+        FunctionalDependencySet fds = new FunctionalDependencySet();
+        for (int i = 0; i < count; i++) {
+            AttributeSet lhs = new AttributeSet(dictionary);
+            AttributeSet rhs = new AttributeSet(dictionary);
+            int l = 1 + random.nextInt(maxLhs);
+            for (int j = 0; j < l; j++) {
+                lhs.add(attrs.get(random.nextInt(attrs.size())));
+            }
+            int r = 1 + random.nextInt(maxRhs);
+            for (int j = 0; j < r; j++) {
+                rhs.add(attrs.get(random.nextInt(attrs.size())));
+            }
+            fds.add(new FunctionalDependency(lhs, rhs));
+        }
+        return fds;
+    }
+
+    static AttributeSet randomSubset(Random random, AttributeDictionary dictionary, List<Attribute> attrs) {
+        AttributeSet set = new AttributeSet(dictionary);
+        for (Attribute attr : attrs) {
+            if (random.nextBoolean()) {
+                set.add(attr);
+            }
+        }
+        return set;
+    }
+
+    /**
+     * closure by firing the functional dependencies until a fixpoint
+     */
+    static AttributeSet closure(AttributeSet attrs, Iterable<FunctionalDependency> fds) {
+        AttributeSet closure = new AttributeSet(attrs);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (FunctionalDependency fd : fds) {
+                if (!fd.multivalued && fd.lhs.subsetOf(closure) && closure.union(fd.rhs) > 0) {
+                    changed = true;
+                }
+            }
+        }
+        return closure;
+    }
+
+    static boolean implies(Iterable<FunctionalDependency> fds, FunctionalDependency fd) {
+        return fd.rhs.subsetOf(closure(fd.lhs, fds));
+    }
+
+    /**
+     * whether f and g have the same closure
+     */
+    static boolean equivalent(Iterable<FunctionalDependency> f, Iterable<FunctionalDependency> g) {
+        for (FunctionalDependency fd : f) {
+            if (!fd.multivalued && !implies(g, fd)) {
+                return false;
+            }
+        }
+        for (FunctionalDependency fd : g) {
+            if (!fd.multivalued && !implies(f, fd)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * every subset of attrs, the empty set first
+     */
+    static List<AttributeSet> subsets(AttributeSet attrs) {
+        List<Attribute> list = attrs.toList();
+        List<AttributeSet> subsets = new ArrayList<>();
+        for (long mask = 0; mask < (1L << list.size()); mask++) {
+            AttributeSet subset = new AttributeSet(attrs.dictionary());
+            for (int i = 0; i < list.size(); i++) {
+                if ((mask & (1L << i)) != 0) {
+                    subset.add(list.get(i));
+                }
+            }
+            subsets.add(subset);
+        }
+        return subsets;
+    }
+
+    /**
+     * candidate keys the way the baseline found them, every superkey
+     * from all subsets and then the minimal ones
+     */
+    static java.util.Set<AttributeSet> candidateKeys(AttributeSet attrs, Iterable<FunctionalDependency> fds) {
+        List<AttributeSet> superKeys = new ArrayList<>();
+        for (AttributeSet subset : subsets(attrs)) {
+            if (attrs.subsetOf(closure(subset, fds))) {
+                superKeys.add(subset);
+            }
+        }
+        java.util.Set<AttributeSet> keys = new java.util.HashSet<>();
+        for (AttributeSet key : superKeys) {
+            boolean minimal = true;
+            for (AttributeSet other : superKeys) {
+                if (other.strictSubsetOf(key)) {
+                    minimal = false;
+                    break;
+                }
+            }
+            if (minimal) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * the dependencies X -> (X+ n attrs) for every subset X of attrs,
+     * a cover of the projection of fds onto attrs
+     */
+    static List<FunctionalDependency> projection(AttributeSet attrs, Iterable<FunctionalDependency> fds) {
+        List<FunctionalDependency> projection = new ArrayList<>();
+        for (AttributeSet subset : subsets(attrs)) {
+            AttributeSet closure = closure(subset, fds);
+            closure.retain(attrs);
+            projection.add(new FunctionalDependency(subset, closure));
+        }
+        return projection;
+    }
+}
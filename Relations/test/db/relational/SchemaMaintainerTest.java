@@ -0,0 +1,127 @@
+package db.relational;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaMaintainerTest {
+    private final AttributeDictionary dictionary = new AttributeDictionary();
+
+    @Test
+    void editsMatchARecomputation() {
+        Random random = new Random(12);
+        for (int round = 0; round < 30; round++) {
+            List<Attribute> attrs = Reference.attributes(dictionary, "A", 3 + random.nextInt(5));
+            AttributeSet r = Reference.setOf(dictionary, attrs);
+            List<FunctionalDependency> live = new ArrayList<>(Reference.randomFds(random, dictionary, attrs, 4, 2, 2).toList());
+            SchemaMaintainer maintainer = new SchemaMaintainer(r, new FunctionalDependencySet(live));
+            for (int step = 0; step < 30; step++) {
+                java.util.Set<AttributeSet> keysBefore = new HashSet<>(maintainer.getCandidateKeys().view());
+                FunctionalDependencySet fdsBefore = new FunctionalDependencySet(live);
+                SchemaChange change;
+                if (live.isEmpty() || random.nextBoolean()) {
+                    FunctionalDependency fd = Reference.randomFds(random, dictionary, attrs, 1, 2, 2).get();
+                    change = maintainer.add(fd);
+                    if (!live.contains(fd)) {
+                        live.add(fd);
+                    }
+                } else {
+                    change = maintainer.remove(live.remove(random.nextInt(live.size())));
+                }
+                FunctionalDependencySet fds = new FunctionalDependencySet(live);
+
+                assertEquals(!Reference.equivalent(fdsBefore, fds), change.closureChanged);
+                assertCanonical(fds, maintainer.getCanonicalCover());
+                java.util.Set<AttributeSet> keys = Reference.candidateKeys(r, fds);
+                assertEquals(keys, maintainer.getCandidateKeys().view());
+
+                java.util.Set<AttributeSet> added = new HashSet<>(keys);
+                added.removeAll(keysBefore);
+                java.util.Set<AttributeSet> removed = new HashSet<>(keysBefore);
+                removed.removeAll(keys);
+                assertEquals(added, change.addedKeys.view());
+                assertEquals(removed, change.removedKeys.view());
+
+                assertEquals(new Relation(r, fds).BCNFViolations(), maintainer.BCNFViolations());
+                assertEquals(Reference.closure(Reference.set(dictionary, "A0"), fds),
+                        maintainer.closureOf(Reference.set(dictionary, "A0")));
+            }
+        }
+    }
+
+    /**
+     * cover is equivalent to fds, has one dependency per left hand side
+     * and no extraneous attribute
+     */
+    private static void assertCanonical(FunctionalDependencySet fds, FunctionalDependencySet cover) {
+        assertTrue(Reference.equivalent(fds, cover));
+        java.util.Set<AttributeSet> lhs = new HashSet<>();
+        for (FunctionalDependency fd : cover) {
+            assertTrue(lhs.add(fd.lhs), "two dependencies with left hand side " + fd.lhs);
+            assertFalse(fd.rhs.isEmpty());
+            for (Attribute a : fd.lhs) {
+                AttributeSet smaller = new AttributeSet(fd.lhs);
+                smaller.subtract(a);
+                assertFalse(fd.rhs.subsetOf(Reference.closure(smaller, cover)), a + " is extraneous in " + fd);
+            }
+            for (Attribute b : fd.rhs) {
+                FunctionalDependencySet rest = new FunctionalDependencySet(cover);
+                rest.subtract(fd);
+                AttributeSet rhs = new AttributeSet(fd.rhs);
+                rhs.subtract(b);
+                if (!rhs.isEmpty()) {
+                    rest.add(new FunctionalDependency(fd.lhs, rhs));
+                }
+                assertFalse(Reference.implies(rest, new FunctionalDependency(fd.lhs, b.toSet())), b + " is extraneous in " + fd);
+            }
+        }
+    }
+
+    @Test
+    void multivaluedDependenciesAreRejected() {
+        AttributeSet r = Reference.set(dictionary, "A,B,C");
+        FunctionalDependencySet fds = Reference.fds(dictionary, "A->B,C");
+        SchemaMaintainer maintainer = new SchemaMaintainer(r, fds);
+        FunctionalDependency mvd = FunctionalDependency.fromString("B->>A", ",", "->", dictionary);
+        assertTrue(mvd.multivalued);
+        assertThrows(IllegalArgumentException.class, () -> maintainer.add(mvd));
+        assertEquals(new Relation(r, fds).getCandidateKeys(), maintainer.getCandidateKeys());
+        assertEquals(1, maintainer.getCandidateKeys().size());
+
+        FunctionalDependencySet mixed = new FunctionalDependencySet(fds);
+        mixed.add(mvd);
+        assertThrows(IllegalArgumentException.class, () -> new SchemaMaintainer(r, mixed));
+    }
+
+    @Test
+    void impliedEditsChangeNothing() {
+        AttributeSet r = Reference.set(dictionary, "A,B,C");
+        SchemaMaintainer maintainer = new SchemaMaintainer(r, Reference.fds(dictionary, "A->B;B->C"));
+        FunctionalDependency ac = FunctionalDependency.fromString("A->C", ",", "->", dictionary);
+        assertTrue(maintainer.add(ac).isEmpty());
+        assertTrue(maintainer.remove(ac).isEmpty());
+        assertEquals(2, maintainer.getFunctionalDependencies().size());
+    }
+
+    @Test
+    void dependenciesOutsideTheAttributesAreRejected() {
+        AttributeSet r = Reference.set(dictionary, "A,B");
+        SchemaMaintainer maintainer = new SchemaMaintainer(r, Reference.fds(dictionary, "A->B"));
+        assertThrows(IllegalArgumentException.class,
+                () -> maintainer.add(FunctionalDependency.fromString("A->C", ",", "->", dictionary)));
+    }
+
+    @Test
+    void trivialDependenciesAreNoViolations() {
+        AttributeSet r = Reference.set(dictionary, "A,B,C");
+        FunctionalDependencySet fds = Reference.fds(dictionary, "A,B->A;C->B");
+        FunctionalDependencySet expected = Reference.fds(dictionary, "C->B");
+        assertEquals(expected, new Relation(r, fds).BCNFViolations());
+        assertEquals(expected, new SchemaMaintainer(r, fds).BCNFViolations());
+    }
+}
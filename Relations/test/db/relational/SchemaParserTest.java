@@ -0,0 +1,121 @@
+package db.relational;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaParserTest {
+    private final AttributeDictionary dictionary = new AttributeDictionary();
+
+    @TempDir
+    Path dir;
+
+    private Path file(String content) throws IOException {
+        Path file = dir.resolve("schema.txt");
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    void parsesHeaderAndDependencies() throws IOException {
+        SchemaParser parser = new SchemaParser(",", "->", dictionary);
+        Relation r = parser.parse(file("\n  R(A, B, C, first name)\nA,B->C\r\n\nC->>first name\nfirst name ->A"));
+        assertTrue(parser.hasHeader());
+        assertEquals("R", r.name);
+        assertEquals(Reference.set(dictionary, "A,B,C,first_name"), r.attributes);
+        FunctionalDependencySet expected = Reference.fds(dictionary, "A,B->C;C->>first_name;first_name->A");
+        assertEquals(expected, r.functionalDependencies);
+        assertTrue(parser.getErrors().isEmpty());
+    }
+
+    @Test
+    void errorsHaveLineAndColumn() throws IOException {
+        SchemaParser parser = new SchemaParser(",", "->", dictionary);
+        Relation r = parser.parse(file("R(A,B,C)\nA,B->C\nA B\n\nA,,B->C\n  B->  \nC->A"));
+        List<SchemaParser.Error> errors = parser.getErrors();
+        assertEquals(3, errors.size());
+        assertEquals(3, parser.getErrorCount());
+
+        assertEquals(3, errors.get(0).line);
+        assertEquals(4, errors.get(0).column);
+        assertEquals("expected '->'", errors.get(0).message);
+
+        assertEquals(5, errors.get(1).line);
+        assertEquals(3, errors.get(1).column);
+        assertEquals("empty attribute name", errors.get(1).message);
+
+        assertEquals(6, errors.get(2).line);
+        assertEquals(6, errors.get(2).column);
+        assertEquals("expected an attribute", errors.get(2).message);
+        assertEquals("6:6: expected an attribute", errors.get(2).toString());
+
+        // the good lines around the bad ones are kept
+        assertEquals(Reference.fds(dictionary, "A,B->C;C->A"), r.functionalDependencies);
+    }
+
+    @Test
+    void malformedHeader() throws IOException {
+        SchemaParser parser = new SchemaParser(",", "->", dictionary);
+        Relation r = parser.parse(file("R(A,B\nA->B"));
+        assertFalse(parser.hasHeader());
+        assertEquals(1, parser.getErrors().get(0).line);
+        assertEquals(6, parser.getErrors().get(0).column);
+        assertEquals("expected ')'", parser.getErrors().get(0).message);
+        // without a header the attributes come from the dependencies
+        assertEquals(Reference.set(dictionary, "A,B"), r.attributes);
+    }
+
+    @Test
+    void emptyDelimiterMakesEveryCharacterAnAttribute() throws IOException {
+        SchemaParser parser = new SchemaParser("", "->", dictionary);
+        Relation r = parser.parse(file("R(A,B,C)\nAB->C\nC ->>A\nÄ€->𝒜"));
+        assertEquals(Reference.fds(dictionary, "A,B->C;C->>A;Ä,€->𝒜"), r.functionalDependencies);
+        assertTrue(parser.getErrors().isEmpty());
+    }
+
+    @Test
+    void aSecondArrowIsAnError() throws IOException {
+        SchemaParser parser = new SchemaParser(",", "->", dictionary);
+        Relation r = parser.parse(file("R(A,B,C)\nA->B->C\nA->>B->>C\nB->C"));
+        List<SchemaParser.Error> errors = parser.getErrors();
+        assertEquals(2, errors.size());
+        assertEquals("2:5: unexpected second '->'", errors.get(0).toString());
+        assertEquals("3:6: unexpected second '->'", errors.get(1).toString());
+        assertEquals(Reference.fds(dictionary, "B->C"), r.functionalDependencies);
+    }
+
+    @Test
+    void linesLongerThanTheBufferAreParsed() throws IOException {
+        StringBuilder lhs = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            lhs.append(i == 0 ? "" : ",").append("A").append(i);
+        }
+        SchemaParser parser = new SchemaParser(",", "->", dictionary);
+        Relation r = parser.parse(file("R(A0)\n" + lhs + "->A0\nA1->"));
+        assertEquals(1, r.functionalDependencies.size());
+        assertEquals(20000, r.functionalDependencies.get().lhs.size());
+        assertEquals(3, parser.getErrors().get(0).line);
+    }
+
+    @Test
+    void fromFileHandsTheErrorsToTheCaller() throws IOException {
+        Path file = file("R(A,B)\nA->B\nB");
+        List<SchemaParser.Error> errors = new ArrayList<>();
+        Relation r = Relation.fromFile(file.toString(), ",", "->", dictionary, errors);
+        assertNotNull(r);
+        assertEquals(1, errors.size());
+        assertEquals(3, errors.get(0).line);
+
+        errors.clear();
+        assertNull(Relation.fromFile(file("R A,B").toString(), ",", "->", dictionary, errors));
+        assertEquals("expected '('", errors.get(0).message);
+    }
+}
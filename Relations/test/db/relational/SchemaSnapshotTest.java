@@ -0,0 +1,160 @@
+package db.relational;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaSnapshotTest {
+    private static final String FDS = "A0->A1;A1,A2->A3;A3->>A4;A65->A0;A4,A69->A65";
+
+    @TempDir
+    Path dir;
+
+    private static Relation relation(AttributeDictionary dictionary) {
+        List<Attribute> attrs = Reference.attributes(dictionary, "A", 70);
+        return new Relation(Reference.setOf(dictionary, attrs), Reference.fds(dictionary, FDS)).name("R");
+    }
+
+    private SchemaSnapshot roundTrip(AttributeDictionary from, AttributeDictionary to) throws IOException {
+        Path file = dir.resolve("schema.snapshot");
+        new SchemaSnapshot(relation(from)).includeCanonicalCover().includeCandidateKeys().includeClosureIndex()
+                .write(file);
+        return SchemaSnapshot.read(file, to);
+    }
+
+    private static void assertSnapshot(SchemaSnapshot read, AttributeDictionary dictionary) {
+        Relation expected = relation(dictionary);
+        Relation r = read.relation;
+        assertEquals("R", r.name);
+        assertEquals(expected.attributes, r.attributes);
+        assertSame(dictionary, r.attributes.dictionary());
+        assertEquals(expected.functionalDependencies, r.functionalDependencies);
+        assertEquals(expected.functionalDependencies.canonicalCover(), read.canonicalCover);
+        assertEquals(new HashSet<>(expected.getCandidateKeys().view()), new HashSet<>(read.candidateKeys));
+
+        Random random = new Random(21);
+        List<Attribute> attrs = expected.attributes.toList();
+        for (int i = 0; i < 200; i++) {
+            AttributeSet x = Reference.randomSubset(random, dictionary, attrs);
+            assertEquals(Reference.closure(x, expected.functionalDependencies), r.functionalDependencies.closureOf(x));
+        }
+    }
+
+    @Test
+    void roundTripWithTheSameIds() throws IOException {
+        SchemaSnapshot read = roundTrip(new AttributeDictionary(), new AttributeDictionary());
+        assertSnapshot(read, read.relation.attributes.dictionary());
+    }
+
+    @Test
+    void roundTripIntoADictionaryWithOtherIds() throws IOException {
+        AttributeDictionary to = new AttributeDictionary();
+        // other names first and the relation's names backwards, so no id matches
+        Reference.attributes(to, "X", 100);
+        for (int i = 69; i >= 0; i--) {
+            to.intern("A" + i);
+        }
+        SchemaSnapshot read = roundTrip(new AttributeDictionary(), to);
+        assertNotEquals(0, to.get("A0").getId());
+        assertSnapshot(read, to);
+    }
+
+    @Test
+    void closureIndexDoesNotShareTheDependencies() throws IOException {
+        AttributeDictionary dictionary = new AttributeDictionary();
+        SchemaSnapshot read = roundTrip(new AttributeDictionary(), dictionary);
+        ClosureEngine engine = read.relation.functionalDependencies.closureEngine();
+        for (FunctionalDependency fd : read.relation.functionalDependencies) {
+            fd.rhs.union(Reference.set(dictionary, "A50"));
+        }
+        assertEquals(Reference.set(dictionary, "A0,A1"), engine.closure(Reference.set(dictionary, "A0")));
+    }
+
+    @Test
+    void nothingDerivedIsReadWhenNothingWasWritten() throws IOException {
+        Path file = dir.resolve("plain.snapshot");
+        AttributeDictionary dictionary = new AttributeDictionary();
+        new SchemaSnapshot(relation(dictionary)).write(file);
+        SchemaSnapshot read = SchemaSnapshot.read(file, dictionary);
+        assertNull(read.canonicalCover);
+        assertNull(read.candidateKeys);
+        assertEquals(relation(dictionary).functionalDependencies, read.relation.functionalDependencies);
+    }
+
+    @Test
+    void fromSnapshotCarriesTheStoredCoverAndKeys() throws IOException {
+        Path file = dir.resolve("schema.snapshot");
+        AttributeDictionary dictionary = AttributeDictionary.global();
+        Relation relation = new Relation(Reference.set(dictionary, "S0,S1,S2,S3"), Reference.fds(dictionary, "S0->S1;S1->S2"));
+        SchemaSnapshot snapshot = new SchemaSnapshot(relation).includeCanonicalCover().includeCandidateKeys();
+        // stored results that differ from a recomputation show which one is used
+        snapshot.canonicalCover = Reference.fds(dictionary, "S0->S1;S1->S2;S0->S2");
+        snapshot.candidateKeys = new ArrayList<>(Collections.singletonList(Reference.set(dictionary, "S3")));
+        snapshot.write(file);
+
+        Relation read = Relation.fromSnapshot(file.toString());
+        assertEquals(snapshot.canonicalCover, read.functionalDependencies.canonicalCover());
+        assertEquals(new HashSet<>(snapshot.candidateKeys), new HashSet<>(read.getCandidateKeys().view()));
+        // the copies handed out do not change what is stored
+        read.getCandidateKeys().view().iterator().next().union(Reference.set(dictionary, "S1"));
+        assertEquals(new HashSet<>(snapshot.candidateKeys), new HashSet<>(read.getCandidateKeys().view()));
+
+        // an edit drops both
+        read.functionalDependencies.add(FunctionalDependency.fromString("S2->S3", ",", "->", dictionary));
+        assertEquals(relation.functionalDependencies.canonicalCover().size() + 1,
+                read.functionalDependencies.canonicalCover().size());
+        assertEquals(Collections.singleton(Reference.set(dictionary, "S0")), new HashSet<>(read.getCandidateKeys().view()));
+    }
+
+    @Test
+    void corruptFilesAreRejectedBeforeInterning() throws IOException {
+        Path file = dir.resolve("schema.snapshot");
+        AttributeDictionary from = new AttributeDictionary();
+        new SchemaSnapshot(relation(from)).includeCanonicalCover().includeCandidateKeys().includeClosureIndex()
+                .write(file);
+        byte[] bytes = Files.readAllBytes(file);
+        Path corrupt = dir.resolve("corrupt.snapshot");
+        Random random = new Random(36);
+        for (int round = 0; round < 300; round++) {
+            byte[] copy;
+            if (round % 3 == 0) {
+                // truncated anywhere past the fixed header
+                copy = Arrays.copyOf(bytes, 32 + random.nextInt(bytes.length - 32));
+            } else {
+                copy = bytes.clone();
+                // a negative or huge count or some flipped bytes
+                int at = round % 3 == 1 ? 12 + 4 * random.nextInt(6) : 32 + random.nextInt(bytes.length - 32);
+                copy[at] = (byte) (round % 3 == 1 ? 0x80 | random.nextInt(256) : random.nextInt(256));
+            }
+            Files.write(corrupt, copy);
+            AttributeDictionary to = new AttributeDictionary();
+            try {
+                SchemaSnapshot.read(corrupt, to);
+                // a flipped byte inside a name or a set can still read
+                assertNotEquals(0, round % 3, "a truncated file was read");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().endsWith("corrupt snapshot"), e.getMessage());
+                assertEquals(0, to.size());
+            }
+        }
+    }
+
+    @Test
+    void otherFilesAreRejected() throws IOException {
+        Path file = dir.resolve("schema.txt");
+        Files.write(file, "R(A,B)\nA->B\n".getBytes(StandardCharsets.UTF_8));
+        assertThrows(IOException.class, () -> SchemaSnapshot.read(file, new AttributeDictionary()));
+    }
+}
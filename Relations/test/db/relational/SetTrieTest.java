@@ -0,0 +1,100 @@
+package db.relational;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SetTrieTest {
+    private final AttributeDictionary dictionary = new AttributeDictionary();
+    private final List<Attribute> attrs = Reference.attributes(dictionary, "A", 100);
+
+    private AttributeSet random(Random random, int span) {
+        AttributeSet set = new AttributeSet(dictionary);
+        for (int i = random.nextInt(5); i > 0; i--) {
+            set.add(attrs.get(random.nextInt(span)));
+        }
+        return set;
+    }
+
+    @Test
+    void queriesMatchAPassOverEverySet() {
+        Random random = new Random(30);
+        for (int round = 0; round < 100; round++) {
+            // a small span makes many subsets and supersets, a large one
+            // has ids past the first word
+            int span = round % 2 == 0 ? 8 : 100;
+            SetTrie<AttributeSet> trie = new SetTrie<>();
+            Map<AttributeSet, AttributeSet> model = new HashMap<>();
+            for (int step = 0; step < 100; step++) {
+                AttributeSet attrs = random(random, span);
+                if (random.nextInt(3) == 0) {
+                    assertEquals(model.remove(attrs), trie.remove(attrs));
+                } else {
+                    assertEquals(model.put(attrs, attrs), trie.put(attrs, attrs));
+                }
+                assertEquals(model.size(), trie.size());
+                assertEquals(model.isEmpty(), trie.isEmpty());
+
+                AttributeSet query = random(random, span);
+                assertEquals(model.get(query), trie.get(query));
+                java.util.Set<AttributeSet> subsets = new HashSet<>();
+                java.util.Set<AttributeSet> supersets = new HashSet<>();
+                for (AttributeSet stored : model.keySet()) {
+                    if (stored.subsetOf(query)) {
+                        subsets.add(stored);
+                    }
+                    if (query.subsetOf(stored)) {
+                        supersets.add(stored);
+                    }
+                }
+                List<AttributeSet> found = new ArrayList<>();
+                trie.subsetsOf(query, found::add);
+                assertEquals(subsets.size(), found.size());
+                assertEquals(subsets, new HashSet<>(found));
+                found.clear();
+                trie.supersetsOf(query, found::add);
+                assertEquals(supersets.size(), found.size());
+                assertEquals(supersets, new HashSet<>(found));
+                assertEquals(!subsets.isEmpty(), trie.containsSubsetOf(query));
+                assertEquals(!supersets.isEmpty(), trie.containsSupersetOf(query));
+            }
+        }
+    }
+
+    @Test
+    void removedPathsLeadNowhere() {
+        SetTrie<String> trie = new SetTrie<>();
+        AttributeSet ab = Reference.set(dictionary, "A1,A2");
+        AttributeSet abc = Reference.set(dictionary, "A1,A2,A3");
+        trie.put(ab, "ab");
+        trie.put(abc, "abc");
+        assertEquals("abc", trie.remove(abc));
+        assertNull(trie.remove(abc));
+        // the node of A3 is gone, so nothing is above A1,A2,A3 anymore
+        assertFalse(trie.containsSupersetOf(abc));
+        assertTrue(trie.containsSupersetOf(ab));
+        assertEquals("ab", trie.remove(ab));
+        assertTrue(trie.isEmpty());
+        assertFalse(trie.containsSupersetOf(new AttributeSet(dictionary)));
+        assertFalse(trie.containsSubsetOf(abc));
+    }
+
+    @Test
+    void theEmptySetIsASubsetOfEverything() {
+        SetTrie<String> trie = new SetTrie<>();
+        trie.put(new AttributeSet(dictionary), "empty");
+        assertTrue(trie.containsSubsetOf(new AttributeSet(dictionary)));
+        assertTrue(trie.containsSubsetOf(Reference.set(dictionary, "A5")));
+        assertFalse(trie.containsSupersetOf(Reference.set(dictionary, "A5")));
+        List<String> found = new ArrayList<>();
+        trie.subsetsOf(Reference.set(dictionary, "A5,A7"), found::add);
+        assertEquals(1, found.size());
+    }
+}
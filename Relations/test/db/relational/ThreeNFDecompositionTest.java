@@ -0,0 +1,67 @@
+package db.relational;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ThreeNFDecompositionTest {
+    private final AttributeDictionary dictionary = new AttributeDictionary();
+
+    /**
+     * whether a relation over attrs is in 3NF under the dependencies of
+     * fds+ inside attrs: every X -> A has a superkey X or a prime A
+     */
+    static boolean in3NF(AttributeSet attrs, Iterable<FunctionalDependency> fds) {
+        AttributeSet prime = new AttributeSet(attrs.dictionary());
+        for (AttributeSet key : Reference.candidateKeys(attrs, fds)) {
+            prime.union(key);
+        }
+        for (FunctionalDependency fd : Reference.projection(attrs, fds)) {
+            if (!attrs.subsetOf(fd.rhs) && !AttributeSet.subtract(fd.rhs, fd.lhs).subsetOf(prime)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    void in3NFMatchesTheDefinition() {
+        Random random = new Random(16);
+        for (int round = 0; round < 300; round++) {
+            List<Attribute> attrs = Reference.attributes(dictionary, "A", 2 + random.nextInt(6));
+            FunctionalDependencySet fds = Reference.randomFds(random, dictionary, attrs, random.nextInt(8), 2, 2);
+            AttributeSet r = Reference.setOf(dictionary, round % 2 == 0 ? attrs : attrs.subList(1, attrs.size()));
+            assertEquals(in3NF(r, fds), new Relation(r, fds).in3NF(), r + " under " + fds);
+        }
+    }
+
+    @Test
+    void synthesisIsLosslessPreservingAndIn3NF() {
+        Random random = new Random(17);
+        for (int round = 0; round < 200; round++) {
+            List<Attribute> attrs = Reference.attributes(dictionary, "A", 3 + random.nextInt(5));
+            FunctionalDependencySet fds = Reference.randomFds(random, dictionary, attrs, random.nextInt(8), 2, 2);
+            AttributeSet r = Reference.setOf(dictionary, attrs);
+            Relation relation = new Relation(r, fds);
+            db.util.Set<Relation> result = relation.ThreeNFDecomposition();
+
+            AttributeSet covered = new AttributeSet(dictionary);
+            boolean hasKey = false;
+            List<FunctionalDependency> preserved = new ArrayList<>();
+            for (Relation fragment : result) {
+                assertTrue(in3NF(fragment.attributes, fds), fragment + " is not in 3NF");
+                covered.union(fragment.attributes);
+                hasKey |= r.subsetOf(Reference.closure(fragment.attributes, fds));
+                preserved.addAll(Reference.projection(fragment.attributes, fds));
+            }
+            assertEquals(r, covered);
+            assertTrue(hasKey);
+            assertTrue(Reference.equivalent(fds, preserved));
+            assertTrue(relation.verifyDecomposition(result));
+        }
+    }
+}
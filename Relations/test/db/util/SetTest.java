@@ -0,0 +1,106 @@
+package db.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SetTest {
+    private static Set<Integer> random(Random random, java.util.Set<Integer> model) {
+        Set<Integer> set = new Set<>();
+        for (int i = random.nextInt(10); i > 0; i--) {
+            int item = random.nextInt(20);
+            assertEquals(model.add(item) ? 1 : 0, set.add(item));
+        }
+        return set;
+    }
+
+    @Test
+    void iterationSeesEveryElementOnce() {
+        Random random = new Random(25);
+        for (int round = 0; round < 500; round++) {
+            java.util.Set<Integer> model = new HashSet<>();
+            Set<Integer> set = random(random, model);
+            List<Integer> items = new ArrayList<>();
+            for (Integer item : set) {
+                items.add(item);
+            }
+            assertEquals(model.size(), items.size());
+            assertEquals(model, new HashSet<>(items));
+            List<Integer> each = new ArrayList<>();
+            set.forEach(each::add);
+            assertEquals(items, each);
+            assertEquals(model, new HashSet<>(set.toList()));
+            assertEquals(model, set.view());
+            if (model.isEmpty()) {
+                assertNull(set.get());
+            } else {
+                assertTrue(model.contains(set.get()));
+            }
+        }
+    }
+
+    @Test
+    void operationsMatchAHashSet() {
+        Random random = new Random(26);
+        for (int round = 0; round < 2000; round++) {
+            java.util.Set<Integer> a = new HashSet<>();
+            java.util.Set<Integer> b = new HashSet<>();
+            Set<Integer> x = random(random, a);
+            Set<Integer> y = random(random, b);
+            assertEquals(b.containsAll(a), x.subsetOf(y));
+            assertEquals(b.containsAll(a) && b.size() > a.size(), x.strictSubsetOf(y));
+
+            java.util.Set<Integer> union = new HashSet<>(a);
+            union.addAll(b);
+            java.util.Set<Integer> intersection = new HashSet<>(a);
+            intersection.retainAll(b);
+            java.util.Set<Integer> difference = new HashSet<>(a);
+            difference.removeAll(b);
+            assertEquals(union, Set.union(x, y).view());
+            assertEquals(intersection, Set.intersect(x, y).view());
+            assertEquals(difference, Set.subtract(x, y).view());
+
+            Set<Integer> z = new Set<>(x);
+            assertEquals(a.size() - difference.size(), z.subtract(y));
+            assertEquals(difference, z.view());
+            // every element of y is missing from x - y
+            assertEquals(b.size(), z.union(y));
+            assertEquals(union, z.view());
+            // the operands are left alone
+            assertEquals(a, x.view());
+            assertEquals(b, y.view());
+        }
+    }
+
+    @Test
+    void subtractingASetFromItselfEmptiesIt() {
+        Set<Integer> set = new Set<>();
+        for (int i = 0; i < 10; i++) {
+            set.add(i);
+        }
+        assertEquals(10, set.subtract(set));
+        assertTrue(set.isEmpty());
+        assertEquals(0, set.subtract(set));
+    }
+
+    @Test
+    void viewsAreReadOnlyAndLive() {
+        Set<String> set = new Set<>("A");
+        java.util.Set<String> view = set.view();
+        assertThrows(UnsupportedOperationException.class, () -> view.add("B"));
+        assertThrows(UnsupportedOperationException.class, () -> view.remove("A"));
+        set.add("B");
+        assertEquals(2, view.size());
+        assertTrue(view.contains("B"));
+        Iterator<String> items = set.iterator();
+        items.next();
+        assertThrows(UnsupportedOperationException.class, items::remove);
+        assertEquals(2, set.size());
+    }
+}
@@ -0,0 +1,64 @@
+package db.benchmarks;
+
+import db.relational.AttributeSet;
+import db.relational.FunctionalDependencySet;
+import db.relational.Relation;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * attribute closures, one at a time and in a batch
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClosureBenchmark {
+    @Param({"200", "2000"})
+    public int attributes;
+
+    @Param({"1000", "5000"})
+    public int fds;
+
+    @Param({"2"})
+    public int lhsWidth;
+
+    @Param({"CHAIN", "RANDOM", "STAR"})
+    public SyntheticSchema.Shape shape;
+
+    private FunctionalDependencySet f;
+    private List<AttributeSet> queries;
+
+    @Setup
+    public void setup() {
+        Relation r = SyntheticSchema.generate(attributes, fds, lhsWidth, shape, 42);
+        f = r.functionalDependencies;
+        queries = SyntheticSchema.queries(r, 256, 3, 7);
+        f.closureEngine();
+    }
+
+    @Benchmark
+    public void closureUnder(Blackhole bh) {
+        f.closureCache().clear();
+        for (AttributeSet q : queries) {
+            bh.consume(q.closureUnder(f));
+        }
+    }
+
+    @Benchmark
+    public void closureUnderCached(Blackhole bh) {
+        for (AttributeSet q : queries) {
+            bh.consume(q.closureUnder(f));
+        }
+    }
+
+    @Benchmark
+    public List<AttributeSet> closureAll() {
+        return f.closureAll(queries);
+    }
+}
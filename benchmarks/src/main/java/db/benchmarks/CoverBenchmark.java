@@ -0,0 +1,41 @@
+package db.benchmarks;
+
+import db.relational.FunctionalDependencySet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * canonical cover of a fresh copy of the dependencies
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoverBenchmark {
+    @Param({"50", "300"})
+    public int attributes;
+
+    @Param({"200", "5000"})
+    public int fds;
+
+    @Param({"1", "3"})
+    public int lhsWidth;
+
+    @Param({"CHAIN", "RANDOM", "STAR"})
+    public SyntheticSchema.Shape shape;
+
+    private FunctionalDependencySet f;
+
+    @Setup
+    public void setup() {
+        f = SyntheticSchema.generate(attributes, fds, lhsWidth, shape, 42).functionalDependencies;
+    }
+
+    @Benchmark
+    public FunctionalDependencySet canonicalCover() {
+        return f.canonicalCover();
+    }
+}
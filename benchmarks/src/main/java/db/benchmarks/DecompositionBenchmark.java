@@ -0,0 +1,55 @@
+package db.benchmarks;
+
+import db.relational.Relation;
+import db.util.Set;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BCNF and 3NF decomposition of a fresh copy of the relation, and the
+ * lossless join test of the BCNF decomposition
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecompositionBenchmark {
+    @Param({"15", "30"})
+    public int attributes;
+
+    @Param({"15", "40"})
+    public int fds;
+
+    @Param({"1", "2"})
+    public int lhsWidth;
+
+    @Param({"CHAIN", "RANDOM", "STAR"})
+    public SyntheticSchema.Shape shape;
+
+    private Relation r;
+    private Set<Relation> decomposition;
+
+    @Setup
+    public void setup() {
+        r = SyntheticSchema.generate(attributes, fds, lhsWidth, shape, 42);
+        decomposition = new Relation(r).name("R").BCNFDecomposition();
+    }
+
+    @Benchmark
+    public Set<Relation> BCNFDecomposition() {
+        return new Relation(r).name("R").BCNFDecomposition();
+    }
+
+    @Benchmark
+    public Set<Relation> ThreeNFDecomposition() {
+        return new Relation(r).name("R").ThreeNFDecomposition();
+    }
+
+    @Benchmark
+    public boolean isLossless() {
+        return r.isLossless(decomposition);
+    }
+}
@@ -0,0 +1,50 @@
+package db.benchmarks;
+
+import db.relational.FunctionalDependencySet;
+import db.relational.Relation;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * F+ by inference rules (closure) and by subset closures (closure2),
+ * both are exponential so the schemas are small
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class FPlusBenchmark {
+    @Param({"6", "10"})
+    public int attributes;
+
+    @Param({"6", "12"})
+    public int fds;
+
+    @Param({"1", "2"})
+    public int lhsWidth;
+
+    @Param({"CHAIN", "RANDOM", "STAR"})
+    public SyntheticSchema.Shape shape;
+
+    private Relation r;
+
+    @Setup
+    public void setup() {
+        r = SyntheticSchema.generate(attributes, fds, lhsWidth, shape, 42);
+    }
+
+    // the deprecated inference rule closure stays as the baseline
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public FunctionalDependencySet closure() {
+        return r.functionalDependencies.closure(r.attributes);
+    }
+
+    @Benchmark
+    public FunctionalDependencySet closure2() {
+        return r.functionalDependencies.closure2(r.attributes);
+    }
+}
@@ -0,0 +1,49 @@
+package db.benchmarks;
+
+import db.relational.AttributeSet;
+import db.relational.Relation;
+import db.util.Set;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * candidate key enumeration, sequential and on the common pool
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeyBenchmark {
+    @Param({"20", "40"})
+    public int attributes;
+
+    @Param({"20", "60"})
+    public int fds;
+
+    @Param({"1", "2"})
+    public int lhsWidth;
+
+    @Param({"CHAIN", "RANDOM", "STAR"})
+    public SyntheticSchema.Shape shape;
+
+    private Relation r;
+
+    @Setup
+    public void setup() {
+        r = SyntheticSchema.generate(attributes, fds, lhsWidth, shape, 42);
+    }
+
+    @Benchmark
+    public Set<AttributeSet> getCandidateKeys() {
+        return r.getCandidateKeys();
+    }
+
+    @Benchmark
+    public Set<AttributeSet> getCandidateKeysParallel() {
+        return r.getCandidateKeys(ForkJoinPool.commonPool());
+    }
+}
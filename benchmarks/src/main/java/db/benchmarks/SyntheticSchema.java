@@ -0,0 +1,132 @@
+package db.benchmarks;
+
+import db.relational.Attribute;
+import db.relational.AttributeSet;
+import db.relational.FunctionalDependency;
+import db.relational.FunctionalDependencySet;
+import db.relational.Relation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * reproducible synthetic schemas for the benchmarks
+ */
+public final class SyntheticSchema {
+    public enum Shape {
+        /**
+         * every window of lhsWidth consecutive attributes determines the next one
+         */
+        CHAIN,
+        /**
+         * lhsWidth random attributes determine one other random attribute
+         */
+        RANDOM,
+        /**
+         * the first lhsWidth attributes determine the spokes, and groups of
+         * spokes determine hub attributes back
+         */
+        STAR
+    }
+
+    private SyntheticSchema() {}
+
+    /**
+     * relation R(A0..An-1) with the given number of dependencies
+     * @param attributes number of attributes
+     * @param fds number of functional dependencies
+     * @param lhsWidth attributes on each left hand side, for STAR at most
+     *                 half of the attributes so the spokes can fill a left
+     *                 hand side
+     * @param shape
+     * @param seed
+     * @return
+     */
+    public static Relation generate(int attributes, int fds, int lhsWidth, Shape shape, long seed) {
+        if (lhsWidth >= attributes) {
+            throw new IllegalArgumentException("lhsWidth must be smaller than attributes");
+        }
+        if (shape == Shape.STAR && 2 * lhsWidth > attributes) {
+            throw new IllegalArgumentException("a STAR schema needs at least 2 * lhsWidth attributes");
+        }
+        Random random = new Random(seed);
+        List<Attribute> attrs = new ArrayList<>();
+        AttributeSet all = new AttributeSet();
+        for (int i = 0; i < attributes; i++) {
+            Attribute attr = Attribute.fromString("A" + i);
+            attrs.add(attr);
+            all.add(attr);
+        }
+
+        FunctionalDependencySet f = new FunctionalDependencySet();
+        for (int j = 0; f.size() < fds && j < fds * 16; j++) {
+            AttributeSet lhs = new AttributeSet();
+            AttributeSet rhs = new AttributeSet();
+            switch (shape) {
+                case CHAIN: {
+                    int start = j % (attributes - lhsWidth);
+                    for (int k = 0; k < lhsWidth; k++) {
+                        lhs.add(attrs.get(start + k));
+                    }
+                    rhs.add(attrs.get(start + lhsWidth));
+                    if (j >= attributes - lhsWidth) {
+                        rhs.add(attrs.get(random.nextInt(attributes)));
+                    }
+                    break;
+                }
+                case STAR: {
+                    if (j % 2 == 0) {
+                        for (int k = 0; k < lhsWidth; k++) {
+                            lhs.add(attrs.get(k));
+                        }
+                        rhs.add(attrs.get(lhsWidth + random.nextInt(attributes - lhsWidth)));
+                    } else {
+                        while (lhs.size() < lhsWidth) {
+                            lhs.add(attrs.get(lhsWidth + random.nextInt(attributes - lhsWidth)));
+                        }
+                        rhs.add(attrs.get(random.nextInt(lhsWidth)));
+                    }
+                    break;
+                }
+                default: {
+                    while (lhs.size() < lhsWidth) {
+                        lhs.add(attrs.get(random.nextInt(attributes)));
+                    }
+                    Attribute target = attrs.get(random.nextInt(attributes));
+                    while (target.elementOf(lhs)) {
+                        target = attrs.get(random.nextInt(attributes));
+                    }
+                    rhs.add(target);
+                }
+            }
+            rhs.subtract(lhs);
+            if (!rhs.isEmpty()) {
+                f.add(new FunctionalDependency(lhs, rhs));
+            }
+        }
+        return new Relation(all, f).name("R");
+    }
+
+    /**
+     * random attribute sets of the relation to take closures of
+     * @param r
+     * @param count
+     * @param width
+     * @param seed
+     * @return
+     */
+    public static List<AttributeSet> queries(Relation r, int count, int width, long seed) {
+        Random random = new Random(seed);
+        List<Attribute> attrs = r.attributes.toList();
+        List<AttributeSet> queries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            AttributeSet q = new AttributeSet();
+            while (q.size() < Math.min(width, attrs.size())) {
+                q.add(attrs.get(random.nextInt(attrs.size())));
+            }
+            queries.add(q);
+        }
+        return queries;
+    }
+}
@@ -0,0 +1,34 @@
+package db.benchmarks;
+
+import db.relational.FunctionalDependency;
+import db.relational.Relation;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SyntheticSchemaTest {
+    @Test
+    void everyShapeIsReproducible() {
+        for (SyntheticSchema.Shape shape : SyntheticSchema.Shape.values()) {
+            Relation r1 = SyntheticSchema.generate(20, 30, 3, shape, 42);
+            Relation r2 = SyntheticSchema.generate(20, 30, 3, shape, 42);
+            assertEquals(20, r1.attributes.size());
+            assertEquals(r1.functionalDependencies, r2.functionalDependencies);
+            assertFalse(r1.functionalDependencies.isEmpty());
+            for (FunctionalDependency fd : r1.functionalDependencies) {
+                assertTrue(fd.within(r1.attributes));
+                assertTrue(fd.rhs.disjoint(fd.lhs));
+            }
+        }
+    }
+
+    @Test
+    void starNeedsRoomForTheSpokes() {
+        // lhsWidth 3 of 5 attributes leaves 2 spokes for a left hand side of 3
+        assertThrows(IllegalArgumentException.class,
+                () -> SyntheticSchema.generate(5, 10, 3, SyntheticSchema.Shape.STAR, 1));
+        assertEquals(6, SyntheticSchema.generate(6, 10, 3, SyntheticSchema.Shape.STAR, 1).attributes.size());
+        assertThrows(IllegalArgumentException.class,
+                () -> SyntheticSchema.generate(4, 10, 4, SyntheticSchema.Shape.CHAIN, 1));
+    }
+}